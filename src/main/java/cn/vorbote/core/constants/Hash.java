@@ -15,7 +15,9 @@ public enum Hash implements IConstant<String> {
     SHA_1("sha-1"), SHA_224("sha-224"), SHA_256("sha-256"),
     SHA_384("sha-384"), SHA_512("sha-512"),
 
-    RC4("rc4"), AES("aes"), DES("des");
+    RC4("rc4"), AES("aes"), DES("des"),
+
+    XXHASH_64("xxhash64"), MURMUR3_32("murmur3-32"), MURMUR3_128("murmur3-128"), CRC32C("crc32c");
 
     private final String value;
 
@@ -0,0 +1,123 @@
+package cn.vorbote.core.constants;
+
+import cn.vorbote.core.exceptions.UnsupportedJwtAlgorithmException;
+import cn.vorbote.core.utils.StringUtil;
+
+/**
+ * This is an enum class of the JWS algorithms (RFC 7518) supported by {@code JwtEngine}.
+ *
+ * @author vorbote
+ */
+public enum JwtAlgorithm implements IConstant<String> {
+
+    HS256("HS256", Hash.SHA_256, null, 0), HS384("HS384", Hash.SHA_384, null, 0),
+    HS512("HS512", Hash.SHA_512, null, 0),
+
+    RS256("RS256", null, "SHA256withRSA", 0), RS384("RS384", null, "SHA384withRSA", 0),
+    RS512("RS512", null, "SHA512withRSA", 0),
+
+    ES256("ES256", null, "SHA256withECDSA", 32), ES384("ES384", null, "SHA384withECDSA", 48),
+    ES512("ES512", null, "SHA512withECDSA", 66);
+
+    private final String value;
+
+    private final Hash hash;
+
+    private final String signatureAlgorithm;
+
+    private final int coordinateLength;
+
+    JwtAlgorithm(String value, Hash hash, String signatureAlgorithm, int coordinateLength) {
+        this.value = value;
+        this.hash = hash;
+        this.signatureAlgorithm = signatureAlgorithm;
+        this.coordinateLength = coordinateLength;
+    }
+
+    /**
+     * Get the algorithm of a {@code alg} header value.
+     *
+     * @param value The header value, e.g. {@code HS256}.
+     * @return The algorithm.
+     * @throws UnsupportedJwtAlgorithmException If no algorithm has the value, such as {@code none}.
+     */
+    public static JwtAlgorithm of(String value) {
+        for (JwtAlgorithm algorithm : values()) {
+            if (algorithm.value.equals(value)) {
+                return algorithm;
+            }
+        }
+        throw new UnsupportedJwtAlgorithmException(String.format("Unsupported jwt algorithm %s.", value));
+    }
+
+    /**
+     * Check whether this algorithm is an HMAC.
+     *
+     * @return Value {@code true} for the {@code HS} algorithms.
+     */
+    public boolean isHmac() {
+        return hash != null;
+    }
+
+    /**
+     * Get the digest of an HMAC algorithm.
+     *
+     * @return The digest, or {@code null} if this is not an HMAC algorithm.
+     */
+    public Hash getHash() {
+        return hash;
+    }
+
+    /**
+     * Get the name of the {@link java.security.Signature} algorithm of an RSA or ECDSA algorithm.
+     *
+     * @return The name, or {@code null} for an HMAC algorithm.
+     */
+    public String getSignatureAlgorithm() {
+        return signatureAlgorithm;
+    }
+
+    /**
+     * Get the length of each of the two coordinates an ECDSA signature is made of.
+     *
+     * @return The length in bytes, or 0 if this is not an ECDSA algorithm.
+     */
+    public int getCoordinateLength() {
+        return coordinateLength;
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+
+    /**
+     * Get the instance value of this constant value.
+     *
+     * @return The instance value of this constant value.
+     */
+    @Override
+    public String get() {
+        return value;
+    }
+
+    /**
+     * Check whether the provided {@code value} is a correct value of this enumeration.
+     *
+     * @param value The {@code value} to check.
+     * @return Value {@code true} if the value is one of these enumerations.
+     */
+    @Override
+    public boolean isCorrectValue(String value) {
+        if (value == null || StringUtil.doesNotHaveText(value)) {
+            return false;
+        }
+
+        for (JwtAlgorithm algorithm : JwtAlgorithm.values()) {
+            if (algorithm.get().equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,17 @@
+package cn.vorbote.core.exceptions;
+
+/**
+ * This exception means a jwt is malformed, has a wrong signature, or is expired or not yet valid.
+ *
+ * @author vorbote
+ */
+public class JwtVerificationException extends RuntimeException {
+
+    public JwtVerificationException(String message) {
+        super(message);
+    }
+
+    public JwtVerificationException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
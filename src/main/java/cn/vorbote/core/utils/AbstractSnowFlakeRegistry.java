@@ -0,0 +1,179 @@
+package cn.vorbote.core.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The idle tracking and eviction shared by {@link SnowFlakeRegistry} and {@link LongSnowFlakeRegistry}.
+ * <p>
+ * Every key maps to an {@link Entry} which remembers when it was used last. Eviction marks an idle entry as evicted
+ * before unlinking it, and a caller which generated an id from an entry that got evicted meanwhile discards the id
+ * and asks again. So an id is never handed out by a generator which has already been replaced, and a replacing
+ * generator, created at least one idle timeout after the last use of the old one, can not repeat its ids.
+ *
+ * @author vorbote
+ */
+abstract class AbstractSnowFlakeRegistry {
+
+    private final TimeSource timeSource;
+
+    private final long idleTimeoutMillis;
+
+    private final AtomicLong nextSweep;
+
+    private final LongAdder creations = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    AbstractSnowFlakeRegistry(TimeSource timeSource, long idleTimeoutMillis) {
+        if (idleTimeoutMillis < 0) {
+            throw new IllegalArgumentException("Idle timeout can not be less than 0!");
+        }
+        this.timeSource = timeSource == null ? TimeSource.system() : timeSource;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.nextSweep = new AtomicLong(this.timeSource.currentTimeMillis() + sweepInterval());
+    }
+
+    /**
+     * Get the current time and, once per half idle timeout, let the calling thread evict the idle entries.
+     *
+     * @return The current time in milliseconds.
+     */
+    final long now() {
+        long now = timeSource.currentTimeMillis();
+        if (idleTimeoutMillis > 0) {
+            long sweepAt = nextSweep.get();
+            if (now >= sweepAt && nextSweep.compareAndSet(sweepAt, now + sweepInterval())) {
+                sweep(now - idleTimeoutMillis);
+            }
+        }
+        return now;
+    }
+
+    private long sweepInterval() {
+        return Math.max(1L, idleTimeoutMillis / 2);
+    }
+
+    /**
+     * Create an entry for a newly seen key.
+     *
+     * @param snowFlake The generator of the key.
+     * @param now       The current time in milliseconds.
+     * @return The entry.
+     */
+    final Entry newEntry(SnowFlake snowFlake, long now) {
+        if (snowFlake == null) {
+            throw new IllegalStateException("The factory returned no SnowFlake.");
+        }
+        creations.increment();
+        return new Entry(snowFlake, now);
+    }
+
+    /**
+     * Mark an entry evicted if it has not been used since the specified time.
+     *
+     * @param entry      The entry.
+     * @param idleBefore The time in milliseconds.
+     * @return Whether this call evicted the entry, in which case the caller must unlink it.
+     */
+    final boolean tryEvict(Entry entry, long idleBefore) {
+        if (idleTimeoutMillis == 0) {
+            return false;
+        }
+        long last = entry.lastAccess.get();
+        if (last != Entry.EVICTED && last < idleBefore && entry.lastAccess.compareAndSet(last, Entry.EVICTED)) {
+            evictions.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Evict and unlink every entry which has not been used since the specified time.
+     *
+     * @param idleBefore The time in milliseconds.
+     */
+    abstract void sweep(long idleBefore);
+
+    /**
+     * Get the count of keys which currently have a generator.
+     *
+     * @return The count of keys.
+     */
+    public abstract int size();
+
+    /**
+     * Evict the generators which have been idle for longer than the idle timeout now, instead of waiting for the
+     * periodic sweep.
+     */
+    public void evictIdle() {
+        sweep(timeSource.currentTimeMillis() - idleTimeoutMillis);
+    }
+
+    /**
+     * Get how long a generator may stay unused before it is evicted.
+     *
+     * @return The idle timeout in milliseconds, or 0 if generators are never evicted.
+     */
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    /**
+     * Get how many generators have been created.
+     *
+     * @return The count of creations.
+     */
+    public long getCreationCount() {
+        return creations.sum();
+    }
+
+    /**
+     * Get how many generators have been evicted for being idle.
+     *
+     * @return The count of evictions.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * The generator of one key and the time it was used last.
+     */
+    static final class Entry {
+
+        static final long EVICTED = Long.MIN_VALUE;
+
+        final SnowFlake snowFlake;
+
+        final AtomicLong lastAccess;
+
+        Entry(SnowFlake snowFlake, long now) {
+            this.snowFlake = snowFlake;
+            this.lastAccess = new AtomicLong(now);
+        }
+
+        /**
+         * Record a use of the entry. The time is only written if it moved, so a hot key does not bounce the cache
+         * line on every id.
+         *
+         * @param now The current time in milliseconds.
+         * @return Whether the entry is still live.
+         */
+        boolean touch(long now) {
+            for (; ; ) {
+                long last = lastAccess.get();
+                if (last == EVICTED) {
+                    return false;
+                }
+                if (last >= now || lastAccess.compareAndSet(last, now)) {
+                    return true;
+                }
+            }
+        }
+
+        boolean isEvicted() {
+            return lastAccess.get() == EVICTED;
+        }
+    }
+}
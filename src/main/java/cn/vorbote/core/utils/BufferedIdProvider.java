@@ -0,0 +1,358 @@
+package cn.vorbote.core.utils;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@code BufferedIdProvider} keeps a ring buffer of ids pre-generated by a {@link SnowFlake}, so taking an id is one
+ * array read plus one compare-and-set of the consumer index. A background daemon thread refills the buffer in bulk
+ * whenever the count of available ids drops below the low-water mark given by the padding factor, and optionally on a
+ * fixed schedule.
+ * <p>
+ * The ids in the buffer carry the timestamp of the moment they were generated, not of the moment they are taken. If
+ * the buffer runs empty, consumers wait for the refill following a {@link WaitStrategy}; how often that happens is
+ * exposed by {@link #getWaitCount()}. If refilling fails, e.g. because the generator rejects a clock regression, the
+ * refill thread retries with a growing back-off, and consumers which find the buffer empty meanwhile get the failure
+ * thrown instead of waiting for ids which may never come.
+ *
+ * @author vorbote
+ */
+public final class BufferedIdProvider implements AutoCloseable {
+
+    /**
+     * The distance between the tail and the cursor in {@link #indexes}, which keeps them on separate cache lines.
+     */
+    private static final int PADDING = 16;
+
+    private static final int TAIL = PADDING;
+
+    private static final int CURSOR = PADDING * 2;
+
+    /**
+     * The largest count of ids generated by one call to {@link SnowFlake#fill(long[], int, int)} while refilling.
+     */
+    private static final int REFILL_BATCH = 4096;
+
+    private static final long MIN_BACKOFF_NANOS = 1_000_000L;
+
+    private static final long MAX_BACKOFF_NANOS = 1_000_000_000L;
+
+    private final SnowFlake snowFlake;
+
+    private final AtomicLongArray slots;
+
+    private final int capacity;
+
+    private final int mask;
+
+    /**
+     * Holds the position of the last published id at {@link #TAIL}, and the position of the last taken id at
+     * {@link #CURSOR}. Positions grow forever, the slot of a position is {@code position & mask}.
+     */
+    private final AtomicLongArray indexes = new AtomicLongArray(PADDING * 3);
+
+    private final long lowWaterMark;
+
+    private final long scheduleIntervalNanos;
+
+    private final WaitStrategy waitStrategy;
+
+    private final long[] scratch;
+
+    private final AtomicBoolean refillRequested = new AtomicBoolean();
+
+    private final LongAdder waits = new LongAdder();
+
+    private final LongAdder refills = new LongAdder();
+
+    private final Thread refiller;
+
+    private volatile boolean running = true;
+
+    /**
+     * The failure of the last refill, or {@code null} if it succeeded.
+     */
+    private volatile Throwable failure;
+
+    private BufferedIdProvider(Builder builder) {
+        this.snowFlake = builder.snowFlake;
+        this.capacity = builder.bufferSize;
+        this.mask = capacity - 1;
+        this.slots = new AtomicLongArray(capacity);
+        this.lowWaterMark = (long) capacity * builder.paddingFactor / 100;
+        this.scheduleIntervalNanos = builder.scheduleIntervalMillis * 1_000_000L;
+        this.waitStrategy = builder.waitStrategy == null ? WaitStrategy.defaults() : builder.waitStrategy;
+        this.scratch = new long[Math.min(capacity, REFILL_BATCH)];
+        indexes.set(TAIL, -1L);
+        indexes.set(CURSOR, -1L);
+
+        refill();
+        this.refiller = new Thread(this::runRefiller, "buffered-id-provider");
+        this.refiller.setDaemon(true);
+        this.refiller.start();
+    }
+
+    /**
+     * Generate a builder of {@code BufferedIdProvider}.
+     *
+     * @param snowFlake The generator to fill the buffer with.
+     * @return A builder of {@code BufferedIdProvider}.
+     */
+    public static BufferedIdProvider.Builder builder(SnowFlake snowFlake) {
+        return new BufferedIdProvider.Builder(snowFlake);
+    }
+
+    /**
+     * Take the next id from the buffer.
+     *
+     * @return A unique id.
+     * @throws IllegalStateException If the provider has been closed and the buffer is empty.
+     * @throws RuntimeException      The failure of the last refill, if it failed and the buffer is empty.
+     */
+    public long nextId() {
+        int attempt = 0;
+        for (; ; ) {
+            long cursor = indexes.get(CURSOR);
+            long tail = indexes.get(TAIL);
+            if (cursor < tail) {
+                // Read before claiming: the slot can not be overwritten while the cursor has not passed it.
+                long id = slots.get((int) ((cursor + 1) & mask));
+                if (indexes.compareAndSet(CURSOR, cursor, cursor + 1)) {
+                    if (tail - cursor - 1 < lowWaterMark) {
+                        requestRefill();
+                    }
+                    return id;
+                }
+            } else {
+                if (!running) {
+                    throw new IllegalStateException("The provider has been closed.");
+                }
+                Throwable cause = failure;
+                if (cause != null) {
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw (RuntimeException) cause;
+                }
+                if (attempt == 0) {
+                    waits.increment();
+                }
+                requestRefill();
+                waitStrategy.idle(attempt++);
+            }
+        }
+    }
+
+    /**
+     * Wake the refill thread up, unless a refill has already been requested.
+     */
+    private void requestRefill() {
+        if (!refillRequested.get() && refillRequested.compareAndSet(false, true)) {
+            LockSupport.unpark(refiller);
+        }
+    }
+
+    private void runRefiller() {
+        long backoffNanos = MIN_BACKOFF_NANOS;
+        while (running) {
+            refillRequested.set(false);
+            try {
+                refill();
+                failure = null;
+                backoffNanos = MIN_BACKOFF_NANOS;
+            } catch (Throwable e) {
+                // The generator only throws unchecked exceptions. Keep the thread alive, the cause may pass.
+                failure = e;
+                long deadline = System.nanoTime() + backoffNanos;
+                long remaining;
+                while (running && (remaining = deadline - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(this, remaining);
+                }
+                backoffNanos = Math.min(backoffNanos * 2, MAX_BACKOFF_NANOS);
+                continue;
+            }
+            if (refillRequested.get()) {
+                // Requested during the refill. The wake-up may have been swallowed by a park of the generator while
+                // it waited for the clock, so do not rely on it.
+                continue;
+            }
+            if (scheduleIntervalNanos > 0) {
+                LockSupport.parkNanos(this, scheduleIntervalNanos);
+            } else {
+                LockSupport.park(this);
+            }
+        }
+    }
+
+    /**
+     * Fill all free slots of the buffer. Only the constructor and the refill thread call this, so there is a single
+     * producer.
+     */
+    private void refill() {
+        long tail = indexes.get(TAIL);
+        long free = capacity - (tail - indexes.get(CURSOR));
+        if (free <= 0) {
+            return;
+        }
+        while (free > 0) {
+            int count = (int) Math.min(free, scratch.length);
+            snowFlake.fill(scratch, 0, count);
+            for (int i = 0; i < count; ++i) {
+                slots.lazySet((int) ((tail + 1 + i) & mask), scratch[i]);
+            }
+            tail += count;
+            indexes.set(TAIL, tail);
+            free = capacity - (tail - indexes.get(CURSOR));
+        }
+        refills.increment();
+    }
+
+    /**
+     * Get the capacity of the buffer.
+     *
+     * @return The count of slots.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Get the count of ids currently available in the buffer.
+     *
+     * @return The count of available ids.
+     */
+    public int getAvailable() {
+        return (int) Math.max(0L, indexes.get(TAIL) - indexes.get(CURSOR));
+    }
+
+    /**
+     * Get how full the buffer currently is.
+     *
+     * @return The ratio of available ids to the capacity, between 0 and 1.
+     */
+    public double getFillRatio() {
+        return (double) getAvailable() / capacity;
+    }
+
+    /**
+     * Get how often a consumer found the buffer empty and had to wait for a refill.
+     *
+     * @return The count of waits.
+     */
+    public long getWaitCount() {
+        return waits.sum();
+    }
+
+    /**
+     * Get how often the buffer has been refilled.
+     *
+     * @return The count of refills.
+     */
+    public long getRefillCount() {
+        return refills.sum();
+    }
+
+    /**
+     * Stop the refill thread. Ids left in the buffer can still be taken.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(refiller);
+    }
+
+    /**
+     * Inner class {@code Builder} of {@code BufferedIdProvider}.
+     */
+    public static class Builder {
+
+        private final SnowFlake snowFlake;
+
+        private int bufferSize = 8192;
+
+        private int paddingFactor = 50;
+
+        private long scheduleIntervalMillis;
+
+        private WaitStrategy waitStrategy;
+
+        /**
+         * Generate a new {@code Builder}, use protected to prevent other coders use it.
+         *
+         * @param snowFlake The generator to fill the buffer with.
+         */
+        protected Builder(SnowFlake snowFlake) {
+            if (snowFlake == null) {
+                throw new IllegalArgumentException("SnowFlake can not be null!");
+            }
+            this.snowFlake = snowFlake;
+        }
+
+        /**
+         * Set the count of slots of the buffer. Defaults to 8192.
+         *
+         * @param bufferSize The count of slots. (Should be a power of 2 and at least 2)
+         * @return {@code Builder} instance itself.
+         */
+        public Builder bufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        /**
+         * Set the low-water mark as a percentage of the buffer size. When fewer ids are available, the buffer is
+         * refilled. Defaults to 50.
+         *
+         * @param paddingFactor The percentage. (Should between 1 and 99)
+         * @return {@code Builder} instance itself.
+         */
+        public Builder paddingFactor(int paddingFactor) {
+            this.paddingFactor = paddingFactor;
+            return this;
+        }
+
+        /**
+         * Set the interval to refill the buffer at, in addition to refilling at the low-water mark. Defaults to 0,
+         * which refills at the low-water mark only.
+         *
+         * @param scheduleIntervalMillis The interval in milliseconds, or 0 to disable scheduled refills.
+         * @return {@code Builder} instance itself.
+         */
+        public Builder scheduleInterval(long scheduleIntervalMillis) {
+            this.scheduleIntervalMillis = scheduleIntervalMillis;
+            return this;
+        }
+
+        /**
+         * Set how consumers wait while the buffer is empty. Defaults to {@link WaitStrategy#defaults()}.
+         *
+         * @param waitStrategy The wait strategy.
+         * @return {@code Builder} instance itself.
+         */
+        public Builder waitStrategy(WaitStrategy waitStrategy) {
+            this.waitStrategy = waitStrategy;
+            return this;
+        }
+
+        /**
+         * Build a {@code BufferedIdProvider} instance, fill its buffer and start its refill thread.
+         *
+         * @return A {@code BufferedIdProvider} instance.
+         * @throws IllegalArgumentException If any setting is out of its range.
+         */
+        public BufferedIdProvider build() {
+            if (bufferSize < 2 || Integer.bitCount(bufferSize) != 1) {
+                throw new IllegalArgumentException("Buffer size should be a power of 2 and at least 2!");
+            }
+            if (paddingFactor < 1 || paddingFactor > 99) {
+                throw new IllegalArgumentException("Padding factor should between 1 and 99!");
+            }
+            if (scheduleIntervalMillis < 0) {
+                throw new IllegalArgumentException("Schedule interval can not be less than 0!");
+            }
+            return new BufferedIdProvider(this);
+        }
+    }
+}
@@ -0,0 +1,594 @@
+package cn.vorbote.core.utils;
+
+import cn.vorbote.core.constants.Hash;
+import cn.vorbote.core.exceptions.UnsupportedHashAlgorithmException;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code CipherEngine} encrypts with {@link Hash#AES} or {@link Hash#DES} under one key. Every record gets a fresh
+ * random IV and is written as {@code IV || ciphertext}, with the 16 byte tag at the end of the ciphertext in
+ * {@link Mode#GCM}. The IV length is 12 bytes for GCM and the block size of the algorithm otherwise.
+ * <p>
+ * {@link Cipher} instances are created once and kept in a pool of the engine. A borrowed cipher is only initialised
+ * again with the next IV, which reuses the expanded key of the same {@link SecretKeySpec}, so encrypting a batch of
+ * small records costs no {@link Cipher#getInstance(String)} per record. An engine is thread-safe.
+ * <p>
+ * Random 12 byte IVs are only safe for about 2<sup>32</sup> GCM records under one key (NIST SP 800-38D): beyond that
+ * the chance that two records share an IV, which gives away the authentication key, grows past 2<sup>-32</sup>. An
+ * engine in {@link Mode#GCM} therefore counts its records and refuses to encrypt more than
+ * {@value #MAX_GCM_RECORDS}. When encrypting in bulk, rotate the key well before that, e.g. per table or per batch,
+ * and keep in mind that the count is per engine, not per key.
+ *
+ * @author vorbote
+ */
+public final class CipherEngine {
+
+    /**
+     * The block cipher mode.
+     */
+    public enum Mode {
+
+        /**
+         * Galois/counter mode, authenticated, AES only.
+         */
+        GCM("GCM/NoPadding"),
+
+        /**
+         * Counter mode, no padding and no authentication.
+         */
+        CTR("CTR/NoPadding"),
+
+        /**
+         * Cipher block chaining with PKCS#5 padding.
+         */
+        CBC("CBC/PKCS5Padding");
+
+        private final String transformation;
+
+        Mode(String transformation) {
+            this.transformation = transformation;
+        }
+    }
+
+    /**
+     * The length of the GCM authentication tag in bytes.
+     */
+    private static final int TAG_LENGTH = 16;
+
+    private static final int GCM_IV_LENGTH = 12;
+
+    /**
+     * The most records an engine encrypts in {@link Mode#GCM} under its key with random IVs.
+     */
+    public static final long MAX_GCM_RECORDS = 1L << 32;
+
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(SecureRandom::new);
+
+    private final Hash method;
+
+    private final Mode mode;
+
+    private final SecretKeySpec key;
+
+    private final String transformation;
+
+    private final int blockSize;
+
+    private final int ivLength;
+
+    private final BlockingQueue<Cipher> pool;
+
+    private final AtomicLong encryptedCount = new AtomicLong();
+
+    private CipherEngine(Hash method, Mode mode, byte[] key, int poolSize) {
+        this.method = method;
+        this.mode = mode;
+        this.key = new SecretKeySpec(key, method == Hash.AES ? "AES" : "DES");
+        this.transformation = (method == Hash.AES ? "AES/" : "DES/") + mode.transformation;
+        this.blockSize = method == Hash.AES ? 16 : 8;
+        this.ivLength = mode == Mode.GCM ? GCM_IV_LENGTH : blockSize;
+        this.pool = new ArrayBlockingQueue<>(poolSize);
+        // Fail on an unavailable transformation now rather than on the first record.
+        pool.offer(newCipher());
+    }
+
+    /**
+     * Create an engine with the default mode of the method and the default pool size.
+     *
+     * @param method {@link Hash#AES} or {@link Hash#DES}.
+     * @param key    The key.
+     * @return The engine.
+     * @throws UnsupportedHashAlgorithmException If the method is neither AES nor DES.
+     * @throws IllegalArgumentException          If the key has the wrong length.
+     */
+    public static CipherEngine of(Hash method, byte[] key) {
+        return builder(method, key).build();
+    }
+
+    /**
+     * Get a builder of an engine.
+     *
+     * @param method {@link Hash#AES} or {@link Hash#DES}.
+     * @param key    The key, 16, 24 or 32 bytes for AES and 8 bytes for DES.
+     * @return A {@code Builder} instance.
+     * @throws UnsupportedHashAlgorithmException If the method is neither AES nor DES.
+     */
+    public static Builder builder(Hash method, byte[] key) {
+        return new Builder(method, key);
+    }
+
+    // region Records
+
+    /**
+     * Get the length of the record a plaintext is encrypted into.
+     *
+     * @param length The length of the plaintext.
+     * @return The length of the record, IV included.
+     */
+    public int encryptedLength(int length) {
+        switch (mode) {
+            case GCM:
+                return ivLength + length + TAG_LENGTH;
+            case CBC:
+                return ivLength + (length / blockSize + 1) * blockSize;
+            default:
+                return ivLength + length;
+        }
+    }
+
+    /**
+     * Encrypt a plaintext into a record.
+     *
+     * @param plain The plaintext.
+     * @return The record.
+     */
+    public byte[] encrypt(byte[] plain) {
+        Cipher cipher = borrow();
+        try {
+            return encrypt(cipher, plain);
+        } finally {
+            release(cipher);
+        }
+    }
+
+    /**
+     * Decrypt a record.
+     *
+     * @param record The record.
+     * @return The plaintext.
+     * @throws IllegalArgumentException If the record is too short, corrupted or was encrypted with another key.
+     */
+    public byte[] decrypt(byte[] record) {
+        Cipher cipher = borrow();
+        try {
+            return decrypt(cipher, record);
+        } finally {
+            release(cipher);
+        }
+    }
+
+    /**
+     * Encrypt a batch of plaintexts into records with one pooled cipher.
+     *
+     * @param plains The plaintexts.
+     * @return The records, in the order of the plaintexts.
+     */
+    public byte[][] encryptAll(byte[][] plains) {
+        byte[][] records = new byte[plains.length][];
+        Cipher cipher = borrow();
+        try {
+            for (int i = 0; i < plains.length; ++i) {
+                records[i] = encrypt(cipher, plains[i]);
+            }
+        } finally {
+            release(cipher);
+        }
+        return records;
+    }
+
+    /**
+     * Decrypt a batch of records with one pooled cipher.
+     *
+     * @param records The records.
+     * @return The plaintexts, in the order of the records.
+     * @throws IllegalArgumentException If a record is too short, corrupted or was encrypted with another key.
+     */
+    public byte[][] decryptAll(byte[][] records) {
+        byte[][] plains = new byte[records.length][];
+        Cipher cipher = borrow();
+        try {
+            for (int i = 0; i < records.length; ++i) {
+                plains[i] = decrypt(cipher, records[i]);
+            }
+        } finally {
+            release(cipher);
+        }
+        return plains;
+    }
+
+    /**
+     * Encrypt the remaining bytes of a buffer into a record.
+     *
+     * @param plain  The plaintext, read up to its limit.
+     * @param record The buffer to write the record to, it needs {@link #encryptedLength(int)} bytes remaining.
+     * @return The length of the record.
+     */
+    public int encrypt(ByteBuffer plain, ByteBuffer record) {
+        Cipher cipher = borrow();
+        try {
+            byte[] iv = newIv();
+            cipher.init(Cipher.ENCRYPT_MODE, key, parameters(iv));
+            record.put(iv);
+            return ivLength + cipher.doFinal(plain, record);
+        } catch (GeneralSecurityException e) {
+            throw failure(e);
+        } finally {
+            release(cipher);
+        }
+    }
+
+    /**
+     * Decrypt the remaining bytes of a buffer as one record.
+     *
+     * @param record The record, read up to its limit.
+     * @param plain  The buffer to write the plaintext to.
+     * @return The length of the plaintext.
+     * @throws IllegalArgumentException If the record is too short, corrupted or was encrypted with another key.
+     */
+    public int decrypt(ByteBuffer record, ByteBuffer plain) {
+        if (record.remaining() < ivLength) {
+            throw new IllegalArgumentException("The record is too short!");
+        }
+        Cipher cipher = borrow();
+        try {
+            byte[] iv = new byte[ivLength];
+            record.get(iv);
+            cipher.init(Cipher.DECRYPT_MODE, key, parameters(iv));
+            return cipher.doFinal(record, plain);
+        } catch (GeneralSecurityException e) {
+            throw failure(e);
+        } finally {
+            release(cipher);
+        }
+    }
+
+    private byte[] encrypt(Cipher cipher, byte[] plain) {
+        try {
+            byte[] iv = newIv();
+            cipher.init(Cipher.ENCRYPT_MODE, key, parameters(iv));
+            byte[] record = new byte[encryptedLength(plain.length)];
+            System.arraycopy(iv, 0, record, 0, ivLength);
+            int length = ivLength + cipher.doFinal(plain, 0, plain.length, record, ivLength);
+            return length == record.length ? record : Arrays.copyOf(record, length);
+        } catch (GeneralSecurityException e) {
+            throw failure(e);
+        }
+    }
+
+    private byte[] decrypt(Cipher cipher, byte[] record) {
+        if (record.length < ivLength) {
+            throw new IllegalArgumentException("The record is too short!");
+        }
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, key, parameters(record, 0));
+            return cipher.doFinal(record, ivLength, record.length - ivLength);
+        } catch (GeneralSecurityException e) {
+            throw failure(e);
+        }
+    }
+
+    // endregion
+
+    // region Streams
+
+    /**
+     * Encrypt everything a channel provides into one record written to another channel, through a direct buffer.
+     * Neither channel is closed.
+     *
+     * @param plain  The channel to read the plaintext from.
+     * @param record The channel to write the record to.
+     * @return The length of the record.
+     * @throws IOException If a channel fails.
+     */
+    public long encrypt(ReadableByteChannel plain, WritableByteChannel record) throws IOException {
+        Cipher cipher = borrow();
+        try {
+            byte[] iv = newIv();
+            cipher.init(Cipher.ENCRYPT_MODE, key, parameters(iv));
+            long written = writeFully(record, ByteBuffer.wrap(iv));
+            return written + transfer(cipher, plain, record);
+        } catch (GeneralSecurityException e) {
+            throw failure(e);
+        } finally {
+            release(cipher);
+        }
+    }
+
+    /**
+     * Decrypt one record read from a channel to its end into another channel. Neither channel is closed. In
+     * {@link Mode#GCM} the plaintext is only released once the tag is verified, so the record is read into memory and
+     * decrypted at once; use {@link Mode#CTR} for records larger than the heap can hold.
+     *
+     * @param record The channel to read the record from.
+     * @param plain  The channel to write the plaintext to.
+     * @return The length of the plaintext.
+     * @throws IOException              If a channel fails.
+     * @throws IllegalArgumentException If the record is too short, corrupted or was encrypted with another key.
+     */
+    public long decrypt(ReadableByteChannel record, WritableByteChannel plain) throws IOException {
+        ByteBuffer iv = ByteBuffer.allocate(ivLength);
+        while (iv.hasRemaining()) {
+            if (record.read(iv) == -1) {
+                throw new IllegalArgumentException("The record is too short!");
+            }
+        }
+        Cipher cipher = borrow();
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, key, parameters(iv.array(), 0));
+            return mode == Mode.GCM ? decryptWhole(cipher, record, plain) : transfer(cipher, record, plain);
+        } catch (GeneralSecurityException e) {
+            throw failure(e);
+        } finally {
+            release(cipher);
+        }
+    }
+
+    private long transfer(Cipher cipher, ReadableByteChannel in, WritableByteChannel out)
+            throws IOException, GeneralSecurityException {
+        ByteBuffer input = ByteBuffer.allocateDirect(STREAM_BUFFER_SIZE);
+        ByteBuffer output = ByteBuffer.allocateDirect(STREAM_BUFFER_SIZE + 2 * blockSize + TAG_LENGTH);
+        long written = 0;
+        while (in.read(input) != -1) {
+            input.flip();
+            output = ensureOutput(output, cipher.getOutputSize(input.remaining()));
+            output.clear();
+            cipher.update(input, output);
+            output.flip();
+            written += writeFully(out, output);
+            input.clear();
+        }
+        input.flip();
+        output = ensureOutput(output, cipher.getOutputSize(0));
+        output.clear();
+        cipher.doFinal(input, output);
+        output.flip();
+        return written + writeFully(out, output);
+    }
+
+    /**
+     * Decrypt a GCM record as a whole. The cipher holds back all plaintext until the tag is verified, and sizes the
+     * output of every update for everything it holds, so the ciphertext is collected in a buffer growing by doubling
+     * and decrypted with one {@link Cipher#doFinal(ByteBuffer, ByteBuffer)}.
+     */
+    private static long decryptWhole(Cipher cipher, ReadableByteChannel in, WritableByteChannel out)
+            throws IOException, GeneralSecurityException {
+        ByteBuffer input = ByteBuffer.allocate(STREAM_BUFFER_SIZE);
+        while (in.read(input) != -1) {
+            if (!input.hasRemaining()) {
+                input = grow(input);
+            }
+        }
+        input.flip();
+        ByteBuffer output = ByteBuffer.allocate(cipher.getOutputSize(input.remaining()));
+        cipher.doFinal(input, output);
+        output.flip();
+        return writeFully(out, output);
+    }
+
+    /**
+     * Copy a full buffer into one twice as large.
+     *
+     * @param buffer The buffer, whose bytes before its position are kept.
+     * @return The larger buffer, positioned after the kept bytes.
+     */
+    private static ByteBuffer grow(ByteBuffer buffer) {
+        if (buffer.capacity() >= Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("The record is too large to be held in memory!");
+        }
+        ByteBuffer larger = ByteBuffer.allocate((int) Math.min(buffer.capacity() * 2L, Integer.MAX_VALUE - 8));
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+
+    private static ByteBuffer ensureOutput(ByteBuffer output, int size) {
+        return output.capacity() >= size ? output
+                : ByteBuffer.allocate((int) Math.min(Math.max((long) size, output.capacity() * 2L), Integer.MAX_VALUE));
+    }
+
+    private static long writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer);
+        }
+        return written;
+    }
+
+    // endregion
+
+    // region Pool
+
+    private Cipher borrow() {
+        Cipher cipher = pool.poll();
+        return cipher != null ? cipher : newCipher();
+    }
+
+    private void release(Cipher cipher) {
+        pool.offer(cipher);
+    }
+
+    private Cipher newCipher() {
+        try {
+            return Cipher.getInstance(transformation);
+        } catch (GeneralSecurityException e) {
+            throw new UnsupportedHashAlgorithmException(transformation);
+        }
+    }
+
+    private byte[] newIv() {
+        if (encryptedCount.incrementAndGet() > MAX_GCM_RECORDS && mode == Mode.GCM) {
+            encryptedCount.decrementAndGet();
+            throw new IllegalStateException(String.format("%d records have been encrypted under this key with random " +
+                    "IVs, rotate the key!", MAX_GCM_RECORDS));
+        }
+        byte[] iv = new byte[ivLength];
+        RANDOM.get().nextBytes(iv);
+        return iv;
+    }
+
+    private AlgorithmParameterSpec parameters(byte[] iv) {
+        return parameters(iv, 0);
+    }
+
+    private AlgorithmParameterSpec parameters(byte[] iv, int off) {
+        return mode == Mode.GCM ? new GCMParameterSpec(TAG_LENGTH * 8, iv, off, ivLength)
+                : new IvParameterSpec(iv, off, ivLength);
+    }
+
+    private static RuntimeException failure(GeneralSecurityException e) {
+        if (e instanceof AEADBadTagException || e instanceof BadPaddingException) {
+            return new IllegalArgumentException("The record is corrupted or was encrypted with another key!", e);
+        }
+        return new IllegalStateException(e);
+    }
+
+    // endregion
+
+    /**
+     * Get the algorithm of this engine.
+     *
+     * @return {@link Hash#AES} or {@link Hash#DES}.
+     */
+    public Hash getMethod() {
+        return method;
+    }
+
+    /**
+     * Get the block cipher mode of this engine.
+     *
+     * @return The mode.
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Get the count of records this engine has encrypted.
+     *
+     * @return The count of records.
+     */
+    public long getEncryptedCount() {
+        return encryptedCount.get();
+    }
+
+    /**
+     * Get the length of the IV at the start of every record.
+     *
+     * @return The IV length in bytes.
+     */
+    public int getIvLength() {
+        return ivLength;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CipherEngine(transformation=%s, pooled=%d)", transformation, pool.size());
+    }
+
+    /**
+     * Inner class {@code Builder} of {@code CipherEngine}.
+     */
+    public static class Builder {
+
+        private final Hash method;
+
+        private final byte[] key;
+
+        private Mode mode;
+
+        private int poolSize = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Generate a new {@code Builder}, use protected to prevent other coders use it.
+         *
+         * @param method The algorithm.
+         * @param key    The key.
+         */
+        protected Builder(Hash method, byte[] key) {
+            if (method != Hash.AES && method != Hash.DES) {
+                throw new UnsupportedHashAlgorithmException(String.valueOf(method));
+            }
+            if (key == null) {
+                throw new IllegalArgumentException("Key can not be null!");
+            }
+            this.method = method;
+            this.key = key.clone();
+            this.mode = method == Hash.AES ? Mode.GCM : Mode.CBC;
+        }
+
+        /**
+         * Set the block cipher mode. Defaults to {@link Mode#GCM} for AES and {@link Mode#CBC} for DES.
+         *
+         * @param mode The mode.
+         * @return {@code Builder} instance itself.
+         */
+        public Builder mode(Mode mode) {
+            this.mode = mode;
+            return this;
+        }
+
+        /**
+         * Set how many idle ciphers the engine keeps. More ciphers than this may be in use at once, the extra ones
+         * are dropped when they are returned. Defaults to the count of available processors.
+         *
+         * @param poolSize The count of pooled ciphers.
+         * @return {@code Builder} instance itself.
+         */
+        public Builder poolSize(int poolSize) {
+            this.poolSize = poolSize;
+            return this;
+        }
+
+        /**
+         * Build a {@code CipherEngine} instance.
+         *
+         * @return A {@code CipherEngine} instance.
+         * @throws IllegalArgumentException If any setting is out of its range.
+         */
+        public CipherEngine build() {
+            if (mode == null) {
+                throw new IllegalArgumentException("Mode can not be null!");
+            }
+            if (mode == Mode.GCM && method != Hash.AES) {
+                throw new IllegalArgumentException("GCM mode should be used with AES!");
+            }
+            if (method == Hash.AES ? key.length != 16 && key.length != 24 && key.length != 32 : key.length != 8) {
+                throw new IllegalArgumentException(String.format("A %s key can not be %d bytes long!", method,
+                        key.length));
+            }
+            if (poolSize < 1) {
+                throw new IllegalArgumentException("Pool size can not be less than 1!");
+            }
+            return new CipherEngine(method, mode, key, poolSize);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package cn.vorbote.core.utils;
+
+import cn.vorbote.core.exceptions.SnowFlakeException;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@code ClockRegressionPolicy} decides what an id generator does when the clock steps backwards, for example after
+ * an NTP adjustment. Supported policies:
+ * <ul>
+ *     <li>{@link #reject()}: Refuse to generate ids until the clock catches up. This is the default behaviour.</li>
+ *     <li>{@link #logicalClock()}: Keep issuing ids against a logical clock which runs ahead of the wall clock.</li>
+ *     <li>{@link #boundedWait(long)}: Wait for the clock to catch up if the regression is not longer than a
+ *     threshold, otherwise reject.</li>
+ *     <li>{@link #backupSequenceBit()}: Reserve the highest sequence bit and switch to the other half of the sequence
+ *     space when the clock steps backwards.</li>
+ * </ul>
+ * Every policy counts how often it fired and how often it still had to reject. A policy instance keeps its own
+ * counters, so share one instance between generators only if the counters should be aggregated.
+ *
+ * @author vorbote
+ */
+public final class ClockRegressionPolicy {
+
+    /**
+     * The behaviours supported by {@code ClockRegressionPolicy}.
+     */
+    enum Mode {
+        REJECT, LOGICAL_CLOCK, BOUNDED_WAIT, BACKUP_SEQUENCE_BIT
+    }
+
+    private final Mode mode;
+
+    /**
+     * The longest regression in milliseconds {@link Mode#BOUNDED_WAIT} waits for.
+     */
+    private final long maxWaitMillis;
+
+    private final LongAdder fired = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private ClockRegressionPolicy(Mode mode, long maxWaitMillis) {
+        this.mode = mode;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * Create a policy which throws {@link SnowFlakeException} whenever the clock moved backwards.
+     *
+     * @return A new policy.
+     */
+    public static ClockRegressionPolicy reject() {
+        return new ClockRegressionPolicy(Mode.REJECT, 0L);
+    }
+
+    /**
+     * Create a policy which keeps issuing ids against a logical clock. While the wall clock is behind the timestamp of
+     * the last id, the generator keeps using that timestamp and moves it one millisecond ahead whenever the sequence
+     * runs out, so the ids stay unique and ascending. The ids carry timestamps ahead of the wall clock until it
+     * catches up.
+     *
+     * @return A new policy.
+     */
+    public static ClockRegressionPolicy logicalClock() {
+        return new ClockRegressionPolicy(Mode.LOGICAL_CLOCK, 0L);
+    }
+
+    /**
+     * Create a policy which waits for the clock to catch up if it moved backwards by no more than
+     * {@code maxWaitMillis} milliseconds, and throws {@link SnowFlakeException} for longer regressions.
+     *
+     * @param maxWaitMillis The longest regression to wait for, in milliseconds.
+     * @return A new policy.
+     * @throws IllegalArgumentException If {@code maxWaitMillis} is negative.
+     */
+    public static ClockRegressionPolicy boundedWait(long maxWaitMillis) {
+        if (maxWaitMillis < 0) {
+            throw new IllegalArgumentException("Max wait millis can not be less than 0!");
+        }
+        return new ClockRegressionPolicy(Mode.BOUNDED_WAIT, maxWaitMillis);
+    }
+
+    /**
+     * Create a policy which reserves the highest sequence bit as a backup bit, which halves the sequence numbers
+     * available in one millisecond. Each half of the sequence space remembers the timestamp of its last id; when the
+     * clock moves backwards the generator switches to the other half, as long as the clock is not behind the last
+     * timestamp of that half either. Only if both halves are ahead of the clock {@link SnowFlakeException} is thrown.
+     *
+     * @return A new policy.
+     */
+    public static ClockRegressionPolicy backupSequenceBit() {
+        return new ClockRegressionPolicy(Mode.BACKUP_SEQUENCE_BIT, 0L);
+    }
+
+    Mode getMode() {
+        return mode;
+    }
+
+    long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * Record that this policy handled a clock regression.
+     */
+    void fire() {
+        fired.increment();
+    }
+
+    /**
+     * Record that this policy refused a clock regression and build the exception to throw.
+     *
+     * @param regression The length of the regression in milliseconds.
+     * @return The exception to throw.
+     */
+    SnowFlakeException reject(long regression) {
+        rejected.increment();
+        return new SnowFlakeException(
+                String.format("Clock moved backwards. Refusing to generate id for %d milliseconds", regression));
+    }
+
+    /**
+     * Get how often this policy handled a clock regression without failing. For {@link #logicalClock()} every
+     * generation which ran ahead of the wall clock is counted.
+     *
+     * @return The count of handled regressions.
+     */
+    public long getFiredCount() {
+        return fired.sum();
+    }
+
+    /**
+     * Get how often this policy refused to generate an id because the clock moved backwards.
+     *
+     * @return The count of rejected regressions.
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public String toString() {
+        return mode == Mode.BOUNDED_WAIT ? mode + "(" + maxWaitMillis + "ms)" : mode.toString();
+    }
+}
@@ -0,0 +1,392 @@
+package cn.vorbote.core.utils;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * {@code Codec} converts binary data to text and back. Supported encodings:
+ * <ul>
+ *     <li>{@link #HEX}: Lower case hexadecimal. Decoding is case-insensitive.</li>
+ *     <li>{@link #BASE64}: The standard Base64 alphabet of RFC 4648, padded with {@code =}.</li>
+ *     <li>{@link #BASE64_URL}: The URL and file name safe Base64 alphabet of RFC 4648, without padding, as used by
+ *     JWT.</li>
+ *     <li>{@link #BASE32}: The Base32 alphabet of RFC 4648, padded with {@code =}. Decoding is case-insensitive.</li>
+ * </ul>
+ * Encoding and decoding go through lookup tables and read and write {@code byte[]}, {@code char[]},
+ * {@link CharSequence} and {@link ByteBuffer} directly, so no intermediate {@code String} or array is created unless
+ * the method returns one. Decoding accepts input with or without padding and rejects characters outside the alphabet.
+ *
+ * @author vorbote
+ * @see IdCodec
+ */
+public enum Codec {
+
+    HEX("0123456789abcdef", 4, 1, 2, false, true),
+
+    BASE64("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/", 6, 3, 4, true, false),
+
+    BASE64_URL("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_", 6, 3, 4, false, false),
+
+    BASE32("ABCDEFGHIJKLMNOPQRSTUVWXYZ234567", 5, 5, 8, true, true);
+
+    private static final char PAD = '=';
+
+    private final char[] alphabet;
+
+    private final byte[] decodeTable = new byte[128];
+
+    private final int bitsPerChar;
+
+    private final int charMask;
+
+    private final int blockBytes;
+
+    private final int blockChars;
+
+    private final boolean padded;
+
+    /**
+     * Build a codec.
+     *
+     * @param alphabet        The digits in the order of their values.
+     * @param bitsPerChar     The bits one character stands for.
+     * @param blockBytes      The count of bytes which encode to a whole count of characters.
+     * @param blockChars      The count of characters {@code blockBytes} bytes encode to.
+     * @param padded          Whether encoding pads the last block with {@code =}.
+     * @param caseInsensitive Whether decoding accepts both upper and lower case letters.
+     */
+    Codec(String alphabet, int bitsPerChar, int blockBytes, int blockChars, boolean padded, boolean caseInsensitive) {
+        this.alphabet = alphabet.toCharArray();
+        this.bitsPerChar = bitsPerChar;
+        this.charMask = (1 << bitsPerChar) - 1;
+        this.blockBytes = blockBytes;
+        this.blockChars = blockChars;
+        this.padded = padded;
+        Arrays.fill(decodeTable, (byte) -1);
+        for (int i = 0; i < this.alphabet.length; ++i) {
+            char c = this.alphabet[i];
+            decodeTable[c] = (byte) i;
+            if (caseInsensitive) {
+                decodeTable[Character.toLowerCase(c)] = (byte) i;
+                decodeTable[Character.toUpperCase(c)] = (byte) i;
+            }
+        }
+    }
+
+    // region Lengths
+
+    /**
+     * Get the count of characters a count of bytes encodes to.
+     *
+     * @param len The count of bytes.
+     * @return The count of characters, including padding.
+     */
+    public int encodedLength(int len) {
+        if (padded) {
+            return (len + blockBytes - 1) / blockBytes * blockChars;
+        }
+        return (int) (((long) len * 8 + bitsPerChar - 1) / bitsPerChar);
+    }
+
+    /**
+     * Get the count of bytes an encoded text decodes to.
+     *
+     * @param src The encoded text.
+     * @param off The index of the first character.
+     * @param len The count of characters, including padding.
+     * @return The count of bytes.
+     */
+    public int decodedLength(CharSequence src, int off, int len) {
+        while (len > 0 && src.charAt(off + len - 1) == PAD) {
+            --len;
+        }
+        return (int) ((long) len * bitsPerChar / 8);
+    }
+
+    // endregion
+
+    // region Encoding
+
+    /**
+     * Encode bytes into a new {@code String}.
+     *
+     * @param src The bytes.
+     * @return The encoded text.
+     */
+    public String encode(byte[] src) {
+        return encode(src, 0, src.length);
+    }
+
+    /**
+     * Encode a range of bytes into a new {@code String}.
+     *
+     * @param src The bytes.
+     * @param off The index of the first byte.
+     * @param len The count of bytes.
+     * @return The encoded text.
+     */
+    public String encode(byte[] src, int off, int len) {
+        char[] chars = new char[encodedLength(len)];
+        encode(src, off, len, chars, 0);
+        return new String(chars);
+    }
+
+    /**
+     * Encode a range of bytes into a {@code char[]}.
+     *
+     * @param src    The bytes.
+     * @param off    The index of the first byte.
+     * @param len    The count of bytes.
+     * @param dst    The array to write to.
+     * @param dstOff The index of the first character to write.
+     * @return The count of characters written, which is {@link #encodedLength(int)}.
+     * @throws IndexOutOfBoundsException If a range is out of the bounds of its array.
+     */
+    public int encode(byte[] src, int off, int len, char[] dst, int dstOff) {
+        int total = encodedLength(len);
+        checkRange(src.length, off, len);
+        checkRange(dst.length, dstOff, total);
+        int p = dstOff;
+        if (this == HEX) {
+            for (int i = off; i < off + len; ++i) {
+                dst[p++] = alphabet[(src[i] >> 4) & 0xf];
+                dst[p++] = alphabet[src[i] & 0xf];
+            }
+            return total;
+        }
+        int buffer = 0;
+        int bits = 0;
+        for (int i = off; i < off + len; ++i) {
+            buffer = (buffer << 8) | (src[i] & 0xff);
+            bits += 8;
+            while (bits >= bitsPerChar) {
+                bits -= bitsPerChar;
+                dst[p++] = alphabet[(buffer >>> bits) & charMask];
+            }
+        }
+        if (bits > 0) {
+            dst[p++] = alphabet[(buffer << (bitsPerChar - bits)) & charMask];
+        }
+        while (p < dstOff + total) {
+            dst[p++] = PAD;
+        }
+        return total;
+    }
+
+    /**
+     * Encode a range of bytes into ASCII bytes.
+     *
+     * @param src    The bytes.
+     * @param off    The index of the first byte.
+     * @param len    The count of bytes.
+     * @param dst    The array to write to.
+     * @param dstOff The index of the first byte to write.
+     * @return The count of bytes written, which is {@link #encodedLength(int)}.
+     * @throws IndexOutOfBoundsException If a range is out of the bounds of its array.
+     */
+    public int encode(byte[] src, int off, int len, byte[] dst, int dstOff) {
+        int total = encodedLength(len);
+        checkRange(src.length, off, len);
+        checkRange(dst.length, dstOff, total);
+        int p = dstOff;
+        int buffer = 0;
+        int bits = 0;
+        for (int i = off; i < off + len; ++i) {
+            buffer = (buffer << 8) | (src[i] & 0xff);
+            bits += 8;
+            while (bits >= bitsPerChar) {
+                bits -= bitsPerChar;
+                dst[p++] = (byte) alphabet[(buffer >>> bits) & charMask];
+            }
+        }
+        if (bits > 0) {
+            dst[p++] = (byte) alphabet[(buffer << (bitsPerChar - bits)) & charMask];
+        }
+        while (p < dstOff + total) {
+            dst[p++] = PAD;
+        }
+        return total;
+    }
+
+    /**
+     * Encode the remaining bytes of a buffer as ASCII bytes into another buffer. The positions of both buffers are
+     * advanced.
+     *
+     * @param src The bytes to encode.
+     * @param dst The buffer to write to.
+     * @return The count of bytes written.
+     * @throws BufferOverflowException If {@code dst} has not enough space remaining; neither buffer is changed then.
+     */
+    public int encode(ByteBuffer src, ByteBuffer dst) {
+        int len = src.remaining();
+        int total = encodedLength(len);
+        if (dst.remaining() < total) {
+            throw new BufferOverflowException();
+        }
+        if (src.hasArray() && dst.hasArray() && !dst.isReadOnly()) {
+            encode(src.array(), src.arrayOffset() + src.position(), len,
+                    dst.array(), dst.arrayOffset() + dst.position());
+            src.position(src.limit());
+            dst.position(dst.position() + total);
+            return total;
+        }
+        int start = dst.position();
+        int buffer = 0;
+        int bits = 0;
+        while (src.hasRemaining()) {
+            buffer = (buffer << 8) | (src.get() & 0xff);
+            bits += 8;
+            while (bits >= bitsPerChar) {
+                bits -= bitsPerChar;
+                dst.put((byte) alphabet[(buffer >>> bits) & charMask]);
+            }
+        }
+        if (bits > 0) {
+            dst.put((byte) alphabet[(buffer << (bitsPerChar - bits)) & charMask]);
+        }
+        while (dst.position() < start + total) {
+            dst.put((byte) PAD);
+        }
+        return total;
+    }
+
+    // endregion
+
+    // region Decoding
+
+    /**
+     * Decode a text into a new array.
+     *
+     * @param src The encoded text.
+     * @return The bytes.
+     * @throws IllegalArgumentException If the text is not valid for this encoding.
+     */
+    public byte[] decode(CharSequence src) {
+        byte[] bytes = new byte[decodedLength(src, 0, src.length())];
+        decode(src, 0, src.length(), bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * Decode a range of a {@code char[]} into an array.
+     *
+     * @param src    The encoded text.
+     * @param off    The index of the first character.
+     * @param len    The count of characters.
+     * @param dst    The array to write to.
+     * @param dstOff The index of the first byte to write.
+     * @return The count of bytes written.
+     * @throws IllegalArgumentException  If the text is not valid for this encoding.
+     * @throws IndexOutOfBoundsException If a range is out of the bounds of its array.
+     */
+    public int decode(char[] src, int off, int len, byte[] dst, int dstOff) {
+        checkRange(src.length, off, len);
+        return decode(CharBuffer.wrap(src), off, len, dst, dstOff);
+    }
+
+    /**
+     * Decode a range of a text into an array.
+     *
+     * @param src    The encoded text.
+     * @param off    The index of the first character.
+     * @param len    The count of characters.
+     * @param dst    The array to write to.
+     * @param dstOff The index of the first byte to write.
+     * @return The count of bytes written.
+     * @throws IllegalArgumentException  If the text is not valid for this encoding.
+     * @throws IndexOutOfBoundsException If a range is out of the bounds of its array.
+     */
+    public int decode(CharSequence src, int off, int len, byte[] dst, int dstOff) {
+        checkRange(src.length(), off, len);
+        int end = off + len;
+        while (end > off && src.charAt(end - 1) == PAD) {
+            --end;
+        }
+        checkLength(end - off);
+        int total = (int) ((long) (end - off) * bitsPerChar / 8);
+        checkRange(dst.length, dstOff, total);
+        int p = dstOff;
+        int buffer = 0;
+        int bits = 0;
+        for (int i = off; i < end; ++i) {
+            buffer = (buffer << bitsPerChar) | digit(src.charAt(i), i);
+            bits += bitsPerChar;
+            if (bits >= 8) {
+                bits -= 8;
+                dst[p++] = (byte) (buffer >>> bits);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Decode the remaining ASCII bytes of a buffer into another buffer. The positions of both buffers are advanced.
+     *
+     * @param src The encoded text as ASCII bytes.
+     * @param dst The buffer to write to.
+     * @return The count of bytes written.
+     * @throws IllegalArgumentException If the text is not valid for this encoding.
+     * @throws BufferOverflowException  If {@code dst} has not enough space remaining; neither buffer is changed then.
+     */
+    public int decode(ByteBuffer src, ByteBuffer dst) {
+        int start = src.position();
+        int end = src.limit();
+        while (end > start && src.get(end - 1) == PAD) {
+            --end;
+        }
+        checkLength(end - start);
+        int total = (int) ((long) (end - start) * bitsPerChar / 8);
+        if (dst.remaining() < total) {
+            throw new BufferOverflowException();
+        }
+        int buffer = 0;
+        int bits = 0;
+        for (int i = start; i < end; ++i) {
+            buffer = (buffer << bitsPerChar) | digit((char) (src.get(i) & 0xff), i);
+            bits += bitsPerChar;
+            if (bits >= 8) {
+                bits -= 8;
+                dst.put((byte) (buffer >>> bits));
+            }
+        }
+        src.position(src.limit());
+        return total;
+    }
+
+    private int digit(char c, int index) {
+        int digit = c < 128 ? decodeTable[c] : -1;
+        if (digit < 0) {
+            throw new IllegalArgumentException(String.format("Illegal character '%c' at %d for %s", c, index,
+                    name()));
+        }
+        return digit;
+    }
+
+    /**
+     * Reject a count of significant characters which no count of bytes encodes to, e.g. an odd count for hex.
+     *
+     * @param chars The count of characters without padding.
+     */
+    private void checkLength(int chars) {
+        int rest = chars % blockChars;
+        if (rest != 0 && encodedLengthWithoutPadding(rest * bitsPerChar / 8) != rest) {
+            throw new IllegalArgumentException(String.format("%d characters can not be decoded by %s", chars,
+                    name()));
+        }
+    }
+
+    private int encodedLengthWithoutPadding(int len) {
+        return (len * 8 + bitsPerChar - 1) / bitsPerChar;
+    }
+
+    // endregion
+
+    private static void checkRange(int length, int off, int len) {
+        if (off < 0 || len < 0 || off > length - len) {
+            throw new IndexOutOfBoundsException(String.format("Range [%d, %d + %d) is out of bounds for length %d",
+                    off, off, len, length));
+        }
+    }
+}
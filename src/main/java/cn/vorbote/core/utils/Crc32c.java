@@ -0,0 +1,99 @@
+package cn.vorbote.core.utils;
+
+/**
+ * CRC-32C (Castagnoli), see {@link FastHash#CRC32C}. {@code java.util.zip.CRC32C} needs Java 9, so the checksum is
+ * computed here with the slicing-by-8 method: eight tables let one step consume eight bytes.
+ *
+ * @author vorbote
+ */
+final class Crc32c extends FastHash.Streaming {
+
+    /**
+     * The reversed Castagnoli polynomial.
+     */
+    private static final int POLYNOMIAL = 0x82F63B78;
+
+    private static final int[][] TABLES = new int[8][256];
+
+    static {
+        for (int n = 0; n < 256; ++n) {
+            int crc = n;
+            for (int k = 0; k < 8; ++k) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLYNOMIAL : crc >>> 1;
+            }
+            TABLES[0][n] = crc;
+        }
+        for (int n = 0; n < 256; ++n) {
+            for (int t = 1; t < 8; ++t) {
+                int previous = TABLES[t - 1][n];
+                TABLES[t][n] = (previous >>> 8) ^ TABLES[0][previous & 0xff];
+            }
+        }
+    }
+
+    private int crc;
+
+    /**
+     * Continue a checksum over a range of bytes.
+     *
+     * @param crc   The checksum of the input before, 0 for no input.
+     * @param input The bytes.
+     * @param off   The index of the first byte.
+     * @param len   The count of bytes.
+     * @return The checksum including the range.
+     */
+    static int update(int crc, byte[] input, int off, int len) {
+        int[] t0 = TABLES[0];
+        int[] t1 = TABLES[1];
+        int[] t2 = TABLES[2];
+        int[] t3 = TABLES[3];
+        int[] t4 = TABLES[4];
+        int[] t5 = TABLES[5];
+        int[] t6 = TABLES[6];
+        int[] t7 = TABLES[7];
+        int c = ~crc;
+        int i = off;
+        int end = off + len;
+        while (i + 8 <= end) {
+            int lo = c ^ FastHash.getIntLE(input, i);
+            int hi = FastHash.getIntLE(input, i + 4);
+            c = t7[lo & 0xff] ^ t6[(lo >>> 8) & 0xff] ^ t5[(lo >>> 16) & 0xff] ^ t4[lo >>> 24]
+                    ^ t3[hi & 0xff] ^ t2[(hi >>> 8) & 0xff] ^ t1[(hi >>> 16) & 0xff] ^ t0[hi >>> 24];
+            i += 8;
+        }
+        while (i < end) {
+            c = t0[(c ^ input[i++]) & 0xff] ^ (c >>> 8);
+        }
+        return ~c;
+    }
+
+    @Override
+    public FastHash.Streaming update(byte[] input, int off, int len) {
+        crc = update(crc, input, off, len);
+        return this;
+    }
+
+    @Override
+    public FastHash.Streaming reset() {
+        crc = 0;
+        return this;
+    }
+
+    @Override
+    public long getValue() {
+        return crc & 0xffffffffL;
+    }
+
+    @Override
+    public int digest(byte[] out, int off) {
+        FastHash.putLongBE(out, off, getValue(), 4);
+        return 4;
+    }
+
+    @Override
+    public FastHash.Streaming copy() {
+        Crc32c copy = new Crc32c();
+        copy.crc = crc;
+        return copy;
+    }
+}
@@ -0,0 +1,353 @@
+package cn.vorbote.core.utils;
+
+import cn.vorbote.core.constants.Hash;
+import cn.vorbote.core.exceptions.UnsupportedHashAlgorithmException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@code DigestCache} memoizes the digests of strings which are hashed over and over, such as identifiers, so a
+ * repeated hash is a map lookup instead of a digest. It is a drop-in for {@link HashUtil#encrypt(Hash, String)}
+ * through {@link #encrypt(Hash, String)}.
+ * <p>
+ * The cache holds at most {@code maximumSize} entries and evicts with the CLOCK policy: entries sit in a ring, a hit
+ * only sets the reference bit of its entry, and an insertion sweeps the hand over the ring, clearing set bits and
+ * evicting the first entry whose bit is already clear. Hits take no lock, allocate nothing and write to shared memory
+ * only the first time an entry is hit after a sweep. A large ring is split into stripes with a hand and a lock each,
+ * picked by the hash of the input, so insertions of different inputs rarely wait for each other. Strings longer than
+ * {@code maxInputLength} are hashed without being cached, so a few huge inputs can not take up the memory.
+ * <p>
+ * Hits, misses and evictions are counted with {@link LongAdder}s and can be exported with
+ * {@link #bindTo(MetricsBinder, String)}.
+ *
+ * @author vorbote
+ */
+public final class DigestCache {
+
+    /**
+     * The fewest slots a stripe of the ring gets, so a small cache is not split into rings too short for CLOCK to
+     * tell hot entries from cold ones.
+     */
+    private static final int MIN_STRIPE_SIZE = 64;
+
+    private static final int MAX_STRIPES = 16;
+
+    /**
+     * The entries of every algorithm, indexed by {@link Hash#ordinal()}, so a hit is found by the input string alone.
+     */
+    private final List<ConcurrentHashMap<String, Node>> maps;
+
+    private final Node[] ring;
+
+    private final Stripe[] stripes;
+
+    private final int maxInputLength;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private DigestCache(int maximumSize, int maxInputLength) {
+        Hash[] hashes = Hash.values();
+        this.maps = new ArrayList<>(hashes.length);
+        for (int i = 0; i < hashes.length; ++i) {
+            maps.add(new ConcurrentHashMap<>());
+        }
+        this.ring = new Node[maximumSize];
+        int count = Integer.highestOneBit(Math.max(1, Math.min(MAX_STRIPES, maximumSize / MIN_STRIPE_SIZE)));
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; ++i) {
+            stripes[i] = new Stripe((int) ((long) maximumSize * i / count),
+                    (int) ((long) maximumSize * (i + 1) / count));
+        }
+        this.maxInputLength = maxInputLength;
+    }
+
+    /**
+     * Get a builder of a cache.
+     *
+     * @return A {@code Builder} instance.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Get the digest of the UTF-8 encoding of a string, from the cache if it is there.
+     *
+     * @param hash  The digest algorithm.
+     * @param input The string.
+     * @return A copy of the digest.
+     * @throws UnsupportedHashAlgorithmException If the algorithm is not a digest.
+     */
+    public byte[] digest(Hash hash, String input) {
+        return lookup(hash, input).digest.clone();
+    }
+
+    /**
+     * Get the hex encoded digest of the UTF-8 encoding of a string, from the cache if it is there. The result is the
+     * same as that of {@link HashUtil#encrypt(Hash, String)}.
+     *
+     * @param hash  The digest algorithm.
+     * @param input The string.
+     * @return The digest as a hex string.
+     * @throws UnsupportedHashAlgorithmException If the algorithm is not a digest.
+     */
+    public String encrypt(Hash hash, String input) {
+        Node node = lookup(hash, input);
+        String hex = node.hex;
+        if (hex == null) {
+            // Racing threads compute the same string, any of them may be kept.
+            hex = Codec.HEX.encode(node.digest);
+            node.hex = hex;
+        }
+        return hex;
+    }
+
+    private Node lookup(Hash hash, String input) {
+        Hasher hasher = Hasher.of(hash);
+        if (input.length() > maxInputLength) {
+            misses.increment();
+            return new Node(hash, input, hasher.digest(input));
+        }
+        ConcurrentHashMap<String, Node> map = maps.get(hash.ordinal());
+        Node node = map.get(input);
+        if (node != null) {
+            hits.increment();
+            if (!node.referenced) {
+                node.referenced = true;
+            }
+            return node;
+        }
+        misses.increment();
+        node = new Node(hash, input, hasher.digest(input));
+        // An input always maps to the same stripe, so racing insertions of it meet under one lock.
+        int h = input.hashCode() * 31 + hash.ordinal();
+        Stripe stripe = stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+        synchronized (stripe) {
+            Node existing = map.putIfAbsent(input, node);
+            if (existing != null) {
+                return existing;
+            }
+            admit(stripe, node);
+        }
+        return node;
+    }
+
+    /**
+     * Put a node into a stripe of the ring, evicting one if the stripe is full. The caller holds the lock of the
+     * stripe.
+     *
+     * @param stripe The stripe.
+     * @param node   The node.
+     */
+    private void admit(Stripe stripe, Node node) {
+        while (true) {
+            Node current = ring[stripe.hand];
+            if (current == null) {
+                break;
+            }
+            if (current.referenced) {
+                current.referenced = false;
+                stripe.advance();
+                continue;
+            }
+            maps.get(current.hash.ordinal()).remove(current.input, current);
+            evictions.increment();
+            break;
+        }
+        ring[stripe.hand] = node;
+        stripe.advance();
+    }
+
+    /**
+     * Remove all entries. The counters are kept.
+     */
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (int i = stripe.start; i < stripe.end; ++i) {
+                    Node node = ring[i];
+                    if (node != null) {
+                        maps.get(node.hash.ordinal()).remove(node.input, node);
+                        ring[i] = null;
+                    }
+                }
+                stripe.hand = stripe.start;
+            }
+        }
+    }
+
+    /**
+     * Export the counters through a binder, with names starting with a prefix.
+     *
+     * @param binder The binder of a metrics library.
+     * @param prefix The prefix of the names, e.g. {@code digest.cache}.
+     */
+    public void bindTo(MetricsBinder binder, String prefix) {
+        binder.counter(prefix + ".hits", "Digests served from the cache", this::getHitCount);
+        binder.counter(prefix + ".misses", "Digests computed", this::getMissCount);
+        binder.counter(prefix + ".evictions", "Entries evicted", this::getEvictionCount);
+        binder.gauge(prefix + ".size", "Entries in the cache", this::size);
+    }
+
+    /**
+     * Get the count of entries.
+     *
+     * @return The count of entries.
+     */
+    public long size() {
+        long size = 0;
+        for (ConcurrentHashMap<String, Node> map : maps) {
+            size += map.mappingCount();
+        }
+        return size;
+    }
+
+    /**
+     * Get the count of lookups answered from the cache.
+     *
+     * @return The count of hits.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the count of lookups which computed the digest, including those of inputs too long to be cached.
+     *
+     * @return The count of misses.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the count of entries evicted to make room for others.
+     *
+     * @return The count of evictions.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Get the share of lookups answered from the cache.
+     *
+     * @return The hit ratio from 0 to 1, or 0 if nothing was looked up yet.
+     */
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DigestCache(size=%d, maximumSize=%d, hits=%d, misses=%d, evictions=%d)", size(),
+                ring.length, getHitCount(), getMissCount(), getEvictionCount());
+    }
+
+    /**
+     * A range of slots of the ring with its own clock hand, guarded by the stripe itself.
+     */
+    private static final class Stripe {
+
+        private final int start;
+
+        private final int end;
+
+        private int hand;
+
+        Stripe(int start, int end) {
+            this.start = start;
+            this.end = end;
+            this.hand = start;
+        }
+
+        private void advance() {
+            hand = hand + 1 == end ? start : hand + 1;
+        }
+    }
+
+    private static final class Node {
+
+        private final Hash hash;
+
+        private final String input;
+
+        private final byte[] digest;
+
+        private volatile String hex;
+
+        /**
+         * The reference bit of the CLOCK policy. Races on it only make an eviction choice slightly less exact.
+         */
+        private volatile boolean referenced;
+
+        Node(Hash hash, String input, byte[] digest) {
+            this.hash = hash;
+            this.input = input;
+            this.digest = digest;
+        }
+    }
+
+    /**
+     * Inner class {@code Builder} of {@code DigestCache}.
+     */
+    public static class Builder {
+
+        private int maximumSize = 10_000;
+
+        private int maxInputLength = 256;
+
+        /**
+         * Generate a new {@code Builder}, use protected to prevent other coders use it.
+         */
+        protected Builder() {
+        }
+
+        /**
+         * Set the most entries the cache holds. Defaults to 10000.
+         *
+         * @param maximumSize The count of entries.
+         * @return {@code Builder} instance itself.
+         */
+        public Builder maximumSize(int maximumSize) {
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * Set the length of the longest string which is cached. Longer strings are hashed every time. Defaults to 256.
+         *
+         * @param maxInputLength The length in characters.
+         * @return {@code Builder} instance itself.
+         */
+        public Builder maxInputLength(int maxInputLength) {
+            this.maxInputLength = maxInputLength;
+            return this;
+        }
+
+        /**
+         * Build a {@code DigestCache} instance.
+         *
+         * @return A {@code DigestCache} instance.
+         * @throws IllegalArgumentException If any setting is out of its range.
+         */
+        public DigestCache build() {
+            if (maximumSize < 1) {
+                throw new IllegalArgumentException("Maximum size can not be less than 1!");
+            }
+            if (maxInputLength < 0) {
+                throw new IllegalArgumentException("Max input length can not be less than 0!");
+            }
+            return new DigestCache(maximumSize, maxInputLength);
+        }
+    }
+}
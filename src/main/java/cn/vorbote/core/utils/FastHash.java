@@ -0,0 +1,330 @@
+package cn.vorbote.core.utils;
+
+import cn.vorbote.core.constants.Hash;
+import cn.vorbote.core.exceptions.UnsupportedHashAlgorithmException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * {@code FastHash} provides non-cryptographic hashes for cache keys, partitioning and checksums, where a
+ * cryptographic digest is many times slower than needed:
+ * <ul>
+ *     <li>{@link #XXHASH_64}: xxHash64 with seed 0.</li>
+ *     <li>{@link #MURMUR3_32}: MurmurHash3 x86_32 with seed 0.</li>
+ *     <li>{@link #MURMUR3_128}: MurmurHash3 x64_128 with seed 0. {@link #hash64(byte[])} returns the first half.</li>
+ *     <li>{@link #CRC32C}: CRC-32C (Castagnoli), computed with slicing-by-8 tables.</li>
+ * </ul>
+ * The {@code hash64} methods return the hash as a {@code long}, 32-bit hashes zero-extended, without allocating. For
+ * input which arrives in pieces, {@link #newStreaming()} gives a {@link Streaming} state with the same results.
+ * Through {@link Hasher} and the streaming methods of {@link HashUtil} the same algorithms are available as byte
+ * digests under their {@link Hash} constants; 32-bit and 64-bit hashes are written big-endian, so their hex form is
+ * the number itself, and the 128-bit hash is written in the little-endian byte order of the reference implementation.
+ *
+ * @author vorbote
+ */
+public enum FastHash {
+
+    XXHASH_64(Hash.XXHASH_64, 8) {
+        @Override
+        public long hash64(byte[] input, int off, int len) {
+            checkRange(input, off, len);
+            return XxHash64.hash(input, off, len);
+        }
+
+        @Override
+        public Streaming newStreaming() {
+            return new XxHash64();
+        }
+    },
+
+    MURMUR3_32(Hash.MURMUR3_32, 4) {
+        @Override
+        public long hash64(byte[] input, int off, int len) {
+            checkRange(input, off, len);
+            return Murmur3.hash32(input, off, len) & 0xffffffffL;
+        }
+
+        @Override
+        public Streaming newStreaming() {
+            return new Murmur3.Streaming32();
+        }
+    },
+
+    MURMUR3_128(Hash.MURMUR3_128, 16) {
+        @Override
+        public long hash64(byte[] input, int off, int len) {
+            checkRange(input, off, len);
+            return Murmur3.hash128(input, off, len, null, 0);
+        }
+
+        @Override
+        public Streaming newStreaming() {
+            return new Murmur3.Streaming128();
+        }
+    },
+
+    CRC32C(Hash.CRC32C, 4) {
+        @Override
+        public long hash64(byte[] input, int off, int len) {
+            checkRange(input, off, len);
+            return Crc32c.update(0, input, off, len) & 0xffffffffL;
+        }
+
+        @Override
+        public Streaming newStreaming() {
+            return new Crc32c();
+        }
+    };
+
+    private final Hash hash;
+
+    private final int digestLength;
+
+    /**
+     * A state per thread for the inputs which can not be hashed in one pass over an array.
+     */
+    private final ThreadLocal<Streaming> local = ThreadLocal.withInitial(this::newStreaming);
+
+    FastHash(Hash hash, int digestLength) {
+        this.hash = hash;
+        this.digestLength = digestLength;
+    }
+
+    /**
+     * Get the {@code FastHash} of a {@link Hash} constant.
+     *
+     * @param hash The constant.
+     * @return The fast hash.
+     * @throws UnsupportedHashAlgorithmException If the constant is not a fast hash.
+     */
+    public static FastHash of(Hash hash) {
+        FastHash fastHash = find(hash);
+        if (fastHash == null) {
+            throw new UnsupportedHashAlgorithmException(hash.get());
+        }
+        return fastHash;
+    }
+
+    /**
+     * Get the {@code FastHash} of a {@link Hash} constant, if it is one.
+     *
+     * @param hash The constant.
+     * @return The fast hash, or {@code null}.
+     */
+    static FastHash find(Hash hash) {
+        for (FastHash fastHash : values()) {
+            if (fastHash.hash == hash) {
+                return fastHash;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Hash a range of a byte array.
+     *
+     * @param input The input.
+     * @param off   The index of the first byte.
+     * @param len   The count of bytes.
+     * @return The hash.
+     * @throws IndexOutOfBoundsException If the range is out of the bounds of {@code input}.
+     */
+    public abstract long hash64(byte[] input, int off, int len);
+
+    /**
+     * Create a new state to hash an input which arrives in pieces.
+     *
+     * @return A new streaming state.
+     */
+    public abstract Streaming newStreaming();
+
+    /**
+     * Hash a byte array.
+     *
+     * @param input The input.
+     * @return The hash.
+     */
+    public long hash64(byte[] input) {
+        return hash64(input, 0, input.length);
+    }
+
+    /**
+     * Hash the remaining bytes of a buffer. The position of the buffer is moved to its limit.
+     *
+     * @param input The input.
+     * @return The hash.
+     */
+    public long hash64(ByteBuffer input) {
+        if (input.hasArray()) {
+            long value = hash64(input.array(), input.arrayOffset() + input.position(), input.remaining());
+            input.position(input.limit());
+            return value;
+        }
+        Streaming streaming = local.get();
+        streaming.reset();
+        return streaming.update(input).getValue();
+    }
+
+    /**
+     * Hash the UTF-8 encoding of a character sequence, without creating a copy of it.
+     *
+     * @param input The input.
+     * @return The hash, equal to the hash of {@code input.toString().getBytes(StandardCharsets.UTF_8)}.
+     */
+    public long hash64(CharSequence input) {
+        Streaming streaming = local.get();
+        streaming.reset();
+        return streaming.update(input).getValue();
+    }
+
+    /**
+     * Get the {@link Hash} constant of this algorithm.
+     *
+     * @return The constant.
+     */
+    public Hash getHash() {
+        return hash;
+    }
+
+    /**
+     * Get the length of the byte form of a hash.
+     *
+     * @return The length in bytes.
+     */
+    public int getDigestLength() {
+        return digestLength;
+    }
+
+    private static void checkRange(byte[] input, int off, int len) {
+        if (off < 0 || len < 0 || off > input.length - len) {
+            throw new IndexOutOfBoundsException(String.format("Range [%d, %d + %d) is out of bounds for length %d",
+                    off, off, len, input.length));
+        }
+    }
+
+    static int getIntLE(byte[] b, int i) {
+        return (b[i] & 0xff) | (b[i + 1] & 0xff) << 8 | (b[i + 2] & 0xff) << 16 | (b[i + 3] & 0xff) << 24;
+    }
+
+    static long getLongLE(byte[] b, int i) {
+        return (getIntLE(b, i) & 0xffffffffL) | ((long) getIntLE(b, i + 4) << 32);
+    }
+
+    static void putLongLE(byte[] b, int i, long value) {
+        for (int j = 0; j < 8; ++j) {
+            b[i + j] = (byte) (value >>> (j * 8));
+        }
+    }
+
+    static void putLongBE(byte[] b, int i, long value, int bytes) {
+        for (int j = 0; j < bytes; ++j) {
+            b[i + j] = (byte) (value >>> ((bytes - 1 - j) * 8));
+        }
+    }
+
+    /**
+     * The state of a hash over an input which arrives in pieces. A state is not thread-safe.
+     */
+    public abstract static class Streaming {
+
+        /**
+         * Reused to copy bytes out of direct buffers and to encode text.
+         */
+        private byte[] scratch;
+
+        /**
+         * Add a range of bytes to the input.
+         *
+         * @param input The bytes.
+         * @param off   The index of the first byte.
+         * @param len   The count of bytes.
+         * @return The state itself.
+         */
+        public abstract Streaming update(byte[] input, int off, int len);
+
+        /**
+         * Forget all input, so the state can be reused.
+         *
+         * @return The state itself.
+         */
+        public abstract Streaming reset();
+
+        /**
+         * Get the hash of the input so far. The state is not changed, so more input can follow.
+         *
+         * @return The hash.
+         */
+        public abstract long getValue();
+
+        /**
+         * Write the byte form of the hash of the input so far.
+         *
+         * @param out The array to write to.
+         * @param off The index of the first byte to write.
+         * @return The count of bytes written.
+         */
+        public abstract int digest(byte[] out, int off);
+
+        /**
+         * Create an independent copy of this state.
+         *
+         * @return The copy.
+         */
+        public abstract Streaming copy();
+
+        /**
+         * Add a byte array to the input.
+         *
+         * @param input The bytes.
+         * @return The state itself.
+         */
+        public Streaming update(byte[] input) {
+            return update(input, 0, input.length);
+        }
+
+        /**
+         * Add the remaining bytes of a buffer to the input. The position of the buffer is moved to its limit.
+         *
+         * @param input The bytes.
+         * @return The state itself.
+         */
+        public Streaming update(ByteBuffer input) {
+            if (input.hasArray()) {
+                update(input.array(), input.arrayOffset() + input.position(), input.remaining());
+                input.position(input.limit());
+                return this;
+            }
+            byte[] buffer = scratch();
+            while (input.hasRemaining()) {
+                int count = Math.min(buffer.length, input.remaining());
+                input.get(buffer, 0, count);
+                update(buffer, 0, count);
+            }
+            return this;
+        }
+
+        /**
+         * Add the UTF-8 encoding of a character sequence to the input, without creating a copy of it.
+         *
+         * @param input The text.
+         * @return The state itself.
+         */
+        public Streaming update(CharSequence input) {
+            byte[] buffer = scratch();
+            int next = 0;
+            while (next < input.length()) {
+                long result = Utf8.encode(input, next, buffer);
+                next = (int) (result >>> 32);
+                update(buffer, 0, (int) result);
+            }
+            return this;
+        }
+
+        private byte[] scratch() {
+            if (scratch == null) {
+                scratch = new byte[1024];
+            }
+            return scratch;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package cn.vorbote.core.utils;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+/**
+ * Presents a {@link FastHash} as a {@link MessageDigest}, so {@link Hasher} and the streaming methods of
+ * {@link HashUtil} support the fast hashes like any other digest.
+ *
+ * @author vorbote
+ */
+final class FastHashDigest extends MessageDigest implements Cloneable {
+
+    private final FastHash fastHash;
+
+    private FastHash.Streaming streaming;
+
+    FastHashDigest(FastHash fastHash) {
+        super(fastHash.getHash().get());
+        this.fastHash = fastHash;
+        this.streaming = fastHash.newStreaming();
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        engineUpdate(new byte[]{input}, 0, 1);
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len) {
+        streaming.update(input, offset, len);
+    }
+
+    @Override
+    protected void engineUpdate(ByteBuffer input) {
+        streaming.update(input);
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+        byte[] digest = new byte[fastHash.getDigestLength()];
+        streaming.digest(digest, 0);
+        streaming.reset();
+        return digest;
+    }
+
+    @Override
+    protected void engineReset() {
+        streaming.reset();
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+        return fastHash.getDigestLength();
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        FastHashDigest copy = (FastHashDigest) super.clone();
+        copy.streaming = streaming.copy();
+        return copy;
+    }
+}
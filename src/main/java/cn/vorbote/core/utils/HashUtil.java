@@ -4,11 +4,19 @@ import cn.vorbote.core.constants.Hash;
 import cn.vorbote.core.exceptions.UnsupportedHashAlgorithmException;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.Base64;
-import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * HashUtil can help you hash arbitrary strings.
@@ -18,6 +26,32 @@ import java.util.Objects;
 @Slf4j
 public final class HashUtil {
 
+    /**
+     * The size of the buffer streams and channels are read through.
+     */
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Files of at least this size are memory-mapped instead of read.
+     */
+    private static final long MAP_THRESHOLD = 1024 * 1024;
+
+    /**
+     * The largest region of a file mapped at once.
+     */
+    private static final long MAP_REGION_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * The default chunk size of {@link #treeDigest(Hash, Path)}.
+     */
+    public static final int TREE_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * The buffer of each thread {@link #encrypt(Hash, String)} writes digests to before they are hex encoded, as long
+     * as the longest digest.
+     */
+    private static final ThreadLocal<byte[]> DIGEST_SCRATCH = ThreadLocal.withInitial(() -> new byte[64]);
+
     /**
      * Private constructor will prevent other coder create an instance of this class.
      */
@@ -31,9 +65,13 @@ public final class HashUtil {
      *     <li>{@code MD5}</li>
      *     <li>{@code SHA-1}</li>
      *     <li>{@code SHA-224}</li>
+     *     <li>{@code SHA-256}</li>
      *     <li>{@code SHA-384}</li>
      *     <li>{@code SHA-512}</li>
+     *     <li>{@code xxhash64}, {@code murmur3-32}, {@code murmur3-128}, {@code crc32c}, see {@link FastHash}</li>
      * </ul>
+     * The string is encoded in UTF-8 a chunk at a time into a fixed buffer and the digest is written to another one,
+     * so the only object created is the returned hex string.
      *
      * @param method Encrypt method.
      * @param value  The string will be encrypted
@@ -41,31 +79,277 @@ public final class HashUtil {
      * @throws UnsupportedHashAlgorithmException If the param method used an item which is
      *                                           not listed on the list above, the exception
      *                                           will be thrown.
-     * @see MessageDigest#getInstance(String)
+     * @see Hasher
+     * @see DigestCache
      */
     public static String encrypt(Hash method, String value) {
-        if (method == Hash.RC4 || method == Hash.AES || method == Hash.DES) {
-            throw new UnsupportedHashAlgorithmException(method.get());
+        byte[] digest = DIGEST_SCRATCH.get();
+        int length = Hasher.of(method).digest(value, digest, 0);
+        return Codec.HEX.encode(digest, 0, length);
+    }
+
+    /**
+     * Compute the HMAC of the UTF-8 encoding of a string, with the UTF-8 bytes of a key. Callers signing many messages
+     * with the same key should keep a {@link HmacSigner} instead, which processes the key only once.
+     *
+     * @param method The digest algorithm.
+     * @param key    The key.
+     * @param value  The message.
+     * @return The signature as a hex string.
+     * @throws UnsupportedHashAlgorithmException If the method is not a cryptographic digest.
+     */
+    public static String hmac(Hash method, String key, String value) {
+        return Codec.HEX.encode(HmacSigner.of(method, key).sign(value));
+    }
+
+    /**
+     * Digest everything an input stream provides, reading it through a fixed buffer. The stream is read to its end
+     * but not closed.
+     *
+     * @param method The digest algorithm.
+     * @param input  The stream.
+     * @return The digest.
+     * @throws IOException                       If the stream can not be read.
+     * @throws UnsupportedHashAlgorithmException If the method is not a digest algorithm.
+     */
+    public static byte[] digest(Hash method, InputStream input) throws IOException {
+        MessageDigest digest = Hasher.of(method).newDigest();
+        byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Digest everything a channel provides. Bytes are read into a direct buffer, so they are never copied into a
+     * {@code String}; a {@link FileChannel} is memory-mapped from its position if the rest of it is large. The
+     * channel is read to its end but not closed.
+     *
+     * @param method  The digest algorithm.
+     * @param channel The channel.
+     * @return The digest.
+     * @throws IOException                       If the channel can not be read.
+     * @throws UnsupportedHashAlgorithmException If the method is not a digest algorithm.
+     */
+    public static byte[] digest(Hash method, ReadableByteChannel channel) throws IOException {
+        MessageDigest digest = Hasher.of(method).newDigest();
+        if (channel instanceof FileChannel) {
+            FileChannel file = (FileChannel) channel;
+            long position = file.position();
+            long size = file.size();
+            if (size - position >= MAP_THRESHOLD) {
+                updateMapped(digest, file, position, size);
+                file.position(size);
+                return digest.digest();
+            }
         }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(STREAM_BUFFER_SIZE);
+        while (channel.read(buffer) != -1) {
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+        }
+        return digest.digest();
+    }
 
-        String result = "";
+    /**
+     * Digest a file. Files of 1 MiB or more are memory-mapped region by region, smaller files are read through a
+     * direct buffer.
+     *
+     * @param method The digest algorithm.
+     * @param file   The file.
+     * @return The digest.
+     * @throws IOException                       If the file can not be read.
+     * @throws UnsupportedHashAlgorithmException If the method is not a digest algorithm.
+     */
+    public static byte[] digest(Hash method, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return digest(method, channel);
+        }
+    }
+
+    /**
+     * Feed a range of a file into a digest through memory-mapped regions.
+     *
+     * @param digest The digest.
+     * @param file   The file.
+     * @param from   The first position.
+     * @param to     The position after the last one.
+     * @throws IOException If the file can not be mapped.
+     */
+    private static void updateMapped(MessageDigest digest, FileChannel file, long from, long to) throws IOException {
+        for (long position = from; position < to; position += MAP_REGION_SIZE) {
+            MappedByteBuffer region = file.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(MAP_REGION_SIZE, to - position));
+            digest.update(region);
+        }
+    }
+
+    /**
+     * Compute the {@link TreeDigest} of a file in chunks of {@link #TREE_CHUNK_SIZE} on the common
+     * {@link ForkJoinPool}.
+     *
+     * @param method The digest algorithm.
+     * @param file   The file.
+     * @return The tree digest.
+     * @throws IOException                       If the file can not be read.
+     * @throws UnsupportedHashAlgorithmException If the method is not a digest algorithm.
+     * @see #treeDigest(Hash, FileChannel, int, ForkJoinPool)
+     */
+    public static TreeDigest treeDigest(Hash method, Path file) throws IOException {
+        return treeDigest(method, file, TREE_CHUNK_SIZE);
+    }
+
+    /**
+     * Compute the {@link TreeDigest} of a file on the common {@link ForkJoinPool}.
+     *
+     * @param method    The digest algorithm.
+     * @param file      The file.
+     * @param chunkSize The size of the chunks.
+     * @return The tree digest.
+     * @throws IOException                       If the file can not be read.
+     * @throws UnsupportedHashAlgorithmException If the method is not a digest algorithm.
+     * @see #treeDigest(Hash, FileChannel, int, ForkJoinPool)
+     */
+    public static TreeDigest treeDigest(Hash method, Path file, int chunkSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return treeDigest(method, channel, chunkSize, ForkJoinPool.commonPool());
+        }
+    }
+
+    /**
+     * Compute the {@link TreeDigest} of a whole file, independent of the position of the channel. The chunks are
+     * hashed in parallel on the pool, each task mapping a region of up to 64 MiB and hashing the chunks in it; the
+     * inner nodes are then combined on the calling thread. The root does not depend on the pool, only on the
+     * content, the algorithm and the chunk size.
+     *
+     * @param method    The digest algorithm.
+     * @param file      The file.
+     * @param chunkSize The size of the chunks.
+     * @param pool      The pool to hash the chunks on.
+     * @return The tree digest.
+     * @throws IOException                       If the file can not be read.
+     * @throws IllegalArgumentException          If the chunk size is less than 1.
+     * @throws UnsupportedHashAlgorithmException If the method is not a digest algorithm.
+     */
+    public static TreeDigest treeDigest(Hash method, FileChannel file, int chunkSize, ForkJoinPool pool)
+            throws IOException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size can not be less than 1!");
+        }
+        Hasher hasher = Hasher.of(method);
+        long length = file.size();
+        byte[][] leaves = new byte[TreeDigest.chunkCount(length, chunkSize)][];
         try {
-            MessageDigest md = MessageDigest.getInstance(method.toString());
-            md.update(value.getBytes(StandardCharsets.UTF_8));
-            byte[] bytes = md.digest();
-            StringBuilder builder = new StringBuilder();
-            for (byte b : bytes) {
-                String str = Integer.toHexString(b & 0xff);
-                if (str.length() == 1) {
-                    builder.append("0");
-                }
-                builder.append(str);
+            pool.invoke(new LeafTask(hasher, file, length, chunkSize, leaves, 0, leaves.length));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return new TreeDigest(method, chunkSize, length, leaves);
+    }
+
+    /**
+     * Compute the leaf digest of one chunk of a file, to re-verify a chunk reported by
+     * {@link TreeDigest#changedChunks(TreeDigest)} without hashing the whole file again.
+     *
+     * @param method    The digest algorithm.
+     * @param file      The file.
+     * @param chunkSize The size of the chunks.
+     * @param index     The index of the chunk.
+     * @return The leaf digest.
+     * @throws IOException                       If the file can not be read.
+     * @throws IllegalArgumentException          If the chunk size is less than 1.
+     * @throws IndexOutOfBoundsException         If the file has no such chunk.
+     * @throws UnsupportedHashAlgorithmException If the method is not a digest algorithm.
+     */
+    public static byte[] chunkDigest(Hash method, Path file, int chunkSize, int index) throws IOException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size can not be less than 1!");
+        }
+        Hasher hasher = Hasher.of(method);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            int count = TreeDigest.chunkCount(length, chunkSize);
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException(String.format("Chunk %d out of bounds for %d chunks", index,
+                        count));
+            }
+            long from = (long) index * chunkSize;
+            int size = (int) Math.min(chunkSize, length - from);
+            ByteBuffer chunk = size == 0 ? ByteBuffer.allocate(0)
+                    : channel.map(FileChannel.MapMode.READ_ONLY, from, size);
+            return leaf(hasher, chunk);
+        }
+    }
+
+    /**
+     * Compute a leaf digest, {@code H(0x00 || chunk)}.
+     *
+     * @param hasher The hasher of the algorithm.
+     * @param chunk  The chunk, which is consumed.
+     * @return The leaf digest.
+     */
+    private static byte[] leaf(Hasher hasher, ByteBuffer chunk) {
+        MessageDigest digest = hasher.digest();
+        digest.update(TreeDigest.LEAF_PREFIX);
+        digest.update(chunk);
+        return digest.digest();
+    }
+
+    /**
+     * Hashes a range of chunks, splitting it until the range fits into one mapped region.
+     */
+    private static final class LeafTask extends RecursiveAction {
+
+        private final Hasher hasher;
+
+        private final FileChannel file;
+
+        private final long length;
+
+        private final int chunkSize;
+
+        private final byte[][] leaves;
+
+        private final int from;
+
+        private final int to;
+
+        LeafTask(Hasher hasher, FileChannel file, long length, int chunkSize, byte[][] leaves, int from, int to) {
+            this.hasher = hasher;
+            this.file = file;
+            this.length = length;
+            this.chunkSize = chunkSize;
+            this.leaves = leaves;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1 && (long) (to - from) * chunkSize > MAP_REGION_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new LeafTask(hasher, file, length, chunkSize, leaves, from, middle),
+                        new LeafTask(hasher, file, length, chunkSize, leaves, middle, to));
+                return;
+            }
+            long start = (long) from * chunkSize;
+            long end = Math.min((long) to * chunkSize, length);
+            ByteBuffer region;
+            try {
+                region = end > start ? file.map(FileChannel.MapMode.READ_ONLY, start, end - start)
+                        : ByteBuffer.allocate(0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            for (int i = from; i < to; ++i) {
+                int offset = (int) ((long) (i - from) * chunkSize);
+                region.limit((int) Math.min(offset + (long) chunkSize, region.capacity())).position(offset);
+                leaves[i] = leaf(hasher, region);
             }
-            result = builder.toString();
-        } catch (NoSuchAlgorithmException e) {
-            // It will get no exception, so ignore it
         }
-        return result;
     }
 
     /**
@@ -75,10 +359,7 @@ public final class HashUtil {
      * @return The encrypted String.
      */
     public static String base64Encode(String value) {
-        Base64.Encoder encoder = Base64.getEncoder();
-        byte[] encodedString = encoder.encode(value.getBytes(StandardCharsets.UTF_8));
-
-        return new String(encodedString);
+        return Codec.BASE64.encode(value.getBytes(StandardCharsets.UTF_8));
     }
 
     /**
@@ -88,10 +369,7 @@ public final class HashUtil {
      * @return The encrypted String.
      */
     public static String base64Decode(String value) {
-        Base64.Decoder decoder = Base64.getDecoder();
-        byte[] decodedString = decoder.decode(value.getBytes(StandardCharsets.UTF_8));
-
-        return new String(decodedString);
+        return new String(Codec.BASE64.decode(value));
     }
 
     /**
@@ -103,12 +381,15 @@ public final class HashUtil {
      * @return The original string.
      */
     public static String decrypt(Hash method, String key, byte[] data) {
-        if (method != Hash.RC4)
+        if (method != Hash.RC4 && method != Hash.AES && method != Hash.DES)
             throw new UnsupportedHashAlgorithmException("This algorithm is unsupported yet.");
         if (data == null || key == null) {
             return null;
         }
-        return asString(rc4Base(data, key));
+        if (method != Hash.RC4) {
+            return new String(cipherEngine(method, key).decrypt(data), StandardCharsets.UTF_8);
+        }
+        return asString(new Rc4(key).apply(data.clone()));
     }
 
     /**
@@ -120,12 +401,15 @@ public final class HashUtil {
      * @return The original string.
      */
     public static String decrypt(Hash method, String key, String data) {
-        if (method != Hash.RC4)
+        if (method != Hash.RC4 && method != Hash.AES && method != Hash.DES)
             throw new UnsupportedHashAlgorithmException("This algorithm is unsupported yet.");
         if (data == null || key == null) {
             return null;
         }
-        return new String(rc4Base(castHexStringToBytes(data), key));
+        if (method != Hash.RC4) {
+            return decrypt(method, key, Codec.HEX.decode(data));
+        }
+        return new String(new Rc4(key).apply(Codec.HEX.decode(data)));
     }
 
     /**
@@ -137,17 +421,20 @@ public final class HashUtil {
      * @return The encrypted String by stream.
      */
     public static byte[] encryptToByteStream(Hash method, String data, String key) {
-        if (method != Hash.RC4)
+        if (method != Hash.RC4 && method != Hash.AES && method != Hash.DES)
             throw new UnsupportedHashAlgorithmException("This algorithm is unsupported yet.");
         if (data == null || key == null) {
             return null;
         }
-        byte[] b_data = data.getBytes();
-        return rc4Base(b_data, key);
+        if (method != Hash.RC4) {
+            return cipherEngine(method, key).encrypt(data.getBytes(StandardCharsets.UTF_8));
+        }
+        return new Rc4(key).apply(data.getBytes());
     }
 
     /**
-     * Encrypt a string to a HexString
+     * Encrypt a string to a HexString. With {@link Hash#AES} or {@link Hash#DES} the UTF-8 bytes of the key are used
+     * as the key of a {@link CipherEngine} and its record is returned; any other method encrypts with RC4.
      *
      * @param method The specified method.
      * @param data   The origin data.
@@ -158,12 +445,22 @@ public final class HashUtil {
         if (data == null || key == null) {
             return null;
         }
-        return castToHexString(
-                asString(
-                        Objects.requireNonNull(encryptToByteStream(Hash.RC4, data, key))
-                )
-        );
+        if (method == Hash.AES || method == Hash.DES) {
+            return Codec.HEX.encode(encryptToByteStream(method, data, key));
+        }
+        return Codec.HEX.encode(new Rc4(key).apply(data.getBytes()));
+    }
 
+    /**
+     * Create a cipher engine of a key given as the bytes of a UTF-8 string. Callers encrypting many records should
+     * keep a {@link CipherEngine} instead, which reuses its ciphers.
+     *
+     * @param method {@link Hash#AES} or {@link Hash#DES}.
+     * @param key    The key, 16, 24 or 32 bytes for AES and 8 bytes for DES.
+     * @return The engine.
+     */
+    private static CipherEngine cipherEngine(Hash method, String key) {
+        return CipherEngine.builder(method, key.getBytes(StandardCharsets.UTF_8)).poolSize(1).build();
     }
 
     /**
@@ -180,118 +477,4 @@ public final class HashUtil {
         return sb.toString();
     }
 
-    /**
-     * Load key and transfer to byte array.
-     *
-     * @param key The key.
-     * @return The byte key.
-     */
-    private static byte[] initKey(String key) {
-        byte[] b_key = key.getBytes(StandardCharsets.UTF_8);
-        byte[] state = new byte[256];
-        for (int i = 0; i < 256; i++) {
-            state[i] = (byte) i;
-        }
-
-        int index1 = 0;
-        int index2 = 0;
-        if (b_key.length == 0) {
-            return null;
-        }
-
-        for (int i = 0; i < 256; i++) {
-            index2 = ((b_key[index1] & 0xff) + (state[i] & 0xff) + index2) & 0xff;
-            byte tmp = state[i];
-            state[i] = state[index2];
-            state[index2] = tmp;
-            index1 = (index1 + 1) % b_key.length;
-        }
-        return state;
-    }
-
-    /**
-     * Transfer a string to HexString.
-     *
-     * @param s The source string.
-     * @return The hex string of the origin.
-     */
-    private static String castToHexString(String s) {
-        StringBuilder str = new StringBuilder();
-
-        for (int i = 0; i < s.length(); i++) {
-            int ch = s.charAt(i);
-            String s4 = Integer.toHexString(ch & 0xFF);
-            if (s4.length() == 1) {
-                s4 = '0' + s4;
-            }
-            str.append(s4);
-
-        }
-
-        return str.toString();// 0x表示十六进制
-
-    }
-
-    /**
-     * Transfer a <b>hex</b> string to byte array.
-     *
-     * @param src The hex string.
-     * @return The byte stream of this string.
-     */
-    private static byte[] castHexStringToBytes(String src) {
-        int size = src.length();
-        byte[] ret = new byte[size / 2];
-        byte[] tmp = src.getBytes();
-        for (int i = 0; i < size / 2; i++) {
-            ret[i] = uniteBytes(tmp[i * 2], tmp[i * 2 + 1]);
-        }
-        return ret;
-    }
-
-    /**
-     * Calc the unite result.
-     *
-     * @param src0 The first op num.
-     * @param src1 The second op num.
-     * @return The result.
-     */
-    private static byte uniteBytes(byte src0, byte src1) {
-        char _b0 = (char) Byte.decode("0x" + new String(new byte[]{src0})).byteValue();
-
-        _b0 = (char) (_b0 << 4);
-
-        char _b1 = (char) Byte.decode("0x" + new String(new byte[]{src1})).byteValue();
-
-        return (byte) (_b0 ^ _b1);
-
-    }
-
-    /**
-     * Generate a RC4 base.
-     *
-     * @param input The input string bytes.
-     * @param m_key The key.
-     * @return The byte stream.
-     */
-    private static byte[] rc4Base(byte[] input, String m_key) {
-        int x = 0;
-        int y = 0;
-        byte[] key = initKey(m_key);
-        int xorIndex;
-        byte[] result = new byte[input.length];
-
-        for (int i = 0; i < input.length; i++) {
-            x = (x + 1) & 0xff;
-            assert key != null;
-            y = ((key[x] & 0xff) + y) & 0xff;
-            byte tmp = key[x];
-            key[x] = key[y];
-            key[y] = tmp;
-            xorIndex = ((key[x] & 0xff) + (key[y] & 0xff)) & 0xff;
-            result[i] = (byte) (input[i] ^ key[xorIndex]);
-        }
-
-        return result;
-    }
-
 }
@@ -0,0 +1,240 @@
+package cn.vorbote.core.utils;
+
+import cn.vorbote.core.constants.Hash;
+import cn.vorbote.core.exceptions.UnsupportedHashAlgorithmException;
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * {@code Hasher} computes the digest of a {@link Hash} algorithm. Looking up a {@link MessageDigest} with
+ * {@link MessageDigest#getInstance(String)} searches the security providers and allocates a new instance every time,
+ * which costs more than hashing a short key. A {@code Hasher} keeps one {@link MessageDigest} per thread instead and
+ * resets it after every use.
+ * <p>
+ * {@code Hasher}s are shared: {@link #of(Hash)} always returns the same instance for the same algorithm, and it can
+ * be used by any count of threads at the same time. The digests are held by a {@link ThreadLocal}, so threads of a
+ * pool keep theirs for their lifetime.
+ * <p>
+ * Besides the digests of the JVM, the non-cryptographic hashes of {@link FastHash} are supported. For them the
+ * {@code long} returning methods of {@link FastHash} are cheaper still.
+ *
+ * @author vorbote
+ */
+public final class Hasher {
+
+    /**
+     * The {@code Hasher}s created so far, indexed by the ordinal of their algorithm.
+     */
+    private static final AtomicReferenceArray<Hasher> HASHERS = new AtomicReferenceArray<>(Hash.values().length);
+
+    /**
+     * The size of the buffer text is encoded into, a chunk at a time, before it is hashed.
+     */
+    private static final int SCRATCH_SIZE = 1024;
+
+    /**
+     * The encoding buffer of each thread, shared by all {@code Hasher}s.
+     */
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[SCRATCH_SIZE]);
+
+    private final Hash hash;
+
+    private final MessageDigest prototype;
+
+    private final int digestLength;
+
+    private final ThreadLocal<MessageDigest> digests;
+
+    private Hasher(Hash hash, MessageDigest prototype) {
+        this.hash = hash;
+        this.prototype = prototype;
+        this.digestLength = prototype.getDigestLength();
+        this.digests = ThreadLocal.withInitial(this::newDigest);
+    }
+
+    /**
+     * Get the {@code Hasher} of an algorithm.
+     *
+     * @param hash The algorithm.
+     * @return The shared {@code Hasher} of the algorithm.
+     * @throws UnsupportedHashAlgorithmException If the algorithm is not a digest, such as {@link Hash#RC4}, or the
+     *                                           JVM does not provide it.
+     */
+    public static Hasher of(Hash hash) {
+        Hasher hasher = HASHERS.get(hash.ordinal());
+        if (hasher != null) {
+            return hasher;
+        }
+        if (hash == Hash.RC4 || hash == Hash.AES || hash == Hash.DES) {
+            throw new UnsupportedHashAlgorithmException(hash.get());
+        }
+        FastHash fastHash = FastHash.find(hash);
+        try {
+            hasher = new Hasher(hash, fastHash != null
+                    ? new FastHashDigest(fastHash) : MessageDigest.getInstance(hash.get()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new UnsupportedHashAlgorithmException(hash.get());
+        }
+        return HASHERS.compareAndSet(hash.ordinal(), null, hasher) ? hasher : HASHERS.get(hash.ordinal());
+    }
+
+    /**
+     * Get the digest of the calling thread, reset and ready for use. It must not be held across calls which may use
+     * this {@code Hasher} again on the same thread.
+     *
+     * @return The digest.
+     */
+    MessageDigest digest() {
+        MessageDigest digest = digests.get();
+        // A previous use may have failed halfway.
+        digest.reset();
+        return digest;
+    }
+
+    /**
+     * Create a new digest of this algorithm which is not shared with anyone, e.g. to hash a stream over several calls.
+     *
+     * @return A new digest.
+     */
+    public MessageDigest newDigest() {
+        try {
+            return (MessageDigest) prototype.clone();
+        } catch (CloneNotSupportedException e) {
+            try {
+                return MessageDigest.getInstance(hash.get());
+            } catch (NoSuchAlgorithmException ex) {
+                throw new UnsupportedHashAlgorithmException(hash.get());
+            }
+        }
+    }
+
+    /**
+     * Get the digest of a byte array.
+     *
+     * @param input The input.
+     * @return The digest.
+     */
+    public byte[] digest(byte[] input) {
+        return digest().digest(input);
+    }
+
+    /**
+     * Get the digest of a range of a byte array.
+     *
+     * @param input The input.
+     * @param off   The index of the first byte.
+     * @param len   The count of bytes.
+     * @return The digest.
+     */
+    public byte[] digest(byte[] input, int off, int len) {
+        MessageDigest digest = digest();
+        digest.update(input, off, len);
+        return digest.digest();
+    }
+
+    /**
+     * Get the digest of the remaining bytes of a buffer. The position of the buffer is moved to its limit.
+     *
+     * @param input The input.
+     * @return The digest.
+     */
+    public byte[] digest(ByteBuffer input) {
+        MessageDigest digest = digest();
+        digest.update(input);
+        return digest.digest();
+    }
+
+    /**
+     * Get the digest of the UTF-8 encoding of a character sequence. The text is encoded a chunk at a time into a fixed
+     * buffer of the thread, so no {@code byte[]} copy of it is made, however long it is.
+     *
+     * @param input The input.
+     * @return The digest.
+     */
+    public byte[] digest(CharSequence input) {
+        MessageDigest digest = digest();
+        update(digest, input);
+        return digest.digest();
+    }
+
+    /**
+     * Write the digest of the UTF-8 encoding of a character sequence into an array, without allocating.
+     *
+     * @param input  The input.
+     * @param out    The array to write the digest to.
+     * @param outOff The index to write the first byte of the digest to.
+     * @return The count of bytes written, which is {@link #getDigestLength()}.
+     * @throws IllegalArgumentException If {@code out} has less than {@link #getDigestLength()} bytes from
+     *                                  {@code outOff}.
+     */
+    public int digest(CharSequence input, byte[] out, int outOff) {
+        MessageDigest digest = digest();
+        update(digest, input);
+        try {
+            return digest.digest(out, outOff, out.length - outOff);
+        } catch (DigestException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Feed the UTF-8 encoding of a character sequence into a digest through the buffer of the thread.
+     *
+     * @param digest The digest.
+     * @param input  The text.
+     */
+    private static void update(MessageDigest digest, CharSequence input) {
+        byte[] scratch = SCRATCH.get();
+        int next = 0;
+        int length = input.length();
+        while (next < length) {
+            long result = Utf8.encode(input, next, scratch);
+            next = (int) (result >>> 32);
+            digest.update(scratch, 0, (int) result);
+        }
+    }
+
+    /**
+     * Write the digest of a range of a byte array into an array, without allocating.
+     *
+     * @param input  The input.
+     * @param off    The index of the first byte.
+     * @param len    The count of bytes.
+     * @param out    The array to write the digest to.
+     * @param outOff The index to write the first byte of the digest to.
+     * @return The count of bytes written, which is {@link #getDigestLength()}.
+     * @throws IllegalArgumentException If {@code out} has less than {@link #getDigestLength()} bytes from
+     *                                  {@code outOff}.
+     */
+    public int digest(byte[] input, int off, int len, byte[] out, int outOff) {
+        MessageDigest digest = digest();
+        digest.update(input, off, len);
+        try {
+            return digest.digest(out, outOff, out.length - outOff);
+        } catch (DigestException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Get the algorithm of this {@code Hasher}.
+     *
+     * @return The algorithm.
+     */
+    public Hash getHash() {
+        return hash;
+    }
+
+    /**
+     * Get the length of the digests of this algorithm.
+     *
+     * @return The length in bytes.
+     */
+    public int getDigestLength() {
+        return digestLength;
+    }
+}
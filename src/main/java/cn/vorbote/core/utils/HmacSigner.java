@@ -0,0 +1,452 @@
+package cn.vorbote.core.utils;
+
+import cn.vorbote.core.constants.Hash;
+import cn.vorbote.core.exceptions.UnsupportedHashAlgorithmException;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * {@code HmacSigner} computes the HMAC (RFC 2104) of a {@link Hash} digest under one key. The key is processed once:
+ * every thread gets a copy of a {@link Mac} which is already initialised, so signing a message costs the hashing and
+ * one {@link Mac#doFinal()}, not an {@link Mac#init(java.security.Key)} per message. {@link Hash#MD2}, which the JVM
+ * has no {@link Mac} for, is computed over its {@link MessageDigest} the same way.
+ * <p>
+ * A signer can be used by any count of threads at the same time. {@link #verify(byte[], byte[])} and its overloads
+ * compare in constant time, so they do not tell how much of a forged signature is right.
+ *
+ * @author vorbote
+ */
+public final class HmacSigner {
+
+    /**
+     * The size of the buffer text is encoded into before it is signed.
+     */
+    private static final int SCRATCH_SIZE = 1024;
+
+    private final Hash hash;
+
+    private final int macLength;
+
+    private final ThreadLocal<State> states;
+
+    private HmacSigner(Hash hash, State prototype) {
+        this.hash = hash;
+        this.macLength = prototype.length();
+        this.states = ThreadLocal.withInitial(prototype::copy);
+    }
+
+    /**
+     * Create a signer of a key.
+     *
+     * @param hash The digest algorithm.
+     * @param key  The key, which is copied.
+     * @return The signer.
+     * @throws UnsupportedHashAlgorithmException If the algorithm is not a cryptographic digest.
+     */
+    public static HmacSigner of(Hash hash, byte[] key) {
+        if (hash == Hash.RC4 || hash == Hash.AES || hash == Hash.DES || FastHash.find(hash) != null) {
+            throw new UnsupportedHashAlgorithmException(hash.get());
+        }
+        String algorithm = "Hmac" + hash.name().replace("_", "");
+        try {
+            Mac mac = Mac.getInstance(algorithm);
+            // SecretKeySpec refuses an empty key, which HMAC pads to the same block as a single zero byte.
+            mac.init(new SecretKeySpec(key.length == 0 ? new byte[1] : key, algorithm));
+            return new HmacSigner(hash, new MacState(mac));
+        } catch (GeneralSecurityException e) {
+            return new HmacSigner(hash, new DigestState(Hasher.of(hash), key));
+        }
+    }
+
+    /**
+     * Create a signer of a key given as the bytes of a UTF-8 string.
+     *
+     * @param hash The digest algorithm.
+     * @param key  The key.
+     * @return The signer.
+     * @throws UnsupportedHashAlgorithmException If the algorithm is not a cryptographic digest.
+     */
+    public static HmacSigner of(Hash hash, String key) {
+        return of(hash, key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private State state() {
+        State state = states.get();
+        // A previous use may have failed halfway.
+        state.reset();
+        return state;
+    }
+
+    // region Sign
+
+    /**
+     * Sign a byte array.
+     *
+     * @param input The message.
+     * @return The signature.
+     */
+    public byte[] sign(byte[] input) {
+        return sign(input, 0, input.length);
+    }
+
+    /**
+     * Sign a range of a byte array.
+     *
+     * @param input The message.
+     * @param off   The index of the first byte.
+     * @param len   The count of bytes.
+     * @return The signature.
+     */
+    public byte[] sign(byte[] input, int off, int len) {
+        byte[] signature = new byte[macLength];
+        sign(input, off, len, signature, 0);
+        return signature;
+    }
+
+    /**
+     * Sign the remaining bytes of a buffer. The position of the buffer is moved to its limit.
+     *
+     * @param input The message.
+     * @return The signature.
+     */
+    public byte[] sign(ByteBuffer input) {
+        State state = state();
+        state.update(input);
+        byte[] signature = new byte[macLength];
+        state.finish(signature, 0);
+        return signature;
+    }
+
+    /**
+     * Sign the UTF-8 encoding of a character sequence, which is encoded a chunk at a time into a buffer of the
+     * thread rather than into a new array.
+     *
+     * @param input The message.
+     * @return The signature.
+     */
+    public byte[] sign(CharSequence input) {
+        State state = state();
+        state.update(input);
+        byte[] signature = new byte[macLength];
+        state.finish(signature, 0);
+        return signature;
+    }
+
+    /**
+     * Write the signature of a range of a byte array into an array, without allocating.
+     *
+     * @param input  The message.
+     * @param off    The index of the first byte.
+     * @param len    The count of bytes.
+     * @param out    The array to write the signature to.
+     * @param outOff The index to write the first byte of the signature to.
+     * @return The count of bytes written, which is {@link #getMacLength()}.
+     * @throws IllegalArgumentException If {@code out} has less than {@link #getMacLength()} bytes from {@code outOff}.
+     */
+    public int sign(byte[] input, int off, int len, byte[] out, int outOff) {
+        if (outOff < 0 || outOff > out.length - macLength) {
+            throw new IllegalArgumentException(String.format("Signature needs %d bytes, got %d", macLength,
+                    Math.max(out.length - outOff, 0)));
+        }
+        State state = state();
+        state.update(input, off, len);
+        state.finish(out, outOff);
+        return macLength;
+    }
+
+    // endregion
+
+    // region Verify
+
+    /**
+     * Check the signature of a byte array in constant time.
+     *
+     * @param input     The message.
+     * @param signature The signature to check.
+     * @return {@code true} if the signature is right.
+     */
+    public boolean verify(byte[] input, byte[] signature) {
+        return verify(input, 0, input.length, signature, 0, signature.length);
+    }
+
+    /**
+     * Check the signature of a range of a byte array in constant time, e.g. of a token whose signature follows its
+     * content in the same array.
+     *
+     * @param input     The array holding the message.
+     * @param off       The index of the first byte of the message.
+     * @param len       The count of bytes of the message.
+     * @param signature The array holding the signature to check.
+     * @param sigOff    The index of the first byte of the signature.
+     * @param sigLen    The count of bytes of the signature.
+     * @return {@code true} if the signature is right.
+     */
+    public boolean verify(byte[] input, int off, int len, byte[] signature, int sigOff, int sigLen) {
+        State state = state();
+        state.update(input, off, len);
+        return state.matches(signature, sigOff, sigLen);
+    }
+
+    /**
+     * Check the signature of the remaining bytes of a buffer in constant time. The position of the buffer is moved
+     * to its limit.
+     *
+     * @param input     The message.
+     * @param signature The signature to check.
+     * @return {@code true} if the signature is right.
+     */
+    public boolean verify(ByteBuffer input, byte[] signature) {
+        State state = state();
+        state.update(input);
+        return state.matches(signature, 0, signature.length);
+    }
+
+    /**
+     * Check the signature of the UTF-8 encoding of a character sequence in constant time.
+     *
+     * @param input     The message.
+     * @param signature The signature to check.
+     * @return {@code true} if the signature is right.
+     */
+    public boolean verify(CharSequence input, byte[] signature) {
+        State state = state();
+        state.update(input);
+        return state.matches(signature, 0, signature.length);
+    }
+
+    /**
+     * Compare two ranges in time which only depends on their length.
+     *
+     * @return {@code true} if the ranges hold the same bytes.
+     */
+    static boolean constantTimeEquals(byte[] a, int aOff, byte[] b, int bOff, int len) {
+        int difference = 0;
+        for (int i = 0; i < len; ++i) {
+            difference |= a[aOff + i] ^ b[bOff + i];
+        }
+        return difference == 0;
+    }
+
+    // endregion
+
+    /**
+     * Get the digest algorithm of this signer.
+     *
+     * @return The algorithm.
+     */
+    public Hash getHash() {
+        return hash;
+    }
+
+    /**
+     * Get the length of the signatures.
+     *
+     * @return The length in bytes, the digest length of the algorithm.
+     */
+    public int getMacLength() {
+        return macLength;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("HmacSigner(hash=%s, macLength=%d)", hash, macLength);
+    }
+
+    /**
+     * The keyed state of one thread.
+     */
+    private abstract static class State {
+
+        private byte[] scratch;
+
+        private byte[] expected;
+
+        abstract void update(byte[] input, int off, int len);
+
+        abstract void update(ByteBuffer input);
+
+        abstract void finish(byte[] out, int off);
+
+        abstract void reset();
+
+        abstract int length();
+
+        abstract State copy();
+
+        void update(CharSequence input) {
+            if (scratch == null) {
+                scratch = new byte[SCRATCH_SIZE];
+            }
+            int next = 0;
+            while (next < input.length()) {
+                long result = Utf8.encode(input, next, scratch);
+                next = (int) (result >>> 32);
+                update(scratch, 0, (int) result);
+            }
+        }
+
+        boolean matches(byte[] signature, int off, int len) {
+            if (expected == null) {
+                expected = new byte[length()];
+            }
+            finish(expected, 0);
+            return len == expected.length && constantTimeEquals(expected, 0, signature, off, len);
+        }
+    }
+
+    private static final class MacState extends State {
+
+        private final Mac mac;
+
+        MacState(Mac mac) {
+            this.mac = mac;
+        }
+
+        @Override
+        void update(byte[] input, int off, int len) {
+            mac.update(input, off, len);
+        }
+
+        @Override
+        void update(ByteBuffer input) {
+            mac.update(input);
+        }
+
+        @Override
+        void finish(byte[] out, int off) {
+            try {
+                mac.doFinal(out, off);
+            } catch (ShortBufferException e) {
+                throw new IllegalArgumentException(e.getMessage(), e);
+            }
+        }
+
+        @Override
+        void reset() {
+            mac.reset();
+        }
+
+        @Override
+        int length() {
+            return mac.getMacLength();
+        }
+
+        @Override
+        State copy() {
+            try {
+                return new MacState((Mac) mac.clone());
+            } catch (CloneNotSupportedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * HMAC over a {@link MessageDigest}, for the digests the JVM has no {@link Mac} of. The padded key blocks are
+     * computed once.
+     */
+    private static final class DigestState extends State {
+
+        private final MessageDigest inner;
+
+        private final MessageDigest outer;
+
+        private final byte[] innerPad;
+
+        private final byte[] outerPad;
+
+        /**
+         * Whether the inner digest holds nothing but the inner pad.
+         */
+        private boolean primed;
+
+        DigestState(Hasher hasher, byte[] key) {
+            this.inner = hasher.newDigest();
+            this.outer = hasher.newDigest();
+            int blockSize = blockSize(hasher.getHash());
+            byte[] block = Arrays.copyOf(key.length > blockSize ? hasher.digest(key) : key, blockSize);
+            this.innerPad = new byte[blockSize];
+            this.outerPad = new byte[blockSize];
+            for (int i = 0; i < blockSize; ++i) {
+                innerPad[i] = (byte) (block[i] ^ 0x36);
+                outerPad[i] = (byte) (block[i] ^ 0x5c);
+            }
+            inner.update(innerPad);
+            primed = true;
+        }
+
+        private DigestState(DigestState source) {
+            try {
+                this.inner = (MessageDigest) source.inner.clone();
+                this.outer = (MessageDigest) source.outer.clone();
+            } catch (CloneNotSupportedException e) {
+                throw new IllegalStateException(e);
+            }
+            this.innerPad = source.innerPad;
+            this.outerPad = source.outerPad;
+            this.primed = source.primed;
+            reset();
+        }
+
+        private static int blockSize(Hash hash) {
+            switch (hash) {
+                case MD2:
+                    return 16;
+                case SHA_384:
+                case SHA_512:
+                    return 128;
+                default:
+                    return 64;
+            }
+        }
+
+        @Override
+        void update(byte[] input, int off, int len) {
+            primed = false;
+            inner.update(input, off, len);
+        }
+
+        @Override
+        void update(ByteBuffer input) {
+            primed = false;
+            inner.update(input);
+        }
+
+        @Override
+        void finish(byte[] out, int off) {
+            outer.reset();
+            outer.update(outerPad);
+            outer.update(inner.digest());
+            inner.update(innerPad);
+            primed = true;
+            byte[] mac = outer.digest();
+            System.arraycopy(mac, 0, out, off, mac.length);
+        }
+
+        @Override
+        void reset() {
+            if (!primed) {
+                inner.reset();
+                inner.update(innerPad);
+                primed = true;
+            }
+        }
+
+        @Override
+        int length() {
+            return inner.getDigestLength();
+        }
+
+        @Override
+        State copy() {
+            return new DigestState(this);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package cn.vorbote.core.utils;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * {@code IdCodec} encodes {@code long} ids, such as the ids generated by {@link SnowFlake}, into compact strings and
+ * decodes them back. Supported encodings:
+ * <ul>
+ *     <li>{@link #BASE62}: {@code 0-9A-Za-z}, 11 characters.</li>
+ *     <li>{@link #CROCKFORD_BASE32}: Crockford's Base32 alphabet, 13 characters. Decoding is case-insensitive and
+ *     accepts {@code I}/{@code L} as {@code 1} and {@code O} as {@code 0}.</li>
+ *     <li>{@link #HEX}: Lower case hexadecimal, 16 characters.</li>
+ * </ul>
+ * Every encoding has a fixed width, is padded with its zero digit, and uses an alphabet in ascending ASCII order, so
+ * comparing two encoded ids lexicographically gives the same result as comparing the ids as unsigned numbers. For the
+ * non-negative ids of {@link SnowFlake} that is the numeric order.
+ * <p>
+ * Encoding writes straight into a caller supplied {@code char[]}, {@link StringBuilder} or {@link ByteBuffer}, and
+ * decoding reads straight from a {@link CharSequence}, so neither needs an intermediate {@code String}.
+ *
+ * @author vorbote
+ */
+public enum IdCodec {
+
+    BASE62("0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz", 11, false, "") {
+        @Override
+        int lowDigit(long value) {
+            return (int) Long.remainderUnsigned(value, 62L);
+        }
+
+        @Override
+        long shiftDown(long value) {
+            return Long.divideUnsigned(value, 62L);
+        }
+
+        @Override
+        long accumulate(long value, int digit) {
+            if (Long.compareUnsigned(value, MAX_BEFORE_BASE62_DIGIT) > 0) {
+                throw overflow();
+            }
+            long result = value * 62L + digit;
+            if (Long.compareUnsigned(result, value * 62L) < 0) {
+                throw overflow();
+            }
+            return result;
+        }
+    },
+
+    CROCKFORD_BASE32("0123456789ABCDEFGHJKMNPQRSTVWXYZ", 13, true, "I1L1O0") {
+        @Override
+        int lowDigit(long value) {
+            return (int) (value & 0x1f);
+        }
+
+        @Override
+        long shiftDown(long value) {
+            return value >>> 5;
+        }
+
+        @Override
+        long accumulate(long value, int digit) {
+            if ((value >>> 59) != 0) {
+                throw overflow();
+            }
+            return (value << 5) | digit;
+        }
+    },
+
+    HEX("0123456789abcdef", 16, true, "") {
+        @Override
+        int lowDigit(long value) {
+            return (int) (value & 0xf);
+        }
+
+        @Override
+        long shiftDown(long value) {
+            return value >>> 4;
+        }
+
+        @Override
+        long accumulate(long value, int digit) {
+            return (value << 4) | digit;
+        }
+    };
+
+    /**
+     * The largest value which can be multiplied by 62 without overflowing an unsigned long.
+     */
+    private static final long MAX_BEFORE_BASE62_DIGIT = Long.divideUnsigned(-1L, 62L);
+
+    private final char[] alphabet;
+
+    private final byte[] decodeTable = new byte[128];
+
+    private final int width;
+
+    /**
+     * Build a codec.
+     *
+     * @param alphabet        The digits in ascending order.
+     * @param width           The fixed count of characters of an encoded id.
+     * @param caseInsensitive Whether decoding accepts both upper and lower case letters.
+     * @param aliases         Extra characters accepted by decoding, as pairs of the alias and the digit it stands for.
+     */
+    IdCodec(String alphabet, int width, boolean caseInsensitive, String aliases) {
+        this.alphabet = alphabet.toCharArray();
+        this.width = width;
+        Arrays.fill(decodeTable, (byte) -1);
+        for (int i = 0; i < this.alphabet.length; ++i) {
+            char c = this.alphabet[i];
+            decodeTable[c] = (byte) i;
+            if (caseInsensitive) {
+                decodeTable[Character.toLowerCase(c)] = (byte) i;
+                decodeTable[Character.toUpperCase(c)] = (byte) i;
+            }
+        }
+        for (int i = 0; i < aliases.length(); i += 2) {
+            byte digit = decodeTable[aliases.charAt(i + 1)];
+            decodeTable[aliases.charAt(i)] = digit;
+            if (caseInsensitive) {
+                decodeTable[Character.toLowerCase(aliases.charAt(i))] = digit;
+            }
+        }
+    }
+
+    /**
+     * Get the lowest digit of a value.
+     *
+     * @param value The value, treated as unsigned.
+     * @return The lowest digit.
+     */
+    abstract int lowDigit(long value);
+
+    /**
+     * Remove the lowest digit of a value.
+     *
+     * @param value The value, treated as unsigned.
+     * @return The value without its lowest digit.
+     */
+    abstract long shiftDown(long value);
+
+    /**
+     * Append a digit to a value.
+     *
+     * @param value The value decoded so far.
+     * @param digit The digit to append.
+     * @return The new value.
+     * @throws IllegalArgumentException If the value overflows 64 bits.
+     */
+    abstract long accumulate(long value, int digit);
+
+    /**
+     * Get the count of characters of an encoded id.
+     *
+     * @return The fixed width of this encoding.
+     */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * Encode an id into a new {@code String}.
+     *
+     * @param id The id.
+     * @return The encoded id.
+     */
+    public String encode(long id) {
+        char[] chars = new char[width];
+        encode(id, chars, 0);
+        return new String(chars);
+    }
+
+    /**
+     * Encode an id into a {@code char[]}.
+     *
+     * @param id  The id.
+     * @param dst The array to write to.
+     * @param off The index of the first character to write.
+     * @return The count of characters written, which is {@link #width()}.
+     * @throws IndexOutOfBoundsException If {@code dst} has less than {@link #width()} characters from {@code off}.
+     */
+    public int encode(long id, char[] dst, int off) {
+        if (off < 0 || off > dst.length - width) {
+            throw new IndexOutOfBoundsException(String.format("Can not write %d characters at %d into length %d",
+                    width, off, dst.length));
+        }
+        long value = id;
+        for (int i = off + width - 1; i >= off; --i) {
+            dst[i] = alphabet[lowDigit(value)];
+            value = shiftDown(value);
+        }
+        return width;
+    }
+
+    /**
+     * Append an encoded id to a {@link StringBuilder}.
+     *
+     * @param id  The id.
+     * @param dst The builder to append to.
+     * @return The builder.
+     */
+    public StringBuilder encode(long id, StringBuilder dst) {
+        int start = dst.length();
+        dst.setLength(start + width);
+        long value = id;
+        for (int i = start + width - 1; i >= start; --i) {
+            dst.setCharAt(i, alphabet[lowDigit(value)]);
+            value = shiftDown(value);
+        }
+        return dst;
+    }
+
+    /**
+     * Write an encoded id as ASCII bytes to a {@link ByteBuffer}, at its position, and advance the position.
+     *
+     * @param id  The id.
+     * @param dst The buffer to write to.
+     * @throws BufferOverflowException If {@code dst} has less than {@link #width()} bytes remaining.
+     */
+    public void encode(long id, ByteBuffer dst) {
+        if (dst.remaining() < width) {
+            throw new BufferOverflowException();
+        }
+        int start = dst.position();
+        long value = id;
+        for (int i = start + width - 1; i >= start; --i) {
+            dst.put(i, (byte) alphabet[lowDigit(value)]);
+            value = shiftDown(value);
+        }
+        dst.position(start + width);
+    }
+
+    /**
+     * Decode an id.
+     *
+     * @param src The encoded id, exactly {@link #width()} characters long.
+     * @return The id.
+     * @throws IllegalArgumentException If {@code src} is not a valid encoded id.
+     */
+    public long decode(CharSequence src) {
+        if (src.length() != width) {
+            throw new IllegalArgumentException(String.format("Encoded id should have %d characters, got %d",
+                    width, src.length()));
+        }
+        return decode(src, 0);
+    }
+
+    /**
+     * Decode an id embedded in a longer character sequence.
+     *
+     * @param src The characters to read from.
+     * @param off The index of the first character of the encoded id.
+     * @return The id.
+     * @throws IllegalArgumentException  If the characters are not a valid encoded id.
+     * @throws IndexOutOfBoundsException If {@code src} has less than {@link #width()} characters from {@code off}.
+     */
+    public long decode(CharSequence src, int off) {
+        if (off < 0 || off > src.length() - width) {
+            throw new IndexOutOfBoundsException(String.format("Can not read %d characters at %d from length %d",
+                    width, off, src.length()));
+        }
+        long value = 0L;
+        for (int i = off; i < off + width; ++i) {
+            char c = src.charAt(i);
+            int digit = c < 128 ? decodeTable[c] : -1;
+            if (digit < 0) {
+                throw new IllegalArgumentException(String.format("Illegal character '%c' at %d for %s", c, i,
+                        name()));
+            }
+            value = accumulate(value, digit);
+        }
+        return value;
+    }
+
+    private static IllegalArgumentException overflow() {
+        return new IllegalArgumentException("Encoded id overflows 64 bits.");
+    }
+}
@@ -0,0 +1,248 @@
+package cn.vorbote.core.utils;
+
+/**
+ * {@code IdLayout} describes how a {@link SnowFlake} id is split into bits. From the highest bit to the lowest an id
+ * contains:
+ * <ul>
+ *     <li>The sign bit, always 0, followed by unused bits if the widths below add up to less than 63.</li>
+ *     <li>The timestamp, counted in ticks of {@code tickMillis} milliseconds since the start epoch.</li>
+ *     <li>The data centre id.</li>
+ *     <li>The worker id.</li>
+ *     <li>The sequence within one tick.</li>
+ * </ul>
+ * The default layout is 41 timestamp bits, 5 data centre bits, 5 worker bits and 12 sequence bits with 1 millisecond
+ * ticks, which allows 4096 ids per millisecond for about 69 years. Deployments with few nodes can trade unused node
+ * bits for sequence capacity, e.g. {@code new IdLayout(41, 2, 4, 16)} serves 4 data centres with 16 workers each and
+ * allows 65536 ids per millisecond. Shifts and masks are computed once on construction.
+ *
+ * @author vorbote
+ */
+public final class IdLayout {
+
+    /**
+     * 41 timestamp bits, 5 data centre bits, 5 worker bits, 12 sequence bits, 1 millisecond ticks.
+     */
+    public static final IdLayout DEFAULT = new IdLayout(41, 5, 5, 12);
+
+    private final int timestampBits;
+
+    private final int dataCentreIdBits;
+
+    private final int workerIdBits;
+
+    private final int sequenceBits;
+
+    private final long tickMillis;
+
+    private final int workerIdShift;
+
+    private final int dataCentreIdShift;
+
+    private final int timestampShift;
+
+    private final long sequenceMask;
+
+    private final long maxWorkerId;
+
+    private final long maxDataCentreId;
+
+    private final long maxTimestamp;
+
+    /**
+     * Build a layout with 1 millisecond ticks.
+     *
+     * @param timestampBits    The bits of the timestamp.
+     * @param dataCentreIdBits The bits of the data centre id.
+     * @param workerIdBits     The bits of the worker id.
+     * @param sequenceBits     The bits of the sequence.
+     * @throws IllegalArgumentException If the widths are invalid.
+     */
+    public IdLayout(int timestampBits, int dataCentreIdBits, int workerIdBits, int sequenceBits) {
+        this(timestampBits, dataCentreIdBits, workerIdBits, sequenceBits, 1L);
+    }
+
+    /**
+     * Build a layout.
+     *
+     * @param timestampBits    The bits of the timestamp. (Should be at least 1)
+     * @param dataCentreIdBits The bits of the data centre id. (Should be at least 0)
+     * @param workerIdBits     The bits of the worker id. (Should be at least 0)
+     * @param sequenceBits     The bits of the sequence. (Should be at least 1)
+     * @param tickMillis       The milliseconds of one timestamp tick, e.g. 10 for 10 ms ticks. (Should be at least 1)
+     * @throws IllegalArgumentException If the widths are invalid or add up to more than 63 bits.
+     */
+    public IdLayout(int timestampBits, int dataCentreIdBits, int workerIdBits, int sequenceBits, long tickMillis) {
+        if (timestampBits < 1 || sequenceBits < 1) {
+            throw new IllegalArgumentException("Timestamp bits and sequence bits should be at least 1!");
+        }
+        if (dataCentreIdBits < 0 || workerIdBits < 0) {
+            throw new IllegalArgumentException("Data centre id bits and worker id bits can not be less than 0!");
+        }
+        if (timestampBits + dataCentreIdBits + workerIdBits + sequenceBits > 63) {
+            throw new IllegalArgumentException(String.format("The layout needs %d bits, but only 63 bits are usable",
+                    timestampBits + dataCentreIdBits + workerIdBits + sequenceBits));
+        }
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("Tick millis should be at least 1!");
+        }
+
+        this.timestampBits = timestampBits;
+        this.dataCentreIdBits = dataCentreIdBits;
+        this.workerIdBits = workerIdBits;
+        this.sequenceBits = sequenceBits;
+        this.tickMillis = tickMillis;
+
+        this.workerIdShift = sequenceBits;
+        this.dataCentreIdShift = sequenceBits + workerIdBits;
+        this.timestampShift = sequenceBits + workerIdBits + dataCentreIdBits;
+        this.sequenceMask = ~(-1L << sequenceBits);
+        this.maxWorkerId = ~(-1L << workerIdBits);
+        this.maxDataCentreId = ~(-1L << dataCentreIdBits);
+        this.maxTimestamp = ~(-1L << timestampBits);
+    }
+
+    /**
+     * Get the bits of the timestamp.
+     *
+     * @return The bits of the timestamp.
+     */
+    public int getTimestampBits() {
+        return timestampBits;
+    }
+
+    /**
+     * Get the bits of the data centre id.
+     *
+     * @return The bits of the data centre id.
+     */
+    public int getDataCentreIdBits() {
+        return dataCentreIdBits;
+    }
+
+    /**
+     * Get the bits of the worker id.
+     *
+     * @return The bits of the worker id.
+     */
+    public int getWorkerIdBits() {
+        return workerIdBits;
+    }
+
+    /**
+     * Get the bits of the sequence.
+     *
+     * @return The bits of the sequence.
+     */
+    public int getSequenceBits() {
+        return sequenceBits;
+    }
+
+    /**
+     * Get the milliseconds of one timestamp tick.
+     *
+     * @return The milliseconds of one tick.
+     */
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    /**
+     * Get the position of the lowest bit of the worker id.
+     *
+     * @return The shift of the worker id.
+     */
+    public int getWorkerIdShift() {
+        return workerIdShift;
+    }
+
+    /**
+     * Get the position of the lowest bit of the data centre id.
+     *
+     * @return The shift of the data centre id.
+     */
+    public int getDataCentreIdShift() {
+        return dataCentreIdShift;
+    }
+
+    /**
+     * Get the position of the lowest bit of the timestamp.
+     *
+     * @return The shift of the timestamp.
+     */
+    public int getTimestampShift() {
+        return timestampShift;
+    }
+
+    /**
+     * Get the mask of the sequence, which is also the largest sequence.
+     *
+     * @return The mask of the sequence.
+     */
+    public long getSequenceMask() {
+        return sequenceMask;
+    }
+
+    /**
+     * Get the largest worker id.
+     *
+     * @return The largest worker id.
+     */
+    public long getMaxWorkerId() {
+        return maxWorkerId;
+    }
+
+    /**
+     * Get the largest data centre id.
+     *
+     * @return The largest data centre id.
+     */
+    public long getMaxDataCentreId() {
+        return maxDataCentreId;
+    }
+
+    /**
+     * Get the largest timestamp, in ticks since the start epoch, an id of this layout can hold.
+     *
+     * @return The largest timestamp in ticks.
+     */
+    public long getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    /**
+     * Get the count of ids one node can generate in one millisecond, rounded down.
+     *
+     * @return The ids per millisecond, or 0 if one tick holds fewer ids than it has milliseconds.
+     */
+    public long getIdsPerMillisecond() {
+        return (sequenceMask + 1) / tickMillis;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        IdLayout idLayout = (IdLayout) o;
+        return timestampBits == idLayout.timestampBits
+                && dataCentreIdBits == idLayout.dataCentreIdBits
+                && workerIdBits == idLayout.workerIdBits
+                && sequenceBits == idLayout.sequenceBits
+                && tickMillis == idLayout.tickMillis;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = timestampBits;
+        result = 31 * result + dataCentreIdBits;
+        result = 31 * result + workerIdBits;
+        result = 31 * result + sequenceBits;
+        result = 31 * result + Long.hashCode(tickMillis);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("IdLayout(timestamp=%d, dataCentreId=%d, workerId=%d, sequence=%d, tickMillis=%d)",
+                timestampBits, dataCentreIdBits, workerIdBits, sequenceBits, tickMillis);
+    }
+}
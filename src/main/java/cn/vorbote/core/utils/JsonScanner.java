@@ -0,0 +1,239 @@
+package cn.vorbote.core.utils;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the top level members of a UTF-8 encoded JSON object in place, enough for the header and claims of a JWT. No
+ * tree is built: a member is found by skipping over the values before it, and only the value asked for is converted.
+ *
+ * @author vorbote
+ */
+final class JsonScanner {
+
+    private JsonScanner() {
+    }
+
+    /**
+     * Find a member of the top level object.
+     *
+     * @param json The JSON text.
+     * @param off  The index of the first byte of the text.
+     * @param end  The index after the last byte of the text.
+     * @param name The name of the member, UTF-8 encoded, without escapes.
+     * @return The index of the first byte of the value of the member, or -1 if the object has no such member.
+     * @throws IllegalArgumentException If the text is not a JSON object.
+     */
+    static int find(byte[] json, int off, int end, byte[] name) {
+        int i = skipWhitespace(json, off, end);
+        expect(json, i, end, '{');
+        i = skipWhitespace(json, i + 1, end);
+        if (i < end && json[i] == '}') {
+            return -1;
+        }
+        while (true) {
+            expect(json, i, end, '"');
+            int keyEnd = skipString(json, i, end) - 1;
+            int keyStart = i + 1;
+            i = skipWhitespace(json, keyEnd + 1, end);
+            expect(json, i, end, ':');
+            i = skipWhitespace(json, i + 1, end);
+            if (keyEnd - keyStart == name.length && regionEquals(json, keyStart, name)) {
+                return i;
+            }
+            i = skipWhitespace(json, skipValue(json, i, end), end);
+            if (i < end && json[i] == ',') {
+                i = skipWhitespace(json, i + 1, end);
+            } else {
+                expect(json, i, end, '}');
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Check whether a value is a string equal to the given bytes.
+     *
+     * @param json  The JSON text.
+     * @param at    The index of the first byte of the value.
+     * @param end   The index after the last byte of the text.
+     * @param value The expected string, UTF-8 encoded, without escapes.
+     * @return {@code true} if the value is that string.
+     */
+    static boolean stringEquals(byte[] json, int at, int end, byte[] value) {
+        if (at >= end || json[at] != '"') {
+            return false;
+        }
+        int close = skipString(json, at, end) - 1;
+        return close - at - 1 == value.length && regionEquals(json, at + 1, value);
+    }
+
+    /**
+     * Read a number value, dropping any fraction.
+     *
+     * @param json The JSON text.
+     * @param at   The index of the first byte of the value.
+     * @param end  The index after the last byte of the text.
+     * @return The number.
+     * @throws IllegalArgumentException If the value is not a number.
+     */
+    static long readLong(byte[] json, int at, int end) {
+        int i = at;
+        boolean negative = i < end && json[i] == '-';
+        if (negative) {
+            ++i;
+        }
+        int digits = i;
+        long value = 0;
+        while (i < end && json[i] >= '0' && json[i] <= '9') {
+            value = value * 10 + (json[i++] - '0');
+        }
+        if (i == digits || i - digits > 18) {
+            throw new IllegalArgumentException(String.format("Expected an integer at %d", at));
+        }
+        if (i < end && (json[i] == 'e' || json[i] == 'E' || json[i] == '.')) {
+            int numberEnd = skipValue(json, at, end);
+            return (long) Double.parseDouble(new String(json, at, numberEnd - at, StandardCharsets.US_ASCII));
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Read a string value, resolving its escapes.
+     *
+     * @param json The JSON text.
+     * @param at   The index of the first byte of the value.
+     * @param end  The index after the last byte of the text.
+     * @return The string, or {@code null} if the value is not a string.
+     */
+    static String readString(byte[] json, int at, int end) {
+        if (at >= end || json[at] != '"') {
+            return null;
+        }
+        int close = skipString(json, at, end) - 1;
+        int start = at + 1;
+        int escape = start;
+        while (escape < close && json[escape] != '\\') {
+            ++escape;
+        }
+        if (escape == close) {
+            return new String(json, start, close - start, StandardCharsets.UTF_8);
+        }
+        StringBuilder builder = new StringBuilder(close - start);
+        int segment = start;
+        int i = escape;
+        while (i < close) {
+            if (json[i] != '\\') {
+                ++i;
+                continue;
+            }
+            builder.append(new String(json, segment, i - segment, StandardCharsets.UTF_8));
+            byte kind = json[i + 1];
+            switch (kind) {
+                case 'b':
+                    builder.append('\b');
+                    break;
+                case 'f':
+                    builder.append('\f');
+                    break;
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'u':
+                    if (i + 6 > close) {
+                        throw new IllegalArgumentException(String.format("Bad escape at %d", i));
+                    }
+                    builder.append((char) Integer.parseInt(new String(json, i + 2, 4, StandardCharsets.US_ASCII),
+                            16));
+                    i += 4;
+                    break;
+                default:
+                    builder.append((char) kind);
+            }
+            i += 2;
+            segment = i;
+        }
+        builder.append(new String(json, segment, close - segment, StandardCharsets.UTF_8));
+        return builder.toString();
+    }
+
+    /**
+     * Skip a value of any type.
+     *
+     * @return The index after the value.
+     */
+    private static int skipValue(byte[] json, int i, int end) {
+        if (i >= end) {
+            throw new IllegalArgumentException("Unexpected end of JSON");
+        }
+        byte first = json[i];
+        if (first == '"') {
+            return skipString(json, i, end);
+        }
+        if (first == '{' || first == '[') {
+            int depth = 0;
+            while (i < end) {
+                byte b = json[i];
+                if (b == '"') {
+                    i = skipString(json, i, end);
+                    continue;
+                }
+                if (b == '{' || b == '[') {
+                    ++depth;
+                } else if ((b == '}' || b == ']') && --depth == 0) {
+                    return i + 1;
+                }
+                ++i;
+            }
+            throw new IllegalArgumentException("Unexpected end of JSON");
+        }
+        while (i < end && json[i] != ',' && json[i] != '}' && json[i] != ']' && json[i] > ' ') {
+            ++i;
+        }
+        return i;
+    }
+
+    /**
+     * Skip a string.
+     *
+     * @param i The index of the opening quote.
+     * @return The index after the closing quote.
+     */
+    private static int skipString(byte[] json, int i, int end) {
+        for (++i; i < end; ++i) {
+            if (json[i] == '\\') {
+                ++i;
+            } else if (json[i] == '"') {
+                return i + 1;
+            }
+        }
+        throw new IllegalArgumentException("Unterminated string in JSON");
+    }
+
+    private static int skipWhitespace(byte[] json, int i, int end) {
+        while (i < end && (json[i] == ' ' || json[i] == '\t' || json[i] == '\n' || json[i] == '\r')) {
+            ++i;
+        }
+        return i;
+    }
+
+    private static void expect(byte[] json, int i, int end, char expected) {
+        if (i >= end || json[i] != expected) {
+            throw new IllegalArgumentException(String.format("Expected '%c' at %d", expected, i));
+        }
+    }
+
+    private static boolean regionEquals(byte[] json, int off, byte[] value) {
+        for (int i = 0; i < value.length; ++i) {
+            if (json[off + i] != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
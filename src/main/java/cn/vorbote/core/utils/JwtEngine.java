@@ -0,0 +1,698 @@
+package cn.vorbote.core.utils;
+
+import cn.vorbote.core.constants.JwtAlgorithm;
+import cn.vorbote.core.exceptions.JwtVerificationException;
+import cn.vorbote.core.exceptions.UnsupportedJwtAlgorithmException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.interfaces.ECKey;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * {@code JwtEngine} signs and verifies JSON Web Tokens (RFC 7519) in the compact form with one algorithm and key.
+ * <p>
+ * Verifying works on the token as it arrives: the segments are located by their dots, Base64-URL decoded into a
+ * buffer of the thread, and the {@code alg} header and the {@code exp}/{@code nbf} claims are read from the decoded
+ * bytes in place by {@link JsonScanner}, without a {@code String} or map per segment. HMAC algorithms go through a
+ * {@link HmacSigner}; RSA and ECDSA through a {@link Signature} per thread, initialised once with the key.
+ * <p>
+ * Verified tokens are kept in a fixed size cache, one slot per hash of the token. A token which is presented again
+ * is found by its hash and full text and only has its time claims checked, so repeated tokens cost no signature
+ * check. A slot is simply overwritten by the next token hashing to it.
+ *
+ * @author vorbote
+ */
+public final class JwtEngine {
+
+    private static final byte[] ALG = {'a', 'l', 'g'};
+
+    private static final byte[] EXP = {'e', 'x', 'p'};
+
+    private static final byte[] NBF = {'n', 'b', 'f'};
+
+    private static final byte[] IAT = {'i', 'a', 't'};
+
+    /**
+     * Room for an RSA or ECDSA signature while a token is signed; RSA signatures are as long as the modulus, which
+     * covers keys of up to 8192 bits.
+     */
+    private static final int MAX_SIGNATURE_LENGTH = 1024;
+
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[1024]);
+
+    private final JwtAlgorithm algorithm;
+
+    private final byte[] algorithmName;
+
+    private final byte[] headerSegment;
+
+    private final HmacSigner hmac;
+
+    private final ThreadLocal<Signature> signers;
+
+    private final ThreadLocal<Signature> verifiers;
+
+    private final TimeSource timeSource;
+
+    private final long leewayMillis;
+
+    private final AtomicReferenceArray<Token> cache;
+
+    private JwtEngine(Builder builder) {
+        this.algorithm = builder.algorithm;
+        this.algorithmName = algorithm.get().getBytes(StandardCharsets.US_ASCII);
+        byte[] header = ("{\"alg\":\"" + algorithm.get() + "\",\"typ\":\"JWT\"}").getBytes(StandardCharsets.UTF_8);
+        this.headerSegment = new byte[Codec.BASE64_URL.encodedLength(header.length)];
+        Codec.BASE64_URL.encode(header, 0, header.length, headerSegment, 0);
+        this.hmac = algorithm.isHmac() ? HmacSigner.of(algorithm.getHash(), builder.secret) : null;
+        PrivateKey privateKey = builder.privateKey;
+        PublicKey publicKey = builder.publicKey;
+        this.signers = privateKey == null ? null : ThreadLocal.withInitial(() -> newSigner(algorithm, privateKey));
+        this.verifiers = publicKey == null ? null :
+                ThreadLocal.withInitial(() -> newVerifier(algorithm, publicKey));
+        this.timeSource = builder.timeSource;
+        this.leewayMillis = builder.leewayMillis;
+        this.cache = builder.cacheSize == 0 ? null : new AtomicReferenceArray<>(builder.cacheSize);
+    }
+
+    /**
+     * Get a builder of an engine.
+     *
+     * @param algorithm The algorithm to sign with and to accept.
+     * @return A {@code Builder} instance.
+     */
+    public static Builder builder(JwtAlgorithm algorithm) {
+        return new Builder(algorithm);
+    }
+
+    /**
+     * Create a {@link Signature} initialised for signing.
+     *
+     * @param algorithm The algorithm.
+     * @param key       The private key.
+     * @return The signature.
+     * @throws IllegalArgumentException If the key does not fit the algorithm.
+     */
+    private static Signature newSigner(JwtAlgorithm algorithm, PrivateKey key) {
+        checkCurve(algorithm, key);
+        Signature signature = newSignature(algorithm);
+        try {
+            signature.initSign(key);
+        } catch (InvalidKeyException e) {
+            throw new IllegalArgumentException(String.format("The private key does not fit %s: %s", algorithm,
+                    e.getMessage()), e);
+        }
+        return signature;
+    }
+
+    /**
+     * Create a {@link Signature} initialised for verifying.
+     *
+     * @param algorithm The algorithm.
+     * @param key       The public key.
+     * @return The signature.
+     * @throws IllegalArgumentException If the key does not fit the algorithm.
+     */
+    private static Signature newVerifier(JwtAlgorithm algorithm, PublicKey key) {
+        checkCurve(algorithm, key);
+        Signature signature = newSignature(algorithm);
+        try {
+            signature.initVerify(key);
+        } catch (InvalidKeyException e) {
+            throw new IllegalArgumentException(String.format("The public key does not fit %s: %s", algorithm,
+                    e.getMessage()), e);
+        }
+        return signature;
+    }
+
+    private static Signature newSignature(JwtAlgorithm algorithm) {
+        try {
+            return Signature.getInstance(algorithm.getSignatureAlgorithm());
+        } catch (NoSuchAlgorithmException e) {
+            throw new UnsupportedJwtAlgorithmException(e.getMessage());
+        }
+    }
+
+    /**
+     * Check that the curve of an ECDSA key is the one of the algorithm, which {@link Signature} itself accepts any
+     * curve for.
+     *
+     * @throws IllegalArgumentException If the key is on another curve.
+     */
+    private static void checkCurve(JwtAlgorithm algorithm, Key key) {
+        if (algorithm.getCoordinateLength() > 0 && key instanceof ECKey) {
+            int fieldSize = ((ECKey) key).getParams().getCurve().getField().getFieldSize();
+            if ((fieldSize + 7) / 8 != algorithm.getCoordinateLength()) {
+                throw new IllegalArgumentException(String.format("The curve of the key does not fit %s!", algorithm));
+            }
+        }
+    }
+
+    private static byte[] scratch(int size) {
+        byte[] scratch = SCRATCH.get();
+        if (scratch.length < size) {
+            scratch = new byte[Math.max(size, scratch.length * 2)];
+            SCRATCH.set(scratch);
+        }
+        return scratch;
+    }
+
+    // region Sign
+
+    /**
+     * Sign a payload.
+     *
+     * @param payload The claims as a JSON object.
+     * @return The token.
+     * @throws IllegalStateException If the engine has no key to sign with.
+     */
+    public String sign(CharSequence payload) {
+        return sign(payload.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sign a payload.
+     *
+     * @param payload The claims as a UTF-8 encoded JSON object.
+     * @return The token.
+     * @throws IllegalStateException If the engine has no key to sign with.
+     */
+    public String sign(byte[] payload) {
+        if (hmac == null && signers == null) {
+            throw new IllegalStateException("No private key to sign with!");
+        }
+        int inputLength = headerSegment.length + 1 + Codec.BASE64_URL.encodedLength(payload.length);
+        int signatureLength = hmac != null ? hmac.getMacLength() : MAX_SIGNATURE_LENGTH;
+        byte[] buffer = scratch(inputLength + 1 + Codec.BASE64_URL.encodedLength(signatureLength));
+        System.arraycopy(headerSegment, 0, buffer, 0, headerSegment.length);
+        buffer[headerSegment.length] = '.';
+        Codec.BASE64_URL.encode(payload, 0, payload.length, buffer, headerSegment.length + 1);
+
+        byte[] signature;
+        if (hmac != null) {
+            signature = hmac.sign(buffer, 0, inputLength);
+        } else {
+            try {
+                Signature signer = signers.get();
+                signer.update(buffer, 0, inputLength);
+                signature = signer.sign();
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+            if (algorithm.getCoordinateLength() > 0) {
+                signature = derToConcat(signature, algorithm.getCoordinateLength());
+            }
+        }
+        buffer[inputLength] = '.';
+        int length = inputLength + 1 + Codec.BASE64_URL.encode(signature, 0, signature.length, buffer,
+                inputLength + 1);
+        return new String(buffer, 0, length, StandardCharsets.US_ASCII);
+    }
+
+    // endregion
+
+    // region Verify
+
+    /**
+     * Verify a token: its algorithm, its signature, and its {@code exp} and {@code nbf} claims if present.
+     *
+     * @param token The token in compact form.
+     * @return The verified token.
+     * @throws UnsupportedJwtAlgorithmException If the token is not signed with the algorithm of this engine.
+     * @throws JwtVerificationException         If the token is malformed, its signature is wrong, or it is expired
+     *                                          or not yet valid.
+     */
+    public Token verify(CharSequence token) {
+        long now = timeSource.currentTimeMillis();
+        long hash = 0;
+        int slot = 0;
+        if (cache != null) {
+            hash = FastHash.XXHASH_64.hash64(token);
+            slot = (int) (hash ^ (hash >>> 32)) & (cache.length() - 1);
+            Token cached = cache.get(slot);
+            if (cached != null && cached.hash == hash && contentEquals(cached.token, token)) {
+                checkTime(cached, now);
+                return cached;
+            }
+        }
+
+        int length = token.length();
+        int first = indexOf(token, '.', 0);
+        int second = first < 0 ? -1 : indexOf(token, '.', first + 1);
+        if (second < 0 || indexOf(token, '.', second + 1) >= 0) {
+            throw new JwtVerificationException("A token should have three segments!");
+        }
+
+        Token verified;
+        try {
+            byte[] buffer = scratch(2 * length);
+            // The signing input, as the ASCII bytes of the first two segments.
+            for (int i = 0; i < second; ++i) {
+                char c = token.charAt(i);
+                if (c >= 0x80) {
+                    throw new JwtVerificationException("A token should only contain ASCII characters!");
+                }
+                buffer[i] = (byte) c;
+            }
+            int headerOff = second;
+            int headerLen = Codec.BASE64_URL.decode(token, 0, first, buffer, headerOff);
+            int alg = JsonScanner.find(buffer, headerOff, headerOff + headerLen, ALG);
+            if (alg < 0 || !JsonScanner.stringEquals(buffer, alg, headerOff + headerLen, algorithmName)) {
+                String name = alg < 0 ? null : JsonScanner.readString(buffer, alg, headerOff + headerLen);
+                throw new UnsupportedJwtAlgorithmException(String.format("Unsupported jwt algorithm %s, this " +
+                        "engine accepts %s.", name, algorithm));
+            }
+
+            int signatureOff = headerOff + headerLen;
+            int signatureLen = Codec.BASE64_URL.decode(token, second + 1, length - second - 1, buffer, signatureOff);
+            if (!checkSignature(buffer, second, signatureOff, signatureLen)) {
+                throw new JwtVerificationException("The signature of the token is wrong!");
+            }
+
+            byte[] payload = new byte[Codec.BASE64_URL.decodedLength(token, first + 1, second - first - 1)];
+            Codec.BASE64_URL.decode(token, first + 1, second - first - 1, payload, 0);
+            verified = new Token(token.toString(), hash, algorithm, payload);
+        } catch (IllegalArgumentException e) {
+            throw new JwtVerificationException("Malformed token: " + e.getMessage(), e);
+        }
+        checkTime(verified, now);
+        if (cache != null) {
+            cache.set(slot, verified);
+        }
+        return verified;
+    }
+
+    private boolean checkSignature(byte[] buffer, int inputLength, int signatureOff, int signatureLen) {
+        if (hmac != null) {
+            return hmac.verify(buffer, 0, inputLength, buffer, signatureOff, signatureLen);
+        }
+        if (verifiers == null) {
+            throw new IllegalStateException("No public key to verify with!");
+        }
+        byte[] signature = Arrays.copyOfRange(buffer, signatureOff, signatureOff + signatureLen);
+        if (algorithm.getCoordinateLength() > 0) {
+            if (signatureLen != 2 * algorithm.getCoordinateLength()) {
+                return false;
+            }
+            signature = concatToDer(signature);
+        }
+        Signature verifier = verifiers.get();
+        try {
+            verifier.update(buffer, 0, inputLength);
+            return verifier.verify(signature);
+        } catch (GeneralSecurityException e) {
+            // The verifier may be left halfway, the next call of the thread gets a new one.
+            verifiers.remove();
+            return false;
+        }
+    }
+
+    private void checkTime(Token token, long now) {
+        try {
+            if (token.expiresAt != Token.ABSENT
+                    && now >= Math.addExact(Math.multiplyExact(token.expiresAt, 1000L), leewayMillis)) {
+                throw new JwtVerificationException("The token is expired!");
+            }
+            if (token.notBefore != Token.ABSENT
+                    && Math.addExact(now, leewayMillis) < Math.multiplyExact(token.notBefore, 1000L)) {
+                throw new JwtVerificationException("The token is not valid yet!");
+            }
+        } catch (ArithmeticException e) {
+            throw new JwtVerificationException("The time claims of the token are out of range!");
+        }
+    }
+
+    private static int indexOf(CharSequence text, char c, int from) {
+        for (int i = from; i < text.length(); ++i) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean contentEquals(String a, CharSequence b) {
+        if (a.length() != b.length()) {
+            return false;
+        }
+        for (int i = 0; i < a.length(); ++i) {
+            if (a.charAt(i) != b.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // endregion
+
+    // region ECDSA signature forms
+
+    /**
+     * Convert a DER encoded ECDSA signature, as {@link Signature} writes it, into the concatenated form of JWS.
+     */
+    private static byte[] derToConcat(byte[] der, int coordinateLength) {
+        int i = der[1] == (byte) 0x81 ? 3 : 2;
+        byte[] concat = new byte[2 * coordinateLength];
+        for (int part = 0; part < 2; ++part) {
+            int length = der[i + 1] & 0xff;
+            int start = i + 2;
+            int end = start + length;
+            while (start < end && der[start] == 0) {
+                ++start;
+            }
+            int size = end - start;
+            System.arraycopy(der, start, concat, (part + 1) * coordinateLength - size, size);
+            i = end;
+        }
+        return concat;
+    }
+
+    /**
+     * Convert a concatenated ECDSA signature into the DER form {@link Signature} reads.
+     */
+    private static byte[] concatToDer(byte[] concat) {
+        int half = concat.length / 2;
+        int[] starts = new int[2];
+        int[] lengths = new int[2];
+        int total = 0;
+        for (int part = 0; part < 2; ++part) {
+            int start = part * half;
+            int end = start + half;
+            while (start < end - 1 && concat[start] == 0) {
+                ++start;
+            }
+            starts[part] = start;
+            // A set top bit would make the INTEGER negative, so a zero byte goes in front.
+            lengths[part] = end - start + (concat[start] < 0 ? 1 : 0);
+            total += 2 + lengths[part];
+        }
+        int header = total >= 0x80 ? 3 : 2;
+        byte[] der = new byte[header + total];
+        der[0] = 0x30;
+        if (header == 3) {
+            der[1] = (byte) 0x81;
+        }
+        der[header - 1] = (byte) total;
+        int p = header;
+        for (int part = 0; part < 2; ++part) {
+            der[p++] = 0x02;
+            der[p++] = (byte) lengths[part];
+            int size = (part + 1) * half - starts[part];
+            p += lengths[part] - size;
+            System.arraycopy(concat, starts[part], der, p, size);
+            p += size;
+        }
+        return der;
+    }
+
+    // endregion
+
+    /**
+     * Get the algorithm of this engine.
+     *
+     * @return The algorithm.
+     */
+    public JwtAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("JwtEngine(algorithm=%s, cacheSize=%d)", algorithm, cache == null ? 0 : cache.length());
+    }
+
+    /**
+     * A verified token. The registered time claims are read when the token is verified, other claims on request.
+     */
+    public static final class Token {
+
+        /**
+         * The value of a time claim the token does not have.
+         */
+        public static final long ABSENT = Long.MIN_VALUE;
+
+        private final String token;
+
+        private final long hash;
+
+        private final JwtAlgorithm algorithm;
+
+        private final byte[] payload;
+
+        private final long expiresAt;
+
+        private final long notBefore;
+
+        private final long issuedAt;
+
+        private Token(String token, long hash, JwtAlgorithm algorithm, byte[] payload) {
+            this.token = token;
+            this.hash = hash;
+            this.algorithm = algorithm;
+            this.payload = payload;
+            this.expiresAt = timeClaim(EXP);
+            this.notBefore = timeClaim(NBF);
+            this.issuedAt = timeClaim(IAT);
+        }
+
+        private long timeClaim(byte[] name) {
+            int at = JsonScanner.find(payload, 0, payload.length, name);
+            return at < 0 ? ABSENT : JsonScanner.readLong(payload, at, payload.length);
+        }
+
+        /**
+         * Get a string claim.
+         *
+         * @param name The name of the claim.
+         * @return The value, or {@code null} if the token has no such claim or it is not a string.
+         */
+        public String getString(String name) {
+            int at = JsonScanner.find(payload, 0, payload.length, name.getBytes(StandardCharsets.UTF_8));
+            return at < 0 ? null : JsonScanner.readString(payload, at, payload.length);
+        }
+
+        /**
+         * Get a numeric claim.
+         *
+         * @param name The name of the claim.
+         * @return The value without any fraction, or {@link #ABSENT} if the token has no such claim.
+         * @throws IllegalArgumentException If the claim is not a number.
+         */
+        public long getLong(String name) {
+            int at = JsonScanner.find(payload, 0, payload.length, name.getBytes(StandardCharsets.UTF_8));
+            return at < 0 ? ABSENT : JsonScanner.readLong(payload, at, payload.length);
+        }
+
+        /**
+         * Get the token in compact form.
+         *
+         * @return The token.
+         */
+        public String getToken() {
+            return token;
+        }
+
+        /**
+         * Get the algorithm the token is signed with.
+         *
+         * @return The algorithm.
+         */
+        public JwtAlgorithm getAlgorithm() {
+            return algorithm;
+        }
+
+        /**
+         * Get the payload.
+         *
+         * @return A copy of the UTF-8 encoded JSON payload.
+         */
+        public byte[] getPayload() {
+            return payload.clone();
+        }
+
+        /**
+         * Get the payload as text.
+         *
+         * @return The JSON payload.
+         */
+        public String getPayloadString() {
+            return new String(payload, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Get the {@code exp} claim.
+         *
+         * @return The expiration time in seconds since the unix epoch, or {@link #ABSENT}.
+         */
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        /**
+         * Get the {@code nbf} claim.
+         *
+         * @return The time the token is valid from in seconds since the unix epoch, or {@link #ABSENT}.
+         */
+        public long getNotBefore() {
+            return notBefore;
+        }
+
+        /**
+         * Get the {@code iat} claim.
+         *
+         * @return The time the token was issued at in seconds since the unix epoch, or {@link #ABSENT}.
+         */
+        public long getIssuedAt() {
+            return issuedAt;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Token(algorithm=%s, payload=%s)", algorithm, getPayloadString());
+        }
+    }
+
+    /**
+     * Inner class {@code Builder} of {@code JwtEngine}.
+     */
+    public static class Builder {
+
+        private final JwtAlgorithm algorithm;
+
+        private byte[] secret;
+
+        private PrivateKey privateKey;
+
+        private PublicKey publicKey;
+
+        private TimeSource timeSource = TimeSource.system();
+
+        private long leewayMillis = 0;
+
+        private int cacheSize = 1024;
+
+        /**
+         * Generate a new {@code Builder}, use protected to prevent other coders use it.
+         *
+         * @param algorithm The algorithm.
+         */
+        protected Builder(JwtAlgorithm algorithm) {
+            if (algorithm == null) {
+                throw new IllegalArgumentException("Algorithm can not be null!");
+            }
+            this.algorithm = algorithm;
+        }
+
+        /**
+         * Set the secret of an HMAC algorithm. It should be at least as long as the digest, e.g. 32 bytes for
+         * {@link JwtAlgorithm#HS256}.
+         *
+         * @param secret The secret.
+         * @return {@code Builder} instance itself.
+         */
+        public Builder secret(byte[] secret) {
+            this.secret = secret.clone();
+            return this;
+        }
+
+        /**
+         * Set the key to sign with for an RSA or ECDSA algorithm. Without it the engine can only verify.
+         *
+         * @param privateKey The private key.
+         * @return {@code Builder} instance itself.
+         */
+        public Builder privateKey(PrivateKey privateKey) {
+            this.privateKey = privateKey;
+            return this;
+        }
+
+        /**
+         * Set the key to verify with for an RSA or ECDSA algorithm. Without it the engine can only sign.
+         *
+         * @param publicKey The public key.
+         * @return {@code Builder} instance itself.
+         */
+        public Builder publicKey(PublicKey publicKey) {
+            this.publicKey = publicKey;
+            return this;
+        }
+
+        /**
+         * Set the clock the time claims are checked against. Defaults to {@link TimeSource#system()}.
+         *
+         * @param timeSource The time source.
+         * @return {@code Builder} instance itself.
+         */
+        public Builder timeSource(TimeSource timeSource) {
+            this.timeSource = timeSource;
+            return this;
+        }
+
+        /**
+         * Set how far the clocks of the issuer and this engine may be apart when the time claims are checked.
+         * Defaults to 0.
+         *
+         * @param leewayMillis The leeway in milliseconds.
+         * @return {@code Builder} instance itself.
+         */
+        public Builder leewayMillis(long leewayMillis) {
+            this.leewayMillis = leewayMillis;
+            return this;
+        }
+
+        /**
+         * Set the count of slots of the verified token cache, 0 to disable it. Defaults to 1024.
+         *
+         * @param cacheSize The count of slots. (Should be 0 or a power of 2)
+         * @return {@code Builder} instance itself.
+         */
+        public Builder cacheSize(int cacheSize) {
+            this.cacheSize = cacheSize;
+            return this;
+        }
+
+        /**
+         * Build a {@code JwtEngine} instance.
+         *
+         * @return A {@code JwtEngine} instance.
+         * @throws IllegalArgumentException If any setting is out of its range or a key is missing.
+         */
+        public JwtEngine build() {
+            if (algorithm.isHmac()) {
+                int digestLength = Hasher.of(algorithm.getHash()).getDigestLength();
+                if (secret == null || secret.length < digestLength) {
+                    throw new IllegalArgumentException(String.format("The secret of %s should have at least %d " +
+                            "bytes!", algorithm, digestLength));
+                }
+            } else if (privateKey == null && publicKey == null) {
+                throw new IllegalArgumentException("A private or public key should be set!");
+            } else {
+                // Fail here rather than in the first thread which signs or verifies.
+                if (privateKey != null) {
+                    newSigner(algorithm, privateKey);
+                }
+                if (publicKey != null) {
+                    newVerifier(algorithm, publicKey);
+                }
+            }
+            if (timeSource == null) {
+                throw new IllegalArgumentException("Time source can not be null!");
+            }
+            if (leewayMillis < 0) {
+                throw new IllegalArgumentException("Leeway can not be less than 0!");
+            }
+            if (cacheSize < 0 || (cacheSize & (cacheSize - 1)) != 0) {
+                throw new IllegalArgumentException("Cache size should be 0 or a power of 2!");
+            }
+            return new JwtEngine(this);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package cn.vorbote.core.utils;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongFunction;
+
+/**
+ * {@code LongSnowFlakeRegistry} is a {@link SnowFlakeRegistry} for {@code long} keys, such as numeric tenant ids. The
+ * keys are kept in primitive arrays, so looking one up neither boxes it nor allocates.
+ * <p>
+ * The keys are split into {@value #SEGMENTS} segments by their hash. Each segment is an open-addressing table into
+ * which keys are added, and out of which evicted keys are removed, in place under the lock of the segment; the table is
+ * only copied when it grows. Lookups read the current table without locking, so only the first use of a key takes a
+ * lock.
+ *
+ * @author vorbote
+ */
+public final class LongSnowFlakeRegistry extends AbstractSnowFlakeRegistry {
+
+    private static final int SEGMENTS = 16;
+
+    private static final int SEGMENT_SHIFT = 64 - Integer.numberOfTrailingZeros(SEGMENTS);
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Marks the slot of an evicted key, so the probe sequences running through it stay intact.
+     */
+    private static final Entry TOMBSTONE = new Entry(null, Entry.EVICTED);
+
+    private final LongFunction<SnowFlake> factory;
+
+    private final AtomicReferenceArray<Table> tables = new AtomicReferenceArray<>(SEGMENTS);
+
+    private final Object[] locks = new Object[SEGMENTS];
+
+    private LongSnowFlakeRegistry(Builder builder) {
+        super(builder.timeSource, builder.idleTimeoutMillis);
+        this.factory = builder.factory;
+        for (int i = 0; i < SEGMENTS; ++i) {
+            tables.set(i, new Table(INITIAL_CAPACITY));
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Generate a builder of {@code LongSnowFlakeRegistry}.
+     *
+     * @param factory Creates the generator of a key when the key is first used or used again after eviction.
+     * @return A builder of {@code LongSnowFlakeRegistry}.
+     */
+    public static LongSnowFlakeRegistry.Builder builder(LongFunction<SnowFlake> factory) {
+        return new LongSnowFlakeRegistry.Builder(factory);
+    }
+
+    /**
+     * Get next id of a key.
+     *
+     * @param key The key.
+     * @return A unique id within the key.
+     */
+    public long nextId(long key) {
+        for (; ; ) {
+            Entry entry = entry(key);
+            long id = entry.snowFlake.nextId();
+            if (!entry.isEvicted()) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Fill an array with ids of a key, in ascending order.
+     *
+     * @param key   The key.
+     * @param dst   The array to fill.
+     * @param off   The index of the first element to fill.
+     * @param count The count of ids.
+     * @see SnowFlake#fill(long[], int, int)
+     */
+    public void fill(long key, long[] dst, int off, int count) {
+        for (; ; ) {
+            Entry entry = entry(key);
+            entry.snowFlake.fill(dst, off, count);
+            if (!entry.isEvicted()) {
+                return;
+            }
+        }
+    }
+
+    private Entry entry(long key) {
+        long now = now();
+        long hash = mix(key);
+        int segment = (int) (hash >>> SEGMENT_SHIFT);
+        for (; ; ) {
+            Entry entry = tables.get(segment).get(key, hash);
+            if (entry != null && entry.touch(now)) {
+                return entry;
+            }
+            // Absent, or evicted while this thread was reading it; a sweep unlinks under the lock, so retry there.
+            entry = insert(segment, key, hash, now);
+            if (entry.touch(now)) {
+                return entry;
+            }
+        }
+    }
+
+    private Entry insert(int segment, long key, long hash, long now) {
+        synchronized (locks[segment]) {
+            Table table = tables.get(segment);
+            Entry entry = table.get(key, hash);
+            if (entry != null) {
+                return entry;
+            }
+            if (table.isFull()) {
+                table = table.resize();
+                tables.set(segment, table);
+            }
+            entry = newEntry(factory.apply(key), now);
+            table.put(key, hash, entry);
+            return entry;
+        }
+    }
+
+    @Override
+    void sweep(long idleBefore) {
+        for (int i = 0; i < SEGMENTS; ++i) {
+            synchronized (locks[i]) {
+                Table table = tables.get(i);
+                for (int slot = 0; slot < table.keys.length; ++slot) {
+                    Entry entry = table.values.get(slot);
+                    if (entry != null && entry != TOMBSTONE && tryEvict(entry, idleBefore)) {
+                        table.remove(slot);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < SEGMENTS; ++i) {
+            size += tables.get(i).size;
+        }
+        return size;
+    }
+
+    /**
+     * Spread the bits of a key, so sequential keys do not cluster in one segment or one run of slots.
+     *
+     * @param key The key.
+     * @return The hash of the key.
+     */
+    private static long mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h *= 0xD6E8FEB86659FD93L;
+        return h ^ (h >>> 32);
+    }
+
+    /**
+     * An open-addressing table with linear probing, whose live and dead slots together fill at most half of it.
+     * <p>
+     * It is only written under the lock of its segment and read without locking. A slot is published by writing its
+     * key before its value, and the value is read before the key, so a reader which sees an entry sees its key too.
+     * Slots are never reused: an evicted key leaves a tombstone, and the tombstones are dropped when the table is
+     * copied into a new one on growth.
+     */
+    private static final class Table {
+
+        private final long[] keys;
+
+        private final AtomicReferenceArray<Entry> values;
+
+        /**
+         * The count of live slots, written under the lock of the segment.
+         */
+        private volatile int size;
+
+        /**
+         * The count of tombstones, guarded by the lock of the segment.
+         */
+        private int tombstones;
+
+        private Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new AtomicReferenceArray<>(capacity);
+        }
+
+        private Entry get(long key, long hash) {
+            int mask = keys.length - 1;
+            for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+                Entry entry = values.get(i);
+                if (entry == null) {
+                    return null;
+                }
+                if (entry != TOMBSTONE && keys[i] == key) {
+                    return entry;
+                }
+            }
+        }
+
+        private boolean isFull() {
+            return (size + tombstones + 1) * 2 > keys.length;
+        }
+
+        /**
+         * Copy the live slots into a new table, twice as large if they alone would fill this one.
+         *
+         * @return The new table.
+         */
+        private Table resize() {
+            Table table = new Table((size + 1) * 2 > keys.length ? keys.length * 2 : keys.length);
+            for (int i = 0; i < keys.length; ++i) {
+                Entry entry = values.get(i);
+                if (entry != null && entry != TOMBSTONE) {
+                    table.put(keys[i], mix(keys[i]), entry);
+                }
+            }
+            return table;
+        }
+
+        private void put(long key, long hash, Entry entry) {
+            int mask = keys.length - 1;
+            int i = (int) hash & mask;
+            while (values.get(i) != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values.set(i, entry);
+            ++size;
+        }
+
+        private void remove(int slot) {
+            values.set(slot, TOMBSTONE);
+            --size;
+            ++tombstones;
+        }
+    }
+
+    /**
+     * Inner class {@code Builder} of {@code LongSnowFlakeRegistry}.
+     */
+    public static class Builder {
+
+        private final LongFunction<SnowFlake> factory;
+
+        private long idleTimeoutMillis = 600_000L;
+
+        private TimeSource timeSource;
+
+        /**
+         * Generate a new {@code Builder}, use protected to prevent other coders use it.
+         *
+         * @param factory Creates the generator of a key.
+         */
+        protected Builder(LongFunction<SnowFlake> factory) {
+            if (factory == null) {
+                throw new IllegalArgumentException("Factory can not be null!");
+            }
+            this.factory = factory;
+        }
+
+        /**
+         * Set how long a generator may stay unused before it is evicted. Defaults to 10 minutes.
+         *
+         * @param idleTimeoutMillis The idle timeout in milliseconds, or 0 to never evict.
+         * @return {@code Builder} instance itself.
+         */
+        public Builder idleTimeout(long idleTimeoutMillis) {
+            this.idleTimeoutMillis = idleTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * Set the clock which measures idleness. Defaults to {@link TimeSource#system()}.
+         *
+         * @param timeSource The time source.
+         * @return {@code Builder} instance itself.
+         */
+        public Builder timeSource(TimeSource timeSource) {
+            this.timeSource = timeSource;
+            return this;
+        }
+
+        /**
+         * Build a {@code LongSnowFlakeRegistry} instance.
+         *
+         * @return A {@code LongSnowFlakeRegistry} instance.
+         * @throws IllegalArgumentException If the idle timeout is negative.
+         */
+        public LongSnowFlakeRegistry build() {
+            return new LongSnowFlakeRegistry(this);
+        }
+    }
+}
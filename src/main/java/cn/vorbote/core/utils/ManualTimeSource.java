@@ -0,0 +1,54 @@
+package cn.vorbote.core.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link TimeSource} which only moves when it is told to. It lets tests drive sequence exhaustion and clock
+ * regression deterministically, without sleeping.
+ *
+ * @author vorbote
+ */
+public final class ManualTimeSource implements TimeSource {
+
+    private final AtomicLong now;
+
+    /**
+     * Create a manual time source starting at the current system time.
+     */
+    public ManualTimeSource() {
+        this(System.currentTimeMillis());
+    }
+
+    /**
+     * Create a manual time source starting at the specified time.
+     *
+     * @param now The initial time in milliseconds since the unix epoch.
+     */
+    public ManualTimeSource(long now) {
+        this.now = new AtomicLong(now);
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now.get();
+    }
+
+    /**
+     * Set the current time. Setting a time in the past simulates a clock regression.
+     *
+     * @param now The new time in milliseconds since the unix epoch.
+     */
+    public void set(long now) {
+        this.now.set(now);
+    }
+
+    /**
+     * Move the current time, backwards if {@code millis} is negative.
+     *
+     * @param millis The milliseconds to move.
+     * @return The new time in milliseconds since the unix epoch.
+     */
+    public long advance(long millis) {
+        return now.addAndGet(millis);
+    }
+}
@@ -0,0 +1,36 @@
+package cn.vorbote.core.utils;
+
+import java.util.function.LongSupplier;
+
+/**
+ * {@code MetricsBinder} is the bridge from the counters of this library to a metrics system, such as Micrometer or
+ * Dropwizard Metrics. An implementation registers every bound value with its registry and reads it whenever the
+ * registry is scraped, so nothing is pushed on the hot path.
+ *
+ * @author vorbote
+ * @see SnowFlakeMetrics#bindTo(MetricsBinder, String)
+ */
+@FunctionalInterface
+public interface MetricsBinder {
+
+    /**
+     * Bind a value which only grows.
+     *
+     * @param name        The name of the metric, e.g. {@code snowflake.ids.issued}.
+     * @param description What the metric counts.
+     * @param value       Reads the current value.
+     */
+    void counter(String name, String description, LongSupplier value);
+
+    /**
+     * Bind a value which can go up and down. Defaults to {@link #counter(String, String, LongSupplier)}, for metrics
+     * systems which do not tell them apart.
+     *
+     * @param name        The name of the metric.
+     * @param description What the metric measures.
+     * @param value       Reads the current value.
+     */
+    default void gauge(String name, String description, LongSupplier value) {
+        counter(name, description, value);
+    }
+}
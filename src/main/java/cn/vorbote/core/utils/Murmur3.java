@@ -0,0 +1,300 @@
+package cn.vorbote.core.utils;
+
+/**
+ * MurmurHash3 x86_32 and x64_128 with seed 0, see {@link FastHash#MURMUR3_32} and {@link FastHash#MURMUR3_128}.
+ *
+ * @author vorbote
+ */
+final class Murmur3 {
+
+    private static final int C1_32 = 0xcc9e2d51;
+
+    private static final int C2_32 = 0x1b873593;
+
+    private static final long C1_128 = 0x87c37b91114253d5L;
+
+    private static final long C2_128 = 0x4cf5ad432745937fL;
+
+    private Murmur3() {
+    }
+
+    // region x86_32
+
+    static int hash32(byte[] input, int off, int len) {
+        int h = 0;
+        int i = off;
+        int end = off + len;
+        while (i + 4 <= end) {
+            h = mixH32(h, FastHash.getIntLE(input, i));
+            i += 4;
+        }
+        return finish32(h, input, i, end, len);
+    }
+
+    private static int mixK32(int k) {
+        k *= C1_32;
+        k = Integer.rotateLeft(k, 15);
+        return k * C2_32;
+    }
+
+    private static int mixH32(int h, int k) {
+        h ^= mixK32(k);
+        h = Integer.rotateLeft(h, 13);
+        return h * 5 + 0xe6546b64;
+    }
+
+    @SuppressWarnings("fallthrough")
+    private static int finish32(int h, byte[] tail, int i, int end, long total) {
+        int k = 0;
+        switch (end - i) {
+            case 3:
+                k ^= (tail[i + 2] & 0xff) << 16;
+                // fall through
+            case 2:
+                k ^= (tail[i + 1] & 0xff) << 8;
+                // fall through
+            case 1:
+                k ^= tail[i] & 0xff;
+                h ^= mixK32(k);
+                break;
+            default:
+                break;
+        }
+        h ^= (int) total;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        return h ^ (h >>> 16);
+    }
+
+    // endregion
+
+    // region x64_128
+
+    /**
+     * Hash a range of bytes with x64_128.
+     *
+     * @param out    The array to write the 16 bytes of the hash to, or {@code null}.
+     * @param outOff The index of the first byte to write.
+     * @return The first half of the hash.
+     */
+    static long hash128(byte[] input, int off, int len, byte[] out, int outOff) {
+        long h1 = 0;
+        long h2 = 0;
+        int i = off;
+        int end = off + len;
+        while (i + 16 <= end) {
+            long k1 = FastHash.getLongLE(input, i);
+            long k2 = FastHash.getLongLE(input, i + 8);
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+            i += 16;
+        }
+        return finish128(h1, h2, input, i, end, len, out, outOff);
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1_128;
+        k1 = Long.rotateLeft(k1, 31);
+        return k1 * C2_128;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2_128;
+        k2 = Long.rotateLeft(k2, 33);
+        return k2 * C1_128;
+    }
+
+    private static long finish128(long h1, long h2, byte[] tail, int i, int end, long total, byte[] out,
+                                  int outOff) {
+        int rest = end - i;
+        long k1 = 0;
+        long k2 = 0;
+        for (int j = rest - 1; j >= 8; --j) {
+            k2 ^= (long) (tail[i + j] & 0xff) << ((j - 8) * 8);
+        }
+        for (int j = Math.min(rest, 8) - 1; j >= 0; --j) {
+            k1 ^= (long) (tail[i + j] & 0xff) << (j * 8);
+        }
+        if (rest > 8) {
+            h2 ^= mixK2(k2);
+        }
+        if (rest > 0) {
+            h1 ^= mixK1(k1);
+        }
+
+        h1 ^= total;
+        h2 ^= total;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+        if (out != null) {
+            FastHash.putLongLE(out, outOff, h1);
+            FastHash.putLongLE(out, outOff + 8, h2);
+        }
+        return h1;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        return k ^ (k >>> 33);
+    }
+
+    // endregion
+
+    /**
+     * Buffers input into blocks of a fixed size, the part both streaming variants share.
+     */
+    private abstract static class BlockStreaming extends FastHash.Streaming {
+
+        final byte[] buffer;
+
+        int buffered;
+
+        long total;
+
+        BlockStreaming(int blockSize) {
+            this.buffer = new byte[blockSize];
+        }
+
+        abstract void block(byte[] input, int i);
+
+        @Override
+        public FastHash.Streaming update(byte[] input, int off, int len) {
+            int blockSize = buffer.length;
+            total += len;
+            int i = off;
+            int end = off + len;
+            if (buffered > 0) {
+                int count = Math.min(blockSize - buffered, len);
+                System.arraycopy(input, i, buffer, buffered, count);
+                buffered += count;
+                i += count;
+                if (buffered < blockSize) {
+                    return this;
+                }
+                block(buffer, 0);
+                buffered = 0;
+            }
+            while (i + blockSize <= end) {
+                block(input, i);
+                i += blockSize;
+            }
+            System.arraycopy(input, i, buffer, 0, end - i);
+            buffered = end - i;
+            return this;
+        }
+
+        void copyTo(BlockStreaming copy) {
+            copy.total = total;
+            copy.buffered = buffered;
+            System.arraycopy(buffer, 0, copy.buffer, 0, buffered);
+        }
+    }
+
+    static final class Streaming32 extends BlockStreaming {
+
+        private int h;
+
+        Streaming32() {
+            super(4);
+        }
+
+        @Override
+        void block(byte[] input, int i) {
+            h = mixH32(h, FastHash.getIntLE(input, i));
+        }
+
+        @Override
+        public FastHash.Streaming reset() {
+            h = 0;
+            total = 0;
+            buffered = 0;
+            return this;
+        }
+
+        @Override
+        public long getValue() {
+            return finish32(h, buffer, 0, buffered, total) & 0xffffffffL;
+        }
+
+        @Override
+        public int digest(byte[] out, int off) {
+            FastHash.putLongBE(out, off, getValue(), 4);
+            return 4;
+        }
+
+        @Override
+        public FastHash.Streaming copy() {
+            Streaming32 copy = new Streaming32();
+            copy.h = h;
+            copyTo(copy);
+            return copy;
+        }
+    }
+
+    static final class Streaming128 extends BlockStreaming {
+
+        private long h1;
+
+        private long h2;
+
+        Streaming128() {
+            super(16);
+        }
+
+        @Override
+        void block(byte[] input, int i) {
+            h1 ^= mixK1(FastHash.getLongLE(input, i));
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2(FastHash.getLongLE(input, i + 8));
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        @Override
+        public FastHash.Streaming reset() {
+            h1 = 0;
+            h2 = 0;
+            total = 0;
+            buffered = 0;
+            return this;
+        }
+
+        @Override
+        public long getValue() {
+            return finish128(h1, h2, buffer, 0, buffered, total, null, 0);
+        }
+
+        @Override
+        public int digest(byte[] out, int off) {
+            finish128(h1, h2, buffer, 0, buffered, total, out, off);
+            return 16;
+        }
+
+        @Override
+        public FastHash.Streaming copy() {
+            Streaming128 copy = new Streaming128();
+            copy.h1 = h1;
+            copy.h2 = h2;
+            copyTo(copy);
+            return copy;
+        }
+    }
+}
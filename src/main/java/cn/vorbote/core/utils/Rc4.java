@@ -0,0 +1,295 @@
+package cn.vorbote.core.utils;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@code Rc4} is a stateful RC4 stream, the cipher behind {@link cn.vorbote.core.constants.Hash#RC4}. The key
+ * schedule is computed once when the stream is created; {@link #reset()} and {@link #copy()} start over from it
+ * without running it again. Encryption and decryption are the same operation, applied in place or from one array to
+ * another, and a stream can wrap an {@link InputStream} or {@link OutputStream} so legacy payloads need not be held
+ * in memory as a whole.
+ * <p>
+ * RC4 is broken and must not be used to protect new data, it is kept for payloads which already use it. An instance
+ * is not thread-safe, give every thread its own {@link #copy()}.
+ *
+ * @author vorbote
+ */
+public final class Rc4 {
+
+    /**
+     * The state right after the key schedule, shared by all copies.
+     */
+    private final byte[] schedule;
+
+    private final byte[] state = new byte[256];
+
+    private int x;
+
+    private int y;
+
+    /**
+     * Create a stream of a key given as the bytes of a UTF-8 string.
+     *
+     * @param key The key.
+     * @throws IllegalArgumentException If the key is empty.
+     */
+    public Rc4(String key) {
+        this(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Create a stream of a key.
+     *
+     * @param key The key, 1 to 256 bytes are used.
+     * @throws IllegalArgumentException If the key is empty.
+     */
+    public Rc4(byte[] key) {
+        this.schedule = schedule(key);
+        reset();
+    }
+
+    private Rc4(Rc4 source) {
+        this.schedule = source.schedule;
+    }
+
+    /**
+     * Run the key schedule.
+     *
+     * @param key The key.
+     * @return The initial state.
+     */
+    private static byte[] schedule(byte[] key) {
+        if (key.length == 0) {
+            throw new IllegalArgumentException("Key can not be empty!");
+        }
+        byte[] state = new byte[256];
+        for (int i = 0; i < 256; ++i) {
+            state[i] = (byte) i;
+        }
+        int j = 0;
+        for (int i = 0; i < 256; ++i) {
+            j = (j + (state[i] & 0xff) + (key[i % key.length] & 0xff)) & 0xff;
+            byte tmp = state[i];
+            state[i] = state[j];
+            state[j] = tmp;
+        }
+        return state;
+    }
+
+    /**
+     * Start the key stream over, as if the stream was just created.
+     *
+     * @return This stream.
+     */
+    public Rc4 reset() {
+        System.arraycopy(schedule, 0, state, 0, 256);
+        x = 0;
+        y = 0;
+        return this;
+    }
+
+    /**
+     * Copy this stream at its current position, sharing the key schedule.
+     *
+     * @return The copy.
+     */
+    public Rc4 copy() {
+        Rc4 copy = new Rc4(this);
+        System.arraycopy(state, 0, copy.state, 0, 256);
+        copy.x = x;
+        copy.y = y;
+        return copy;
+    }
+
+    /**
+     * Encrypt or decrypt a range of bytes from one array into another. The ranges may be the same.
+     *
+     * @param in     The input bytes.
+     * @param off    The index of the first input byte.
+     * @param len    The count of bytes.
+     * @param out    The array to write to.
+     * @param outOff The index of the first byte to write.
+     * @return The count of bytes written.
+     * @throws IndexOutOfBoundsException If a range exceeds its array.
+     */
+    public int apply(byte[] in, int off, int len, byte[] out, int outOff) {
+        if (off < 0 || len < 0 || off > in.length - len || outOff < 0 || outOff > out.length - len) {
+            throw new IndexOutOfBoundsException(String.format("Range [%d, %d) -> [%d, %d) out of bounds for length "
+                    + "%d -> %d", off, off + len, outOff, outOff + len, in.length, out.length));
+        }
+        byte[] s = state;
+        int i = x;
+        int j = y;
+        for (int k = 0; k < len; ++k) {
+            i = (i + 1) & 0xff;
+            byte si = s[i];
+            j = (j + (si & 0xff)) & 0xff;
+            byte sj = s[j];
+            s[i] = sj;
+            s[j] = si;
+            out[outOff + k] = (byte) (in[off + k] ^ s[((si & 0xff) + (sj & 0xff)) & 0xff]);
+        }
+        x = i;
+        y = j;
+        return len;
+    }
+
+    /**
+     * Encrypt or decrypt a single byte, stepping the key stream once.
+     *
+     * @param b The byte in the low 8 bits.
+     * @return The result from 0 to 255.
+     */
+    private int next(int b) {
+        byte[] s = state;
+        int i = (x + 1) & 0xff;
+        byte si = s[i];
+        int j = (y + (si & 0xff)) & 0xff;
+        byte sj = s[j];
+        s[i] = sj;
+        s[j] = si;
+        x = i;
+        y = j;
+        return (b ^ s[((si & 0xff) + (sj & 0xff)) & 0xff]) & 0xff;
+    }
+
+    /**
+     * Encrypt or decrypt a range of bytes in place.
+     *
+     * @param data The bytes.
+     * @param off  The index of the first byte.
+     * @param len  The count of bytes.
+     * @return The array.
+     * @throws IndexOutOfBoundsException If the range exceeds the array.
+     */
+    public byte[] apply(byte[] data, int off, int len) {
+        apply(data, off, len, data, off);
+        return data;
+    }
+
+    /**
+     * Encrypt or decrypt bytes in place.
+     *
+     * @param data The bytes.
+     * @return The array.
+     */
+    public byte[] apply(byte[] data) {
+        return apply(data, 0, data.length);
+    }
+
+    /**
+     * Encrypt or decrypt the remaining bytes of a buffer in place. The position of the buffer is moved to its limit.
+     *
+     * @param data The buffer.
+     * @return The buffer.
+     */
+    public ByteBuffer apply(ByteBuffer data) {
+        int position = data.position();
+        int remaining = data.remaining();
+        if (data.hasArray()) {
+            int off = data.arrayOffset() + position;
+            apply(data.array(), off, remaining, data.array(), off);
+            data.position(data.limit());
+            return data;
+        }
+        byte[] scratch = new byte[Math.min(remaining, 8192)];
+        while (data.hasRemaining()) {
+            int count = Math.min(scratch.length, data.remaining());
+            int start = data.position();
+            data.get(scratch, 0, count);
+            apply(scratch, 0, count, scratch, 0);
+            data.position(start);
+            data.put(scratch, 0, count);
+        }
+        return data;
+    }
+
+    /**
+     * Wrap a stream so the bytes read from it are encrypted or decrypted by this stream.
+     *
+     * @param input The stream.
+     * @return The wrapping stream.
+     */
+    public InputStream wrap(InputStream input) {
+        return new FilterInputStream(input) {
+
+            @Override
+            public int read() throws IOException {
+                int read = in.read();
+                if (read == -1) {
+                    return -1;
+                }
+                return next(read);
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = in.read(b, off, len);
+                if (read > 0) {
+                    apply(b, off, read);
+                }
+                return read;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                byte[] skipped = new byte[(int) Math.min(Math.max(n, 0), 8192)];
+                int read = read(skipped, 0, skipped.length);
+                return Math.max(read, 0);
+            }
+
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+
+            @Override
+            public synchronized void mark(int limit) {
+            }
+
+            @Override
+            public synchronized void reset() throws IOException {
+                throw new IOException("mark/reset not supported");
+            }
+        };
+    }
+
+    /**
+     * Wrap a stream so the bytes written to it are encrypted or decrypted by this stream first. The bytes passed to
+     * the wrapping stream are left untouched.
+     *
+     * @param output The stream.
+     * @return The wrapping stream.
+     */
+    public OutputStream wrap(OutputStream output) {
+        return new FilterOutputStream(output) {
+
+            private byte[] buffer = new byte[0];
+
+            @Override
+            public void write(int b) throws IOException {
+                out.write(next(b));
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (buffer.length < len) {
+                    buffer = new byte[Math.min(Math.max(len, 256), 8192)];
+                }
+                while (len > 0) {
+                    int count = Math.min(len, buffer.length);
+                    apply(b, off, count, buffer, 0);
+                    out.write(buffer, 0, count);
+                    off += count;
+                    len -= count;
+                }
+            }
+        };
+    }
+}
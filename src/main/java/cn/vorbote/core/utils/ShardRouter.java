@@ -0,0 +1,390 @@
+package cn.vorbote.core.utils;
+
+import java.util.Arrays;
+
+/**
+ * {@code ShardRouter} maps {@link SnowFlake} ids to storage shards. Hashing the raw id spreads badly, because its high
+ * bits are a timestamp which changes slowly, so the router derives a key from the bits of the id which do vary:
+ * <ul>
+ *     <li>{@link Strategy#MIXED}: All bits of the id, mixed by a 64-bit finalizer. Spreads evenly for any traffic.</li>
+ *     <li>{@link Strategy#SEQUENCE}: The sequence bits. Cheapest, but even only when most ticks issue many ids; at low
+ *     rates most ids have sequence 0.</li>
+ *     <li>{@link Strategy#NODE}: The data centre id and worker id bits, which keeps all ids of a generator on one
+ *     shard.</li>
+ * </ul>
+ * The key selects one of a fixed count of virtual buckets, and a bucket table maps every bucket to a shard. Changing
+ * the count of shards with {@link #reshard(int)} only reassigns as many buckets as needed to rebalance, so only the
+ * rows of {@link #movedBuckets(ShardRouter)} have to be migrated. Routing is a shift, a mask and an array read per id,
+ * and {@link #route(long[], int, int, int[], int)} routes whole batches.
+ * <p>
+ * Routers are immutable and thread-safe.
+ *
+ * @author vorbote
+ */
+public final class ShardRouter {
+
+    /**
+     * Which bits of an id decide its shard.
+     */
+    public enum Strategy {
+        MIXED, SEQUENCE, NODE
+    }
+
+    private final IdLayout layout;
+
+    private final Strategy strategy;
+
+    private final int[] table;
+
+    private final int bucketMask;
+
+    private final int shards;
+
+    private final int shift;
+
+    private ShardRouter(IdLayout layout, Strategy strategy, int[] table, int shards) {
+        this.layout = layout;
+        this.strategy = strategy;
+        this.table = table;
+        this.bucketMask = table.length - 1;
+        this.shards = shards;
+        this.shift = strategy == Strategy.NODE ? layout.getWorkerIdShift() : 0;
+    }
+
+    /**
+     * Generate a builder of {@code ShardRouter}.
+     *
+     * @param layout The layout of the ids to route, e.g. {@link SnowFlake#getLayout()}.
+     * @return A builder of {@code ShardRouter}.
+     */
+    public static ShardRouter.Builder builder(IdLayout layout) {
+        return new ShardRouter.Builder(layout);
+    }
+
+    /**
+     * Get the virtual bucket of an id.
+     *
+     * @param id The id.
+     * @return The bucket, between 0 and {@link #getVirtualBuckets()} - 1.
+     */
+    public int bucketOf(long id) {
+        if (strategy == Strategy.MIXED) {
+            return (int) mix(id) & bucketMask;
+        }
+        return (int) (id >>> shift) & bucketMask;
+    }
+
+    /**
+     * Get the shard of an id.
+     *
+     * @param id The id.
+     * @return The shard, between 0 and {@link #getShards()} - 1.
+     */
+    public int shardOf(long id) {
+        return table[bucketOf(id)];
+    }
+
+    /**
+     * Get the shards of a batch of ids.
+     *
+     * @param ids The ids.
+     * @return An array contains the shard of every id, in the same order.
+     */
+    public int[] route(long[] ids) {
+        int[] dst = new int[ids.length];
+        route(ids, 0, ids.length, dst, 0);
+        return dst;
+    }
+
+    /**
+     * Write the shards of a range of ids into an array.
+     *
+     * @param ids    The ids.
+     * @param off    The index of the first id.
+     * @param len    The count of ids.
+     * @param dst    The array to write the shards to.
+     * @param dstOff The index to write the shard of the first id to.
+     * @throws IndexOutOfBoundsException If a range is out of the bounds of its array.
+     */
+    public void route(long[] ids, int off, int len, int[] dst, int dstOff) {
+        if (off < 0 || len < 0 || off > ids.length - len || dstOff < 0 || dstOff > dst.length - len) {
+            throw new IndexOutOfBoundsException(String.format("Can not route %d ids at %d into %d at %d",
+                    len, off, dst.length, dstOff));
+        }
+        // One loop per strategy, so the loop body has no branch.
+        if (strategy == Strategy.MIXED) {
+            for (int i = 0; i < len; ++i) {
+                dst[dstOff + i] = table[(int) mix(ids[off + i]) & bucketMask];
+            }
+        } else {
+            for (int i = 0; i < len; ++i) {
+                dst[dstOff + i] = table[(int) (ids[off + i] >>> shift) & bucketMask];
+            }
+        }
+    }
+
+    /**
+     * Build a router for another count of shards over the same buckets. Buckets stay on their shard unless the shard
+     * is gone or has more than its share, so the fewest buckets move.
+     *
+     * @param shards The new count of shards.
+     * @return A new router.
+     * @throws IllegalArgumentException If {@code shards} is less than 1 or greater than the count of buckets.
+     */
+    public ShardRouter reshard(int shards) {
+        checkShards(shards, table.length);
+        int buckets = table.length;
+        int[] counts = new int[shards];
+        for (int shard : table) {
+            if (shard < shards) {
+                ++counts[shard];
+            }
+        }
+
+        // Every shard gets buckets / shards buckets, the remainder goes to the shards which hold the most already.
+        Integer[] order = new Integer[shards];
+        for (int i = 0; i < shards; ++i) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(counts[b], counts[a]));
+        int[] quotas = new int[shards];
+        for (int i = 0; i < shards; ++i) {
+            quotas[order[i]] = buckets / shards + (i < buckets % shards ? 1 : 0);
+        }
+
+        int[] newTable = table.clone();
+        int[] kept = new int[shards];
+        int[] moving = new int[buckets];
+        int movingCount = 0;
+        for (int bucket = 0; bucket < buckets; ++bucket) {
+            int shard = newTable[bucket];
+            if (shard < shards && kept[shard] < quotas[shard]) {
+                ++kept[shard];
+            } else {
+                moving[movingCount++] = bucket;
+            }
+        }
+        int shard = 0;
+        for (int i = 0; i < movingCount; ++i) {
+            while (kept[shard] == quotas[shard]) {
+                ++shard;
+            }
+            newTable[moving[i]] = shard;
+            ++kept[shard];
+        }
+        return new ShardRouter(layout, strategy, newTable, shards);
+    }
+
+    /**
+     * Get the buckets which are routed to different shards by another router, i.e. the buckets whose rows have to be
+     * migrated when switching to it.
+     *
+     * @param target The router to switch to, with the same count of buckets.
+     * @return The moved buckets in ascending order.
+     * @throws IllegalArgumentException If the routers have different counts of buckets.
+     */
+    public int[] movedBuckets(ShardRouter target) {
+        if (target.table.length != table.length) {
+            throw new IllegalArgumentException("The routers should have the same count of virtual buckets!");
+        }
+        int[] moved = new int[table.length];
+        int count = 0;
+        for (int bucket = 0; bucket < table.length; ++bucket) {
+            if (table[bucket] != target.table[bucket]) {
+                moved[count++] = bucket;
+            }
+        }
+        return Arrays.copyOf(moved, count);
+    }
+
+    /**
+     * Spread the bits of an id, using the finalizer of MurmurHash3.
+     *
+     * @param id The id.
+     * @return The mixed id.
+     */
+    private static long mix(long id) {
+        long h = id;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    private static void checkShards(int shards, int buckets) {
+        if (shards < 1 || shards > buckets) {
+            throw new IllegalArgumentException(String.format("Shards should between 1 and %d", buckets));
+        }
+    }
+
+    /**
+     * Get the count of shards.
+     *
+     * @return The count of shards.
+     */
+    public int getShards() {
+        return shards;
+    }
+
+    /**
+     * Get the count of virtual buckets.
+     *
+     * @return The count of buckets.
+     */
+    public int getVirtualBuckets() {
+        return table.length;
+    }
+
+    /**
+     * Get which bits of an id decide its shard.
+     *
+     * @return The strategy.
+     */
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Get the layout of the routed ids.
+     *
+     * @return The id layout.
+     */
+    public IdLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Get a copy of the bucket table, to persist it and restore the router with {@link Builder#bucketTable(int[])}.
+     *
+     * @return The shard of every bucket.
+     */
+    public int[] getBucketTable() {
+        return table.clone();
+    }
+
+    /**
+     * Inner class {@code Builder} of {@code ShardRouter}.
+     */
+    public static class Builder {
+
+        private final IdLayout layout;
+
+        private Strategy strategy = Strategy.MIXED;
+
+        private int virtualBuckets = 1024;
+
+        private int shards = 1;
+
+        private int[] bucketTable;
+
+        /**
+         * Generate a new {@code Builder}, use protected to prevent other coders use it.
+         *
+         * @param layout The layout of the ids to route.
+         */
+        protected Builder(IdLayout layout) {
+            if (layout == null) {
+                throw new IllegalArgumentException("Layout can not be null!");
+            }
+            this.layout = layout;
+        }
+
+        /**
+         * Set which bits of an id decide its shard. Defaults to {@link Strategy#MIXED}.
+         *
+         * @param strategy The strategy.
+         * @return {@code Builder} instance itself.
+         */
+        public Builder strategy(Strategy strategy) {
+            this.strategy = strategy;
+            return this;
+        }
+
+        /**
+         * Set the count of virtual buckets. Defaults to 1024. It can not be changed later, so choose it well above the
+         * largest count of shards expected.
+         *
+         * @param virtualBuckets The count of buckets. (Should be a power of 2, and not exceed the values the bits of
+         *                       the strategy can take)
+         * @return {@code Builder} instance itself.
+         */
+        public Builder virtualBuckets(int virtualBuckets) {
+            this.virtualBuckets = virtualBuckets;
+            return this;
+        }
+
+        /**
+         * Set the count of shards. The buckets are dealt out to the shards in turn. Defaults to 1.
+         *
+         * @param shards The count of shards.
+         * @return {@code Builder} instance itself.
+         */
+        public Builder shards(int shards) {
+            this.shards = shards;
+            return this;
+        }
+
+        /**
+         * Restore a bucket table returned by {@link ShardRouter#getBucketTable()}. The count of virtual buckets and
+         * shards are taken from the table.
+         *
+         * @param bucketTable The shard of every bucket.
+         * @return {@code Builder} instance itself.
+         */
+        public Builder bucketTable(int[] bucketTable) {
+            this.bucketTable = bucketTable.clone();
+            return this;
+        }
+
+        /**
+         * Build a {@code ShardRouter} instance.
+         *
+         * @return A {@code ShardRouter} instance.
+         * @throws IllegalArgumentException If any setting is out of its range.
+         */
+        public ShardRouter build() {
+            if (strategy == null) {
+                throw new IllegalArgumentException("Strategy can not be null!");
+            }
+            int buckets = bucketTable == null ? virtualBuckets : bucketTable.length;
+            if (buckets < 1 || Integer.bitCount(buckets) != 1) {
+                throw new IllegalArgumentException("Virtual buckets should be a power of 2!");
+            }
+
+            int keyBits;
+            switch (strategy) {
+                case SEQUENCE:
+                    keyBits = layout.getSequenceBits();
+                    break;
+                case NODE:
+                    keyBits = layout.getWorkerIdBits() + layout.getDataCentreIdBits();
+                    break;
+                default:
+                    keyBits = 31;
+            }
+            if (Integer.numberOfTrailingZeros(buckets) > keyBits) {
+                throw new IllegalArgumentException(String.format("The %s bits of the layout allow at most %d " +
+                        "virtual buckets", strategy, 1L << keyBits));
+            }
+
+            int[] table;
+            int shardCount;
+            if (bucketTable == null) {
+                checkShards(shards, buckets);
+                table = new int[buckets];
+                for (int bucket = 0; bucket < buckets; ++bucket) {
+                    table[bucket] = bucket % shards;
+                }
+                shardCount = shards;
+            } else {
+                table = bucketTable;
+                shardCount = Arrays.stream(table).max().orElse(0) + 1;
+                if (Arrays.stream(table).min().orElse(0) < 0) {
+                    throw new IllegalArgumentException("Shards in the bucket table can not be less than 0!");
+                }
+            }
+            return new ShardRouter(layout, strategy, table, shardCount);
+        }
+    }
+}
@@ -2,9 +2,48 @@ package cn.vorbote.core.utils;
 
 
 import cn.vorbote.core.exceptions.SnowFlakeException;
+import cn.vorbote.core.time.DateTime;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
 
 /**
  * Distributed Sequence Generator.
+ * <p>
+ * This generator is lock-free: the timestamp and the sequence of the last issued id are packed into a single
+ * {@code long} and advanced with compare-and-set, so concurrent callers never queue on a monitor. Batch callers can
+ * use {@link #nextIds(int)}, {@link #fill(long[], int, int)} or {@link #idStream(long)}, which claim a whole run of
+ * sequence numbers of a millisecond in one step instead of paying for every id separately.
+ * <p>
+ * Under heavy contention the sequence space can be split into stripes, see
+ * {@link #SnowFlake(long, long, long, int)}. Every stripe owns a fixed slice of the sequence numbers of each
+ * millisecond and keeps its own state on its own cache line, so threads mapped to different stripes never touch the
+ * same shared state, while the ids stay unique within one {@code workerId}/{@code dataCentreId} pair.
+ * <p>
+ * What happens when the clock moves backwards is decided by a {@link ClockRegressionPolicy}, which can be set through
+ * {@link #builder()}. By default {@link SnowFlakeException} is thrown.
+ * <p>
+ * The clock is read from a {@link TimeSource}, and whenever the generator has to wait for the clock to move it
+ * follows a {@link WaitStrategy}, which spins, then yields, then parks instead of burning a whole core.
+ * <p>
+ * The widths of the timestamp, data centre id, worker id and sequence, as well as the length of one timestamp tick,
+ * are described by an {@link IdLayout}. The default layout is the classic 41/5/5/12 bits with millisecond ticks.
+ * <p>
+ * Ids generated by an instance can be decoded with {@link #timestampOf(long)}, {@link #dataCentreOf(long)},
+ * {@link #workerOf(long)} and {@link #sequenceOf(long)}. Because the timestamp occupies the highest bits,
+ * {@link #minIdAt(DateTime)} and {@link #maxIdAt(DateTime)} turn a time window into an id range, so a query on an id
+ * primary key becomes an index range scan.
+ * <p>
+ * With a {@link SnowFlakeCheckpoint} the generator persists a high-water mark of its timestamps and resumes after it
+ * on restart, so a clock which went backwards while the process was down can not lead to duplicate ids.
+ * <p>
+ * Issued ids, sequence exhaustion, time spent waiting for the clock and clock regressions are counted by the
+ * {@link SnowFlakeMetrics} of {@link #getMetrics()}.
  */
 public class SnowFlake {
 
@@ -18,14 +57,34 @@ public class SnowFlake {
     private final long startEpoch;
 
     /**
-     * 机器id所占的位数
+     * The bit layout of the ids.
      */
-    private final long workerIdBits = 5L;
+    private final IdLayout layout;
 
     /**
-     * 数据标识id所占的位数
+     * 序列在id中占的位数
      */
-    private final long dataCentreIdBits = 5L;
+    private final int sequenceBits;
+
+    /**
+     * 生成序列的掩码(默认为0b111111111111=0xfff=4095)
+     */
+    private final long sequenceMask;
+
+    /**
+     * 时间截向左移的位数(默认为5+5+12=22)
+     */
+    private final int timestampLeftShift;
+
+    /**
+     * The milliseconds of one timestamp tick.
+     */
+    private final long tickMillis;
+
+    /**
+     * The largest timestamp, in ticks, the layout can hold.
+     */
+    private final long maxTick;
 
     /**
      * 工作机器ID(0~31)
@@ -38,14 +97,73 @@ public class SnowFlake {
     private final long dataCentreId;
 
     /**
-     * 毫秒内序列(0~4095)
+     * The data centre id and worker id, already shifted into their positions of the id.
+     */
+    private final long nodeBits;
+
+    /**
+     * The distance between the states of two adjacent stripes in {@link #states}. 16 longs are 128 bytes, which
+     * keeps every state on its own cache line even with adjacent-line prefetching.
+     */
+    private static final int STRIPE_PADDING = 16;
+
+    /**
+     * The count of stripes minus 1, used to map a thread to its stripe.
+     */
+    private final int stripeMask;
+
+    /**
+     * The count of sequence numbers every stripe owns in one millisecond.
+     */
+    private final long stripeSize;
+
+    /**
+     * The states of the last issued id of every stripe, packed as {@code tick << sequenceBits | sequence}, where
+     * {@code tick} is the timestamp in ticks since {@code startEpoch}. The state of stripe {@code i} is stored at index
+     * {@code i * STRIPE_PADDING}. The initial tick is -1, so the first call always starts a fresh tick.
+     * <p>
+     * The state of the other half of the sequence space, used by {@link ClockRegressionPolicy#backupSequenceBit()},
+     * follows at {@code i * STRIPE_PADDING + 1}, and {@code i * STRIPE_PADDING + 2} is 1 while the clock is behind the
+     * state, so a regression is recorded once instead of on every id issued until the clock catches up.
+     */
+    private final AtomicLongArray states;
+
+    /**
+     * The policy to apply when the clock moved backwards.
+     */
+    private final ClockRegressionPolicy clockRegressionPolicy;
+
+    /**
+     * The highest sequence bit if it is reserved by {@link ClockRegressionPolicy#backupSequenceBit()}, otherwise 0.
+     * When it is reserved, the slot next to the state of a stripe keeps the last state of the inactive half of the
+     * sequence space.
+     */
+    private final long backupBit;
+
+    /**
+     * Guards switching between the halves of the sequence space, which updates two slots of {@link #states}.
      */
-    private long sequence = 0L;
+    private final Object backupSwitchLock = new Object();
 
     /**
-     * 上次生成ID的时间截
+     * The counters of the hot path.
      */
-    private long lastTimestamp = -1L;
+    private final SnowFlakeMetrics metrics = new SnowFlakeMetrics();
+
+    /**
+     * The source of the current time.
+     */
+    private final TimeSource timeSource;
+
+    /**
+     * How to wait for the clock to move.
+     */
+    private final WaitStrategy waitStrategy;
+
+    /**
+     * The persisted high-water mark of the timestamps, or {@code null} if it is not persisted.
+     */
+    private final SnowFlakeCheckpoint checkpoint;
     // endregion
 
     // region Constructor
@@ -68,25 +186,123 @@ public class SnowFlake {
      * @param dataCentreId The id of the data centre. (Should between 0 and 31)
      */
     public SnowFlake(long startEpoch, long workerId, long dataCentreId) {
-        if (startEpoch > currentTimestamp()) {
+        this(startEpoch, workerId, dataCentreId, 1);
+    }
+
+    /**
+     * Constructor can build a new SnowFlake instance whose sequence space is split into stripes. Threads are mapped
+     * to stripes by their thread id, and each stripe owns {@code 4096 / stripes} sequence numbers per millisecond
+     * with the default {@link IdLayout}, which is also the throughput ceiling of a single stripe (e.g. 8 stripes allow
+     * 512 ids per millisecond, about 512,000 ids per second, per stripe). The ceiling of the whole instance stays 4096
+     * ids per millisecond.
+     *
+     * @param startEpoch   The start epoch to calculate.
+     * @param workerId     The id of the server. (Should between 0 and 31)
+     * @param dataCentreId The id of the data centre. (Should between 0 and 31)
+     * @param stripes      The count of stripes. (Should be a power of 2 between 1 and 4096)
+     */
+    public SnowFlake(long startEpoch, long workerId, long dataCentreId, int stripes) {
+        this(builder()
+                .startEpoch(startEpoch)
+                .workerId(workerId)
+                .dataCentreId(dataCentreId)
+                .stripes(stripes));
+    }
+
+    /**
+     * Build a new SnowFlake instance from a builder.
+     *
+     * @param builder The builder.
+     * @see #builder()
+     */
+    protected SnowFlake(Builder builder) {
+        this.timeSource = builder.timeSource == null ? TimeSource.system() : builder.timeSource;
+        this.waitStrategy = builder.waitStrategy == null ? WaitStrategy.defaults() : builder.waitStrategy;
+
+        if (builder.startEpoch > currentTimestamp()) {
             throw new IllegalArgumentException("Start Epoch can not be greater than current timestamp!");
         }
 
-        long maxWorkerId = ~(-1L << workerIdBits);
-        if (workerId > maxWorkerId || workerId < 0) {
+        IdLayout layout = builder.layout == null ? IdLayout.DEFAULT : builder.layout;
+
+        long maxWorkerId = layout.getMaxWorkerId();
+        if (builder.workerId > maxWorkerId || builder.workerId < 0) {
             throw new IllegalArgumentException(String.format("Worker Id can't be greater than %d or less than 0",
                     maxWorkerId));
         }
 
-        long maxDataCentreId = ~(-1L << dataCentreIdBits);
-        if (dataCentreId > maxDataCentreId || dataCentreId < 0) {
+        long maxDataCentreId = layout.getMaxDataCentreId();
+        if (builder.dataCentreId > maxDataCentreId || builder.dataCentreId < 0) {
             throw new IllegalArgumentException(String.format("Data Centre Id can't be greater than %d or less than 0",
                     maxDataCentreId));
         }
 
-        this.startEpoch = startEpoch;
-        this.workerId = workerId;
-        this.dataCentreId = dataCentreId;
+        this.layout = layout;
+        this.sequenceBits = layout.getSequenceBits();
+        this.sequenceMask = layout.getSequenceMask();
+        this.timestampLeftShift = layout.getTimestampShift();
+        this.tickMillis = layout.getTickMillis();
+        this.maxTick = layout.getMaxTimestamp();
+
+        ClockRegressionPolicy policy = builder.clockRegressionPolicy == null
+                ? ClockRegressionPolicy.reject() : builder.clockRegressionPolicy;
+        long backupBit = policy.getMode() == ClockRegressionPolicy.Mode.BACKUP_SEQUENCE_BIT
+                ? 1L << (sequenceBits - 1) : 0L;
+        long sequenceSpace = (sequenceMask + 1) >> Long.bitCount(backupBit);
+
+        int stripes = builder.stripes;
+        if (stripes < 1 || stripes > Math.min(sequenceSpace, 1 << 16) || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException(String.format("Stripes should be a power of 2 between 1 and %d",
+                    Math.min(sequenceSpace, 1 << 16)));
+        }
+
+        this.startEpoch = builder.startEpoch;
+        this.workerId = builder.workerId;
+        this.dataCentreId = builder.dataCentreId;
+        this.nodeBits = (workerId << layout.getWorkerIdShift()) | (dataCentreId << layout.getDataCentreIdShift());
+        this.clockRegressionPolicy = policy;
+        this.backupBit = backupBit;
+        this.stripeMask = stripes - 1;
+        this.stripeSize = sequenceSpace / stripes;
+        this.states = new AtomicLongArray(stripes * STRIPE_PADDING);
+        for (int i = 0; i < stripes; ++i) {
+            states.set(i * STRIPE_PADDING, (-1L << sequenceBits) | (i * stripeSize));
+            states.set(i * STRIPE_PADDING + 1, (-1L << sequenceBits) | backupBit | (i * stripeSize));
+        }
+
+        this.checkpoint = builder.checkpoint;
+        if (checkpoint != null && checkpoint.getHighWaterMark() > 0) {
+            resumeAfter(checkpoint.getHighWaterMark());
+        }
+    }
+
+    /**
+     * Resume after a persisted high-water mark: mark the sequences of the tick before it as used, so the next id
+     * is generated at the mark or later.
+     *
+     * @param highWaterMark Every id has been generated at a timestamp before this mark.
+     */
+    private void resumeAfter(long highWaterMark) {
+        long timestamp = currentTimestamp();
+        if (timestamp < highWaterMark && highWaterMark - timestamp <= checkpoint.getLeaseMillis()) {
+            // A fast restart within one lease, the clock will pass the mark soon.
+            awaitToNextMillis(highWaterMark - 1);
+        }
+        long tick = toTick(highWaterMark - 1);
+        for (int i = 0; i <= stripeMask; ++i) {
+            long lastSequence = i * stripeSize + stripeSize - 1;
+            states.set(i * STRIPE_PADDING, (tick << sequenceBits) | lastSequence);
+            states.set(i * STRIPE_PADDING + 1, (tick << sequenceBits) | backupBit | lastSequence);
+        }
+    }
+
+    /**
+     * Generate a builder of {@code SnowFlake}.
+     *
+     * @return A builder of {@code SnowFlake}.
+     */
+    public static SnowFlake.Builder builder() {
+        return new SnowFlake.Builder();
     }
     // endregion
 
@@ -96,56 +312,475 @@ public class SnowFlake {
      * Get next unique id.
      *
      * @return A unique id.
+     * @throws SnowFlakeException If the system clock moved backwards and the {@link ClockRegressionPolicy} refused
+     *                            to generate an id.
      */
-    public synchronized long nextId() {
-        long timestamp = currentTimestamp();
+    public long nextId() {
+        int index = stripeIndex();
+        return toId(claim(index, (index / STRIPE_PADDING) * stripeSize, 1));
+    }
+
+    /**
+     * Get a batch of unique ids. The ids are in ascending order.
+     *
+     * @param n The count of ids.
+     * @return An array contains {@code n} unique ids.
+     * @throws IllegalArgumentException If {@code n} is negative.
+     * @throws SnowFlakeException       If the system clock moved backwards.
+     */
+    public long[] nextIds(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("The count of ids can not be less than 0!");
+        }
+        long[] ids = new long[n];
+        fill(ids, 0, n);
+        return ids;
+    }
+
+    /**
+     * Fill the specified range of an array with unique ids. The ids are in ascending order.
+     *
+     * @param dst The array to fill.
+     * @param off The index of the first element to fill.
+     * @param len The count of elements to fill.
+     * @throws IndexOutOfBoundsException If the range is out of the bounds of {@code dst}.
+     * @throws SnowFlakeException        If the system clock moved backwards.
+     */
+    public void fill(long[] dst, int off, int len) {
+        if (off < 0 || len < 0 || off > dst.length - len) {
+            throw new IndexOutOfBoundsException(String.format("Range [%d, %d + %d) is out of bounds for length %d",
+                    off, off, len, dst.length));
+        }
+        int end = off + len;
+        while (off < end) {
+            off += reserve(dst, off, end - off);
+        }
+    }
 
-        // 如果当前时间小于上一次ID生成的时间戳，说明系统时钟回退过这个时候应当抛出异常
-        if (timestamp < lastTimestamp) {
-            throw new SnowFlakeException(
-                    String.format("Clock moved backwards. Refusing to generate id for %d milliseconds",
-                            lastTimestamp - timestamp));
-        }
-
-        // 如果是同一时间生成的，则进行毫秒内序列
-        long sequenceBits = 12L;
-        if (lastTimestamp == timestamp) {
-            long sequenceMask = ~(-1L << sequenceBits);
-            sequence = (sequence + 1) & sequenceMask;
-            // 毫秒内序列溢出
-            if (sequence == 0) {
-                // 阻塞到下一个毫秒,获得新的时间戳
-                timestamp = awaitToNextMillis(lastTimestamp);
+    /**
+     * Get a sequential stream of unique ids. The ids are reserved lazily, a block at a time, while the stream is
+     * consumed.
+     *
+     * @param count The count of ids in the stream.
+     * @return A stream of {@code count} unique ids in ascending order.
+     * @throws IllegalArgumentException If {@code count} is negative.
+     */
+    public LongStream idStream(long count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("The count of ids can not be less than 0!");
+        }
+        PrimitiveIterator.OfLong iterator = new PrimitiveIterator.OfLong() {
+            private final long[] buffer = new long[(int) Math.min(count, Math.min(stripeSize, 1 << 16))];
+            private long remaining = count;
+            private int position;
+            private int limit;
+
+            @Override
+            public boolean hasNext() {
+                return position < limit || remaining > 0;
+            }
+
+            @Override
+            public long nextLong() {
+                if (position == limit) {
+                    if (remaining == 0) {
+                        throw new NoSuchElementException();
+                    }
+                    limit = reserve(buffer, 0, (int) Math.min(remaining, buffer.length));
+                    remaining -= limit;
+                    position = 0;
+                }
+                return buffer[position++];
             }
+        };
+        return StreamSupport.longStream(Spliterators.spliterator(iterator, count,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+    }
+
+    /**
+     * Reserve a run of consecutive sequence numbers within one millisecond and write the ids into {@code dst}. The
+     * run ends at the end of the sequence space of the millisecond, so fewer ids than requested may be written.
+     *
+     * @param dst The array to fill.
+     * @param off The index of the first element to fill.
+     * @param len The maximum count of ids to reserve, must be positive.
+     * @return The count of ids actually written, at least 1.
+     */
+    private int reserve(long[] dst, int off, int len) {
+        int index = stripeIndex();
+        long stripeBase = (index / STRIPE_PADDING) * stripeSize;
+        long first = claim(index, stripeBase, len);
+        int count = runLength(first, stripeBase, len);
+        for (int i = 0; i < count; ++i) {
+            dst[off + i] = toId(first + i);
         }
-        // 时间戳改变，毫秒内序列重置
-        else {
-            sequence = 0L;
+        return count;
+    }
+
+    /**
+     * Claim a run of consecutive sequence numbers of one stripe within one millisecond. The length of the run is
+     * {@link #runLength(long, long, int)} of the returned state.
+     *
+     * @param index      The index of the state of the stripe.
+     * @param stripeBase The first sequence number owned by the stripe.
+     * @param max        The maximum count of sequence numbers to claim, must be positive.
+     * @return The packed state of the first claimed sequence number.
+     */
+    private long claim(int index, long stripeBase, int max) {
+        for (; ; ) {
+            // The state must be read before the clock, otherwise a timestamp published by another thread may look
+            // like a clock regression.
+            long last = states.get(index);
+            long lastTick = last >> sequenceBits;
+            long base = stripeBase | (last & backupBit);
+            long timestamp = currentTimestamp();
+            long tick = toTick(timestamp);
+            boolean ahead = false;
+
+            // 如果当前时间小于上一次ID生成的时间戳，说明系统时钟回退过
+            if (tick < lastTick) {
+                long regression = tickStart(lastTick) - timestamp;
+                if (states.get(index + 2) == 0 && states.compareAndSet(index + 2, 0, 1)) {
+                    metrics.recordRegression(regression);
+                }
+                switch (clockRegressionPolicy.getMode()) {
+                    case LOGICAL_CLOCK:
+                        clockRegressionPolicy.fire();
+                        tick = lastTick;
+                        ahead = true;
+                        break;
+                    case BOUNDED_WAIT:
+                        if (regression > clockRegressionPolicy.getMaxWaitMillis()) {
+                            throw clockRegressionPolicy.reject(regression);
+                        }
+                        clockRegressionPolicy.fire();
+                        awaitToNextMillis(tickStart(lastTick) - 1);
+                        continue;
+                    case BACKUP_SEQUENCE_BIT:
+                        switchSequenceHalf(index);
+                        continue;
+                    default:
+                        throw clockRegressionPolicy.reject(regression);
+                }
+            }
+
+            long first;
+            if (tick == lastTick) {
+                if ((last & sequenceMask) == base + stripeSize - 1) {
+                    if (ahead) {
+                        // 逻辑时钟领先于系统时钟, 直接进入下一个时间单位
+                        first = ((lastTick + 1) << sequenceBits) | base;
+                    } else {
+                        // 时间单位内序列溢出, 阻塞到下一个时间单位后重试
+                        awaitToNextMillis(tickStart(lastTick + 1) - 1);
+                        continue;
+                    }
+                } else {
+                    // 如果是同一时间生成的，则进行时间单位内序列
+                    first = last + 1;
+                }
+            } else {
+                // 时间戳改变，序列重置
+                first = (tick << sequenceBits) | base;
+            }
+            if (!ahead && states.get(index + 2) != 0) {
+                // The clock caught up with the stripe.
+                states.compareAndSet(index + 2, 1, 0);
+            }
+
+            if ((first >> sequenceBits) > maxTick) {
+                throw new SnowFlakeException(String.format("Timestamp overflow. The layout can not hold timestamps " +
+                        "after %d", tickStart(maxTick + 1) - 1));
+            }
+
+            // The mark must cover the tick before any id of it can be published.
+            if (checkpoint != null && (first >> sequenceBits) != lastTick) {
+                checkpoint.ensureCovered(tickStart(first >> sequenceBits));
+            }
+
+            int count = runLength(first, stripeBase, max);
+            if (states.compareAndSet(index, last, first + count - 1)) {
+                metrics.recordIssued(count);
+                if ((first & sequenceMask) + count == base + stripeSize) {
+                    // Only the claim which takes the last sequence number of the tick counts it as exhausted.
+                    metrics.recordExhaustion();
+                }
+                return first;
+            }
         }
+    }
+
+    /**
+     * Get the length of the run claimed from the specified state, which ends at the last sequence number of the
+     * stripe in the current half of the sequence space.
+     *
+     * @param first      The packed state of the first sequence number of the run.
+     * @param stripeBase The first sequence number owned by the stripe.
+     * @param max        The maximum length of the run.
+     * @return The length of the run.
+     */
+    private int runLength(long first, long stripeBase, int max) {
+        long limit = (stripeBase | (first & backupBit)) + stripeSize - 1;
+        return (int) Math.min(limit - (first & sequenceMask) + 1, max);
+    }
+
+    /**
+     * Switch a stripe to the other half of its sequence space after the clock moved backwards. The states of the two
+     * halves are swapped, so each half stays monotonic on its own.
+     *
+     * @param index The index of the state of the stripe.
+     * @throws SnowFlakeException If the clock is also behind the last timestamp of the other half.
+     */
+    private void switchSequenceHalf(int index) {
+        synchronized (backupSwitchLock) {
+            for (; ; ) {
+                long last = states.get(index);
+                long lastTick = last >> sequenceBits;
+                long timestamp = currentTimestamp();
+                long tick = toTick(timestamp);
+                if (tick >= lastTick) {
+                    // Already switched by another thread, or the clock caught up.
+                    return;
+                }
 
-        // 上次生成ID的时间截
-        lastTimestamp = timestamp;
+                long inactive = states.get(index + 1);
+                if (tick < inactive >> sequenceBits) {
+                    throw clockRegressionPolicy.reject(tickStart(lastTick) - timestamp);
+                }
 
-        // 移位并通过或运算拼到一起组成64位的ID
-        long timestampLeftShift = sequenceBits + workerIdBits + dataCentreIdBits;
-        long dataCentreIdShift = sequenceBits + workerIdBits;
-        return ((timestamp - startEpoch) << timestampLeftShift)
-                | (dataCentreId << dataCentreIdShift)
-                | (workerId << sequenceBits)
-                | sequence;
+                if (states.compareAndSet(index, last, inactive)) {
+                    states.set(index + 1, last);
+                    clockRegressionPolicy.fire();
+                    return;
+                }
+            }
+        }
     }
 
     /**
-     * Block until the next millisecond until a new timestamp is obtained.
+     * Convert a timestamp to ticks since {@code startEpoch}.
+     *
+     * @param timestamp The timestamp in milliseconds.
+     * @return The count of ticks since {@code startEpoch}.
+     */
+    private long toTick(long timestamp) {
+        return tickMillis == 1 ? timestamp - startEpoch : Math.floorDiv(timestamp - startEpoch, tickMillis);
+    }
+
+    /**
+     * Convert ticks since {@code startEpoch} to the timestamp the tick starts at.
+     *
+     * @param tick The count of ticks since {@code startEpoch}.
+     * @return The timestamp in milliseconds.
+     */
+    private long tickStart(long tick) {
+        return startEpoch + tick * tickMillis;
+    }
+
+    /**
+     * Get the index in {@link #states} of the stripe of the current thread.
+     *
+     * @return The index of the state of the stripe.
+     */
+    private int stripeIndex() {
+        if (stripeMask == 0) {
+            return 0;
+        }
+        return ((int) Thread.currentThread().getId() & stripeMask) * STRIPE_PADDING;
+    }
+
+    /**
+     * Get the count of stripes the sequence space is split into.
+     *
+     * @return The count of stripes.
+     */
+    public int getStripes() {
+        return stripeMask + 1;
+    }
+
+    /**
+     * Get the policy applied when the clock moved backwards.
+     *
+     * @return The clock regression policy.
+     */
+    public ClockRegressionPolicy getClockRegressionPolicy() {
+        return clockRegressionPolicy;
+    }
+
+    /**
+     * Convert a packed state to an id by inserting the data centre id and worker id between the timestamp and the
+     * sequence.
+     *
+     * @param packed The packed state, {@code tick << sequenceBits | sequence}.
+     * @return The id.
+     */
+    private long toId(long packed) {
+        return ((packed >> sequenceBits) << timestampLeftShift)
+                | nodeBits
+                | (packed & sequenceMask);
+    }
+
+    /**
+     * Get the timestamp an id was generated at, using the start epoch and layout of this instance. With ticks longer
+     * than one millisecond this is the start of the tick.
+     *
+     * @param id The id.
+     * @return The timestamp in milliseconds.
+     */
+    public long timestampOf(long id) {
+        return tickStart(id >>> timestampLeftShift);
+    }
+
+    /**
+     * Get the time an id was generated at.
+     *
+     * @param id The id.
+     * @return The time, with the precision of {@link DateTime}, which is one second.
+     */
+    public DateTime toDateTime(long id) {
+        return new DateTime(timestampOf(id), true);
+    }
+
+    /**
+     * Get the data centre id an id was generated by.
+     *
+     * @param id The id.
+     * @return The data centre id.
+     */
+    public long dataCentreOf(long id) {
+        return (id >>> layout.getDataCentreIdShift()) & layout.getMaxDataCentreId();
+    }
+
+    /**
+     * Get the worker id an id was generated by.
+     *
+     * @param id The id.
+     * @return The worker id.
+     */
+    public long workerOf(long id) {
+        return (id >>> layout.getWorkerIdShift()) & layout.getMaxWorkerId();
+    }
+
+    /**
+     * Get the sequence of an id within its tick.
+     *
+     * @param id The id.
+     * @return The sequence.
+     */
+    public long sequenceOf(long id) {
+        return id & sequenceMask;
+    }
+
+    /**
+     * Get the smallest id any node could generate at the specified timestamp. Timestamps before the start epoch map
+     * to 0.
+     *
+     * @param timestamp The timestamp in milliseconds.
+     * @return The smallest id of the tick the timestamp falls into.
+     */
+    public long minIdAt(long timestamp) {
+        long tick = toTick(timestamp);
+        if (tick < 0) {
+            return 0L;
+        }
+        return Math.min(tick, maxTick) << timestampLeftShift;
+    }
+
+    /**
+     * Get the largest id any node could generate at the specified timestamp. Timestamps after the last one the layout
+     * can hold map to the largest possible id.
+     *
+     * @param timestamp The timestamp in milliseconds.
+     * @return The largest id of the tick the timestamp falls into, or -1 if the timestamp is before the start epoch
+     * and therefore no id can be that old.
+     */
+    public long maxIdAt(long timestamp) {
+        long tick = toTick(timestamp);
+        if (tick < 0) {
+            return -1L;
+        }
+        return (Math.min(tick, maxTick) << timestampLeftShift) | ~(-1L << timestampLeftShift);
+    }
+
+    /**
+     * Get the smallest id any node could generate at the start of the specified second. Use it as the lower bound
+     * of an id range.
+     *
+     * @param dateTime The time.
+     * @return The smallest id generated at or after the start of the second.
+     * @see #minIdAt(long)
+     */
+    public long minIdAt(DateTime dateTime) {
+        return minIdAt(dateTime.java());
+    }
+
+    /**
+     * Get the largest id any node could generate until the end of the specified second. Use it as the upper bound of
+     * an id range, so ids of the whole second are included.
+     *
+     * @param dateTime The time.
+     * @return The largest id generated before the end of the second.
+     * @see #maxIdAt(long)
+     */
+    public long maxIdAt(DateTime dateTime) {
+        return maxIdAt(dateTime.java() + 999L);
+    }
+
+    /**
+     * Get the bit layout of the ids.
+     *
+     * @return The id layout.
+     */
+    public IdLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Get the start epoch the timestamps of the ids are counted from.
+     *
+     * @return The start epoch in milliseconds.
+     */
+    public long getStartEpoch() {
+        return startEpoch;
+    }
+
+    /**
+     * Get the counters of this generator.
+     *
+     * @return The metrics.
+     */
+    public SnowFlakeMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Get the source of the current time.
+     *
+     * @return The time source.
+     */
+    public TimeSource getTimeSource() {
+        return timeSource;
+    }
+
+    /**
+     * Block until the next millisecond until a new timestamp is obtained. Between two checks of the clock the
+     * {@link WaitStrategy} of this instance is applied.
      *
      * @param lastTimestamp The timestamp when id was created last time.
      * @return Current timestamp.
      */
     protected long awaitToNextMillis(long lastTimestamp) {
         long timestamp = currentTimestamp();
+        if (timestamp > lastTimestamp) {
+            return timestamp;
+        }
+        long start = System.nanoTime();
+        int attempt = 0;
         while (timestamp <= lastTimestamp) {
+            waitStrategy.idle(attempt++);
             timestamp = currentTimestamp();
         }
+        metrics.recordWait(System.nanoTime() - start);
         return timestamp;
     }
 
@@ -155,7 +790,149 @@ public class SnowFlake {
      * @return Current time.
      */
     protected long currentTimestamp() {
-        return System.currentTimeMillis();
+        return timeSource.currentTimeMillis();
     }
     // endregion
+
+    /**
+     * Inner class {@code Builder} of {@code SnowFlake}.
+     */
+    public static class Builder {
+
+        private long startEpoch = DEFAULT_START_EPOCH;
+
+        private long workerId;
+
+        private long dataCentreId;
+
+        private int stripes = 1;
+
+        private ClockRegressionPolicy clockRegressionPolicy;
+
+        private IdLayout layout;
+
+        private TimeSource timeSource;
+
+        private WaitStrategy waitStrategy;
+
+        private SnowFlakeCheckpoint checkpoint;
+
+        /**
+         * Generate a new {@code Builder}, use protected to prevent other coders use it.
+         */
+        protected Builder() {
+        }
+
+        /**
+         * Set the start epoch, in milliseconds. Defaults to 2022-06-01.
+         *
+         * @param startEpoch The start epoch to calculate.
+         * @return {@code Builder} instance itself.
+         */
+        public Builder startEpoch(long startEpoch) {
+            this.startEpoch = startEpoch;
+            return this;
+        }
+
+        /**
+         * Set the worker id.
+         *
+         * @param workerId The id of the server. (Should between 0 and 31)
+         * @return {@code Builder} instance itself.
+         */
+        public Builder workerId(long workerId) {
+            this.workerId = workerId;
+            return this;
+        }
+
+        /**
+         * Set the data centre id.
+         *
+         * @param dataCentreId The id of the data centre. (Should between 0 and 31)
+         * @return {@code Builder} instance itself.
+         */
+        public Builder dataCentreId(long dataCentreId) {
+            this.dataCentreId = dataCentreId;
+            return this;
+        }
+
+        /**
+         * Set the count of stripes the sequence space is split into.
+         *
+         * @param stripes The count of stripes. (Should be a power of 2 and not greater than the sequence numbers
+         *                available in one millisecond)
+         * @return {@code Builder} instance itself.
+         * @see SnowFlake#SnowFlake(long, long, long, int)
+         */
+        public Builder stripes(int stripes) {
+            this.stripes = stripes;
+            return this;
+        }
+
+        /**
+         * Set the policy to apply when the clock moved backwards. Defaults to {@link ClockRegressionPolicy#reject()}.
+         *
+         * @param clockRegressionPolicy The clock regression policy.
+         * @return {@code Builder} instance itself.
+         */
+        public Builder clockRegressionPolicy(ClockRegressionPolicy clockRegressionPolicy) {
+            this.clockRegressionPolicy = clockRegressionPolicy;
+            return this;
+        }
+
+        /**
+         * Set the bit layout of the ids. Defaults to {@link IdLayout#DEFAULT}. The worker id and data centre id must
+         * fit into the layout.
+         *
+         * @param layout The id layout.
+         * @return {@code Builder} instance itself.
+         */
+        public Builder layout(IdLayout layout) {
+            this.layout = layout;
+            return this;
+        }
+
+        /**
+         * Set the source of the current time. Defaults to {@link TimeSource#system()}.
+         *
+         * @param timeSource The time source.
+         * @return {@code Builder} instance itself.
+         */
+        public Builder timeSource(TimeSource timeSource) {
+            this.timeSource = timeSource;
+            return this;
+        }
+
+        /**
+         * Set how to wait for the clock to move. Defaults to {@link WaitStrategy#defaults()}.
+         *
+         * @param waitStrategy The wait strategy.
+         * @return {@code Builder} instance itself.
+         */
+        public Builder waitStrategy(WaitStrategy waitStrategy) {
+            this.waitStrategy = waitStrategy;
+            return this;
+        }
+
+        /**
+         * Set the checkpoint to persist the high-water mark of the timestamps to. Defaults to {@code null}, which
+         * does not persist anything.
+         *
+         * @param checkpoint The checkpoint.
+         * @return {@code Builder} instance itself.
+         */
+        public Builder checkpoint(SnowFlakeCheckpoint checkpoint) {
+            this.checkpoint = checkpoint;
+            return this;
+        }
+
+        /**
+         * Build a {@code SnowFlake} instance.
+         *
+         * @return A {@code SnowFlake} instance.
+         */
+        public SnowFlake build() {
+            return new SnowFlake(this);
+        }
+    }
 }
\ No newline at end of file
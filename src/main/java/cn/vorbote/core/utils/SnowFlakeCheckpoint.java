@@ -0,0 +1,179 @@
+package cn.vorbote.core.utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@code SnowFlakeCheckpoint} persists a high-water mark of a {@link SnowFlake} in a small memory-mapped file, so a
+ * restarted generator knows which timestamps it may have used before, even if the clock went backwards while the
+ * process was down.
+ * <p>
+ * The mark works like a lease: every id is generated at a timestamp strictly before the mark on file. When the clock
+ * reaches the mark, the generator moves it {@code leaseMillis} ahead before issuing the id, so the file is written at
+ * most once per lease and the hot path only reads a volatile field. On construction the generator resumes right after
+ * the mark. If the clock is behind the mark by no more than one lease, which happens after a fast restart, the
+ * construction waits for the clock to pass it; a longer gap means the clock went backwards and is handled by the
+ * {@link ClockRegressionPolicy} of the generator.
+ * <p>
+ * A write to the mapped file survives a crash of the process. To survive a crash of the operating system as well,
+ * enable {@code force}, which flushes the file on every write of the mark. A checkpoint file must be used by a single
+ * generator only.
+ *
+ * @author vorbote
+ */
+public final class SnowFlakeCheckpoint implements AutoCloseable {
+
+    /**
+     * "SFCK" followed by the format version 1.
+     */
+    private static final long MAGIC = 0x5346434B00000001L;
+
+    private static final int MAGIC_OFFSET = 0;
+
+    private static final int MARK_OFFSET = 8;
+
+    private static final int FILE_SIZE = 16;
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer buffer;
+
+    private final long leaseMillis;
+
+    private final boolean force;
+
+    /**
+     * Every id has been generated at a timestamp before this mark.
+     */
+    private volatile long highWaterMark;
+
+    /**
+     * Open a checkpoint file with a lease of one second, without flushing.
+     *
+     * @param file The checkpoint file, created if it does not exist.
+     * @throws UncheckedIOException     If the file can not be opened or mapped.
+     * @throws IllegalArgumentException If the file is not a checkpoint file.
+     */
+    public SnowFlakeCheckpoint(Path file) {
+        this(file, 1000L, false);
+    }
+
+    /**
+     * Open a checkpoint file.
+     *
+     * @param file        The checkpoint file, created if it does not exist.
+     * @param leaseMillis How far ahead of the clock the mark is moved every time it is reached, in milliseconds.
+     *                    A longer lease means fewer writes, but a longer wait after a fast restart.
+     * @param force       Whether to flush the file to the storage device on every write of the mark.
+     * @throws UncheckedIOException     If the file can not be opened or mapped.
+     * @throws IllegalArgumentException If {@code leaseMillis} is not positive or the file is not a checkpoint file.
+     */
+    public SnowFlakeCheckpoint(Path file, long leaseMillis, boolean force) {
+        if (leaseMillis <= 0) {
+            throw new IllegalArgumentException("Lease millis should be greater than 0!");
+        }
+        this.leaseMillis = leaseMillis;
+        this.force = force;
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            long size = channel.size();
+            if (size != 0 && size != FILE_SIZE) {
+                throw new IllegalArgumentException(String.format("%s is not a SnowFlake checkpoint file.", file));
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+            if (buffer.getLong(MAGIC_OFFSET) == MAGIC) {
+                highWaterMark = buffer.getLong(MARK_OFFSET);
+            } else if (buffer.getLong(MAGIC_OFFSET) == 0L) {
+                buffer.putLong(MARK_OFFSET, 0L);
+                buffer.putLong(MAGIC_OFFSET, MAGIC);
+            } else {
+                throw new IllegalArgumentException(String.format("%s is not a SnowFlake checkpoint file.", file));
+            }
+            this.channel = channel;
+            this.buffer = buffer;
+        } catch (IOException e) {
+            closeOnFailure(channel, e);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            closeOnFailure(channel, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Close the channel of a checkpoint which failed to open, keeping the original failure.
+     *
+     * @param channel The channel, or {@code null} if it was not opened.
+     * @param failure The failure to add a failure of closing to.
+     */
+    private static void closeOnFailure(FileChannel channel, Exception failure) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Get the high-water mark. Every id of the generator has been generated at a timestamp before it.
+     *
+     * @return The mark in milliseconds since the unix epoch, or 0 if nothing has been generated yet.
+     */
+    public long getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * Get how far ahead of the clock the mark is moved every time it is reached.
+     *
+     * @return The lease in milliseconds.
+     */
+    public long getLeaseMillis() {
+        return leaseMillis;
+    }
+
+    /**
+     * Make sure an id may be generated at the specified timestamp, moving the mark ahead if needed. Called by the
+     * generator before it publishes a new tick.
+     *
+     * @param timestamp The timestamp of the id, in milliseconds.
+     */
+    void ensureCovered(long timestamp) {
+        if (timestamp < highWaterMark) {
+            return;
+        }
+        synchronized (this) {
+            if (timestamp < highWaterMark) {
+                return;
+            }
+            long mark = timestamp + leaseMillis;
+            buffer.putLong(MARK_OFFSET, mark);
+            if (force) {
+                buffer.force();
+            }
+            highWaterMark = mark;
+        }
+    }
+
+    /**
+     * Flush and close the checkpoint file. The generator using it must not generate ids afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        buffer.force();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
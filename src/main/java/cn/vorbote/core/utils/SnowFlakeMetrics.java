@@ -0,0 +1,148 @@
+package cn.vorbote.core.utils;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@code SnowFlakeMetrics} counts what a {@link SnowFlake} does on its hot path: the ids it issued, how often the
+ * sequence space of a tick ran out, how long callers waited for the clock, and how often and how far the clock moved
+ * backwards. A growing exhaustion count or wait time means the generator is saturated and is about to add latency.
+ * <p>
+ * The counters are {@link LongAdder}s, so recording costs no shared write under contention; reading sums the cells
+ * and is meant for scrapes, not for the hot path. They can be exported through a {@link MetricsBinder} or as an MXBean.
+ *
+ * @author vorbote
+ * @see SnowFlake#getMetrics()
+ */
+public final class SnowFlakeMetrics implements SnowFlakeMetricsMXBean {
+
+    private final LongAdder idsIssued = new LongAdder();
+
+    private final LongAdder exhaustions = new LongAdder();
+
+    private final LongAdder waitNanos = new LongAdder();
+
+    private final LongAdder regressions = new LongAdder();
+
+    private final LongAccumulator maxRegressionMillis = new LongAccumulator(Math::max, 0L);
+
+    SnowFlakeMetrics() {
+    }
+
+    void recordIssued(int count) {
+        idsIssued.add(count);
+    }
+
+    void recordExhaustion() {
+        exhaustions.increment();
+    }
+
+    void recordWait(long nanos) {
+        waitNanos.add(nanos);
+    }
+
+    void recordRegression(long millis) {
+        regressions.increment();
+        maxRegressionMillis.accumulate(millis);
+    }
+
+    @Override
+    public long getIdsIssued() {
+        return idsIssued.sum();
+    }
+
+    @Override
+    public long getExhaustionCount() {
+        return exhaustions.sum();
+    }
+
+    @Override
+    public long getWaitNanos() {
+        return waitNanos.sum();
+    }
+
+    @Override
+    public long getRegressionCount() {
+        return regressions.sum();
+    }
+
+    @Override
+    public long getMaxRegressionMillis() {
+        return maxRegressionMillis.get();
+    }
+
+    /**
+     * Bind every counter to a metrics system. The names are {@code prefix} followed by {@code .ids.issued},
+     * {@code .sequence.exhausted}, {@code .wait.nanos}, {@code .clock.regressions} and
+     * {@code .clock.regression.max.millis}.
+     *
+     * @param binder The binder of the metrics system.
+     * @param prefix The prefix of the names, e.g. {@code snowflake.orders}.
+     */
+    public void bindTo(MetricsBinder binder, String prefix) {
+        binder.counter(prefix + ".ids.issued", "Ids issued", this::getIdsIssued);
+        binder.counter(prefix + ".sequence.exhausted", "Ticks whose sequence space ran out",
+                this::getExhaustionCount);
+        binder.counter(prefix + ".wait.nanos", "Time spent waiting for the clock to move", this::getWaitNanos);
+        binder.counter(prefix + ".clock.regressions", "Times the clock was found behind the last timestamp",
+                this::getRegressionCount);
+        binder.gauge(prefix + ".clock.regression.max.millis", "Largest clock regression seen",
+                this::getMaxRegressionMillis);
+    }
+
+    /**
+     * Register the counters as an MXBean named {@code cn.vorbote.core:type=SnowFlake,name=<name>} with the platform
+     * MBean server.
+     *
+     * @param name The name of the generator, quoted if needed.
+     * @return The object name it has been registered under.
+     * @throws IllegalStateException If the registration failed, e.g. because the name is already taken.
+     */
+    public ObjectName registerMBean(String name) {
+        ObjectName objectName = objectName(name);
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException(String.format("Can not register MBean %s", objectName), e);
+        }
+        return objectName;
+    }
+
+    /**
+     * Unregister the MXBean registered by {@link #registerMBean(String)}, if it is registered.
+     *
+     * @param name The name of the generator.
+     * @throws IllegalStateException If the unregistration failed.
+     */
+    public void unregisterMBean(String name) {
+        ObjectName objectName = objectName(name);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException(String.format("Can not unregister MBean %s", objectName), e);
+        }
+    }
+
+    private static ObjectName objectName(String name) {
+        try {
+            return new ObjectName("cn.vorbote.core:type=SnowFlake,name=" + ObjectName.quote(name));
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SnowFlakeMetrics(idsIssued=%d, exhaustions=%d, waitNanos=%d, regressions=%d, " +
+                        "maxRegressionMillis=%d)", getIdsIssued(), getExhaustionCount(), getWaitNanos(),
+                getRegressionCount(), getMaxRegressionMillis());
+    }
+}
@@ -0,0 +1,45 @@
+package cn.vorbote.core.utils;
+
+/**
+ * The JMX view of {@link SnowFlakeMetrics}.
+ *
+ * @author vorbote
+ * @see SnowFlakeMetrics#registerMBean(String)
+ */
+public interface SnowFlakeMetricsMXBean {
+
+    /**
+     * Get how many ids have been issued.
+     *
+     * @return The count of ids.
+     */
+    long getIdsIssued();
+
+    /**
+     * Get how often the sequence space of a tick ran out.
+     *
+     * @return The count of sequence exhaustion events.
+     */
+    long getExhaustionCount();
+
+    /**
+     * Get the total time callers spent waiting for the clock to move.
+     *
+     * @return The wait time in nanoseconds.
+     */
+    long getWaitNanos();
+
+    /**
+     * Get how often the clock was found behind the last issued timestamp.
+     *
+     * @return The count of clock regression events.
+     */
+    long getRegressionCount();
+
+    /**
+     * Get the largest clock regression seen.
+     *
+     * @return The regression in milliseconds, or 0 if the clock never moved backwards.
+     */
+    long getMaxRegressionMillis();
+}
@@ -0,0 +1,162 @@
+package cn.vorbote.core.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * {@code SnowFlakeRegistry} hands out ids from one {@link SnowFlake} per key, e.g. per tenant, so every key has its own
+ * sequence and a hot key never waits for another one. The generators are created on first use by a factory, which
+ * decides their worker id, layout, stripes and so on, and are evicted after they have been idle for a while, so keys
+ * which are no longer used do not leak memory.
+ * <p>
+ * Looking a key up is a read of a {@link ConcurrentHashMap}, and generating is as lock-free as {@link SnowFlake}
+ * itself. Ids are unique per key; two keys whose generators share worker and data centre ids can get equal ids. For
+ * {@code long} keys, use {@link LongSnowFlakeRegistry}, which does not box them.
+ *
+ * @param <K> The type of the keys.
+ * @author vorbote
+ */
+public final class SnowFlakeRegistry<K> extends AbstractSnowFlakeRegistry {
+
+    private final Function<? super K, SnowFlake> factory;
+
+    private final ConcurrentHashMap<K, Entry> entries = new ConcurrentHashMap<>();
+
+    private SnowFlakeRegistry(Builder<K> builder) {
+        super(builder.timeSource, builder.idleTimeoutMillis);
+        this.factory = builder.factory;
+    }
+
+    /**
+     * Generate a builder of {@code SnowFlakeRegistry}.
+     *
+     * @param factory Creates the generator of a key when the key is first used or used again after eviction.
+     * @param <K>     The type of the keys.
+     * @return A builder of {@code SnowFlakeRegistry}.
+     */
+    public static <K> SnowFlakeRegistry.Builder<K> builder(Function<? super K, SnowFlake> factory) {
+        return new SnowFlakeRegistry.Builder<>(factory);
+    }
+
+    /**
+     * Get next id of a key.
+     *
+     * @param key The key.
+     * @return A unique id within the key.
+     */
+    public long nextId(K key) {
+        for (; ; ) {
+            Entry entry = entry(key);
+            long id = entry.snowFlake.nextId();
+            if (!entry.isEvicted()) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Fill an array with ids of a key, in ascending order.
+     *
+     * @param key   The key.
+     * @param dst   The array to fill.
+     * @param off   The index of the first element to fill.
+     * @param count The count of ids.
+     * @see SnowFlake#fill(long[], int, int)
+     */
+    public void fill(K key, long[] dst, int off, int count) {
+        for (; ; ) {
+            Entry entry = entry(key);
+            entry.snowFlake.fill(dst, off, count);
+            if (!entry.isEvicted()) {
+                return;
+            }
+        }
+    }
+
+    private Entry entry(K key) {
+        long now = now();
+        for (; ; ) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                entry = entries.computeIfAbsent(key, k -> newEntry(factory.apply(k), now));
+            }
+            if (entry.touch(now)) {
+                return entry;
+            }
+            entries.remove(key, entry);
+        }
+    }
+
+    @Override
+    void sweep(long idleBefore) {
+        for (Map.Entry<K, Entry> e : entries.entrySet()) {
+            if (tryEvict(e.getValue(), idleBefore)) {
+                entries.remove(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Inner class {@code Builder} of {@code SnowFlakeRegistry}.
+     *
+     * @param <K> The type of the keys.
+     */
+    public static class Builder<K> {
+
+        private final Function<? super K, SnowFlake> factory;
+
+        private long idleTimeoutMillis = 600_000L;
+
+        private TimeSource timeSource;
+
+        /**
+         * Generate a new {@code Builder}, use protected to prevent other coders use it.
+         *
+         * @param factory Creates the generator of a key.
+         */
+        protected Builder(Function<? super K, SnowFlake> factory) {
+            if (factory == null) {
+                throw new IllegalArgumentException("Factory can not be null!");
+            }
+            this.factory = factory;
+        }
+
+        /**
+         * Set how long a generator may stay unused before it is evicted. Defaults to 10 minutes.
+         *
+         * @param idleTimeoutMillis The idle timeout in milliseconds, or 0 to never evict.
+         * @return {@code Builder} instance itself.
+         */
+        public Builder<K> idleTimeout(long idleTimeoutMillis) {
+            this.idleTimeoutMillis = idleTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * Set the clock which measures idleness. Defaults to {@link TimeSource#system()}.
+         *
+         * @param timeSource The time source.
+         * @return {@code Builder} instance itself.
+         */
+        public Builder<K> timeSource(TimeSource timeSource) {
+            this.timeSource = timeSource;
+            return this;
+        }
+
+        /**
+         * Build a {@code SnowFlakeRegistry} instance.
+         *
+         * @return A {@code SnowFlakeRegistry} instance.
+         * @throws IllegalArgumentException If the idle timeout is negative.
+         */
+        public SnowFlakeRegistry<K> build() {
+            return new SnowFlakeRegistry<>(this);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package cn.vorbote.core.utils;
+
+/**
+ * {@code TimeSource} supplies the current time, in milliseconds, to the id generators. Supported sources:
+ * <ul>
+ *     <li>{@link #system()}: Read {@link System#currentTimeMillis()} on every call.</li>
+ *     <li>{@link #cached()} or {@link CachedTimeSource}: Read a value which a background thread refreshes, so the
+ *     caller never pays for the clock itself.</li>
+ *     <li>{@link ManualTimeSource}: A clock driven by hand, for tests.</li>
+ * </ul>
+ *
+ * @author vorbote
+ */
+@FunctionalInterface
+public interface TimeSource {
+
+    /**
+     * Get the current time.
+     *
+     * @return The current time in milliseconds since the unix epoch.
+     */
+    long currentTimeMillis();
+
+    /**
+     * Get the time source backed by {@link System#currentTimeMillis()}.
+     *
+     * @return The system time source.
+     */
+    static TimeSource system() {
+        return System::currentTimeMillis;
+    }
+
+    /**
+     * Get the shared {@link CachedTimeSource} which is refreshed every millisecond. Its background thread is started
+     * on first use and is a daemon thread.
+     *
+     * @return The shared cached time source.
+     */
+    static TimeSource cached() {
+        return CachedTimeSource.Holder.INSTANCE;
+    }
+}
@@ -0,0 +1,198 @@
+package cn.vorbote.core.utils;
+
+import cn.vorbote.core.constants.Hash;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * {@code TreeDigest} is the Merkle tree hash of an input split into fixed-size chunks, as computed by
+ * {@link HashUtil#treeDigest(Hash, java.nio.file.Path, int)}. The format, with {@code H} the digest of the
+ * {@link Hash} algorithm and {@code ||} concatenation:
+ * <ol>
+ *     <li>The input is split into chunks of {@code chunkSize} bytes; the last chunk may be shorter. An empty input is
+ *     one empty chunk.</li>
+ *     <li>Leaf {@code i} is {@code H(0x00 || chunk i)}.</li>
+ *     <li>Each level is built from the one below by hashing adjacent pairs, {@code H(0x01 || left || right)}. If a
+ *     level has an odd count of nodes, the last node is carried up unchanged.</li>
+ *     <li>The root is the single node of the top level. For a single chunk it is the leaf itself.</li>
+ * </ol>
+ * The prefixes keep a leaf from being mistaken for an inner node. The same input, algorithm and chunk size always give
+ * the same root, whatever the parallelism. Comparing the leaves of two digests with {@link #changedChunks(TreeDigest)}
+ * tells which chunks have to be verified again.
+ *
+ * @author vorbote
+ */
+public final class TreeDigest {
+
+    static final byte LEAF_PREFIX = 0x00;
+
+    static final byte NODE_PREFIX = 0x01;
+
+    private final Hash hash;
+
+    private final int chunkSize;
+
+    private final long length;
+
+    private final byte[][] leaves;
+
+    private final byte[] root;
+
+    /**
+     * Build a tree digest from its leaves.
+     *
+     * @param hash      The digest algorithm.
+     * @param chunkSize The size of the chunks.
+     * @param length    The length of the input.
+     * @param leaves    The leaf digests, which are not copied.
+     */
+    TreeDigest(Hash hash, int chunkSize, long length, byte[][] leaves) {
+        this.hash = hash;
+        this.chunkSize = chunkSize;
+        this.length = length;
+        this.leaves = leaves;
+        this.root = root(hash, leaves);
+    }
+
+    /**
+     * Rebuild a tree digest from stored leaves, e.g. after re-hashing the changed chunks with
+     * {@link HashUtil#chunkDigest(Hash, java.nio.file.Path, int, int)}.
+     *
+     * @param hash      The digest algorithm.
+     * @param chunkSize The size of the chunks.
+     * @param length    The length of the input.
+     * @param leaves    The leaf digests, one per chunk.
+     * @return The tree digest.
+     * @throws IllegalArgumentException If the count of leaves does not match the length and chunk size.
+     */
+    public static TreeDigest of(Hash hash, int chunkSize, long length, byte[][] leaves) {
+        if (leaves.length != chunkCount(length, chunkSize)) {
+            throw new IllegalArgumentException(String.format("%d bytes in chunks of %d need %d leaves, got %d",
+                    length, chunkSize, chunkCount(length, chunkSize), leaves.length));
+        }
+        byte[][] copy = new byte[leaves.length][];
+        for (int i = 0; i < leaves.length; ++i) {
+            copy[i] = leaves[i].clone();
+        }
+        return new TreeDigest(hash, chunkSize, length, copy);
+    }
+
+    /**
+     * Get the count of chunks an input is split into.
+     *
+     * @param length    The length of the input.
+     * @param chunkSize The size of the chunks.
+     * @return The count of chunks, at least 1.
+     */
+    static int chunkCount(long length, int chunkSize) {
+        long count = Math.max(1L, (length + chunkSize - 1) / chunkSize);
+        if (count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many chunks, use a larger chunk size!");
+        }
+        return (int) count;
+    }
+
+    private static byte[] root(Hash hash, byte[][] leaves) {
+        MessageDigest digest = Hasher.of(hash).digest();
+        byte[][] level = leaves;
+        while (level.length > 1) {
+            byte[][] next = new byte[(level.length + 1) / 2][];
+            for (int i = 0; i < level.length / 2; ++i) {
+                digest.update(NODE_PREFIX);
+                digest.update(level[2 * i]);
+                digest.update(level[2 * i + 1]);
+                next[i] = digest.digest();
+            }
+            if (level.length % 2 == 1) {
+                next[next.length - 1] = level[level.length - 1];
+            }
+            level = next;
+        }
+        return level[0].clone();
+    }
+
+    /**
+     * Get the chunks whose leaves differ from those of another digest of the same algorithm and chunk size. Chunks
+     * only one of the digests has count as changed.
+     *
+     * @param other The other digest.
+     * @return The indexes of the changed chunks, in ascending order.
+     * @throws IllegalArgumentException If the digests use different algorithms or chunk sizes.
+     */
+    public int[] changedChunks(TreeDigest other) {
+        if (hash != other.hash || chunkSize != other.chunkSize) {
+            throw new IllegalArgumentException("The digests should use the same algorithm and chunk size!");
+        }
+        int max = Math.max(leaves.length, other.leaves.length);
+        int[] changed = new int[max];
+        int count = 0;
+        for (int i = 0; i < max; ++i) {
+            if (i >= leaves.length || i >= other.leaves.length || !Arrays.equals(leaves[i], other.leaves[i])) {
+                changed[count++] = i;
+            }
+        }
+        return Arrays.copyOf(changed, count);
+    }
+
+    /**
+     * Get the root digest.
+     *
+     * @return A copy of the root digest.
+     */
+    public byte[] getRoot() {
+        return root.clone();
+    }
+
+    /**
+     * Get the digest of a chunk.
+     *
+     * @param index The index of the chunk.
+     * @return A copy of the leaf digest.
+     */
+    public byte[] getLeaf(int index) {
+        return leaves[index].clone();
+    }
+
+    /**
+     * Get the count of chunks.
+     *
+     * @return The count of leaves.
+     */
+    public int getLeafCount() {
+        return leaves.length;
+    }
+
+    /**
+     * Get the digest algorithm.
+     *
+     * @return The algorithm.
+     */
+    public Hash getHash() {
+        return hash;
+    }
+
+    /**
+     * Get the size of the chunks.
+     *
+     * @return The chunk size in bytes.
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Get the length of the input.
+     *
+     * @return The length in bytes.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TreeDigest(hash=%s, chunkSize=%d, length=%d, leaves=%d, root=%s)", hash, chunkSize,
+                length, leaves.length, Codec.HEX.encode(root));
+    }
+}
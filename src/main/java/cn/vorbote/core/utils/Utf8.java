@@ -0,0 +1,61 @@
+package cn.vorbote.core.utils;
+
+/**
+ * Encodes a {@link CharSequence} in UTF-8 a chunk at a time into a caller supplied buffer, so text of any length can
+ * be fed to a hash without creating a {@code byte[]} copy of it. The output is the same as
+ * {@code String.getBytes(StandardCharsets.UTF_8)}, including the replacement of unpaired surrogates with {@code ?}.
+ *
+ * @author vorbote
+ */
+final class Utf8 {
+
+    /**
+     * The most bytes one step of the encoder writes, for a surrogate pair.
+     */
+    static final int MAX_BYTES_PER_STEP = 4;
+
+    private Utf8() {
+    }
+
+    /**
+     * Encode characters until they run out or the buffer has less than {@link #MAX_BYTES_PER_STEP} bytes left.
+     *
+     * @param src  The text.
+     * @param from The index of the first character to encode.
+     * @param dst  The buffer, at least {@link #MAX_BYTES_PER_STEP} bytes long.
+     * @return The index of the next character to encode in the upper 32 bits, and the count of bytes written in the
+     * lower 32 bits.
+     */
+    static long encode(CharSequence src, int from, byte[] dst) {
+        int end = src.length();
+        int limit = dst.length - MAX_BYTES_PER_STEP;
+        int i = from;
+        int p = 0;
+        while (i < end && p <= limit) {
+            char c = src.charAt(i++);
+            if (c < 0x80) {
+                dst[p++] = (byte) c;
+            } else if (c < 0x800) {
+                dst[p++] = (byte) (0xc0 | (c >> 6));
+                dst[p++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                char low;
+                if (Character.isHighSurrogate(c) && i < end && Character.isLowSurrogate(low = src.charAt(i))) {
+                    ++i;
+                    int codePoint = Character.toCodePoint(c, low);
+                    dst[p++] = (byte) (0xf0 | (codePoint >> 18));
+                    dst[p++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                    dst[p++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                    dst[p++] = (byte) (0x80 | (codePoint & 0x3f));
+                } else {
+                    dst[p++] = '?';
+                }
+            } else {
+                dst[p++] = (byte) (0xe0 | (c >> 12));
+                dst[p++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                dst[p++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        return ((long) i << 32) | p;
+    }
+}
@@ -0,0 +1,343 @@
+package cn.vorbote.core.utils;
+
+import cn.vorbote.core.exceptions.SnowFlakeException;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time-ordered 128-bit id generator following UUID version 7 (RFC 9562). Unlike {@link SnowFlake} it needs no
+ * {@code workerId}/{@code dataCentreId} coordination: uniqueness across nodes comes from 58 random bits, while the
+ * 48-bit millisecond timestamp keeps the ids k-sortable and friendly to B-tree inserts.
+ * <p>
+ * The bits of an id are, from the highest to the lowest:
+ * <ul>
+ *     <li>48 bits of unix timestamp in milliseconds.</li>
+ *     <li>4 bits of version, {@code 0111}.</li>
+ *     <li>12 bits of the high part of a 16-bit sub-millisecond counter.</li>
+ *     <li>2 bits of variant, {@code 10}.</li>
+ *     <li>4 bits of the low part of the counter.</li>
+ *     <li>58 random bits from {@link ThreadLocalRandom}, which is fast but not suitable for ids which must be
+ *     unguessable.</li>
+ * </ul>
+ * The timestamp and counter are packed into one {@code long} and advanced with compare-and-set, the same way as in
+ * {@link SnowFlake}, so the ids of one generator are strictly ascending and up to 65536 of them can be generated per
+ * millisecond. Clock regressions are handled by a {@link ClockRegressionPolicy}; because uniqueness does not depend
+ * on the timestamp, {@link ClockRegressionPolicy#backupSequenceBit()} is treated like
+ * {@link ClockRegressionPolicy#logicalClock()}.
+ *
+ * @author vorbote
+ */
+public final class UuidV7Generator {
+
+    private static final int COUNTER_BITS = 16;
+
+    private static final long COUNTER_MASK = ~(-1L << COUNTER_BITS);
+
+    private static final long VERSION = 0x7000L;
+
+    private static final long VARIANT = 0x8000000000000000L;
+
+    private static final long RANDOM_MASK = 0x03FFFFFFFFFFFFFFL;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * The length of the canonical string form of a UUID.
+     */
+    public static final int FORMATTED_LENGTH = 36;
+
+    /**
+     * The state of the last issued id, packed as {@code timestamp << 16 | counter}.
+     */
+    private final AtomicLong state = new AtomicLong(-1L);
+
+    private final TimeSource timeSource;
+
+    private final WaitStrategy waitStrategy;
+
+    private final ClockRegressionPolicy clockRegressionPolicy;
+
+    /**
+     * Build a generator with the system clock, the default wait strategy and the {@link ClockRegressionPolicy#reject()}
+     * policy.
+     */
+    public UuidV7Generator() {
+        this(builder());
+    }
+
+    private UuidV7Generator(Builder builder) {
+        this.timeSource = builder.timeSource == null ? TimeSource.system() : builder.timeSource;
+        this.waitStrategy = builder.waitStrategy == null ? WaitStrategy.defaults() : builder.waitStrategy;
+        this.clockRegressionPolicy = builder.clockRegressionPolicy == null
+                ? ClockRegressionPolicy.reject() : builder.clockRegressionPolicy;
+    }
+
+    /**
+     * Generate a builder of {@code UuidV7Generator}.
+     *
+     * @return A builder of {@code UuidV7Generator}.
+     */
+    public static UuidV7Generator.Builder builder() {
+        return new UuidV7Generator.Builder();
+    }
+
+    /**
+     * Get next id.
+     *
+     * @return A time-ordered UUID.
+     * @throws SnowFlakeException If the clock moved backwards and the {@link ClockRegressionPolicy} refused to
+     *                            generate an id.
+     */
+    public UUID next() {
+        long packed = claim(1);
+        return new UUID(mostSignificantBits(packed), leastSignificantBits(packed));
+    }
+
+    /**
+     * Get a batch of ids. The ids are in ascending order.
+     *
+     * @param n The count of ids.
+     * @return An array contains {@code n} ids.
+     * @throws IllegalArgumentException If {@code n} is negative.
+     */
+    public UUID[] next(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("The count of ids can not be less than 0!");
+        }
+        long[] bits = new long[n * 2];
+        fill(bits, 0, n);
+        UUID[] ids = new UUID[n];
+        for (int i = 0; i < n; ++i) {
+            ids[i] = new UUID(bits[i * 2], bits[i * 2 + 1]);
+        }
+        return ids;
+    }
+
+    /**
+     * Fill an array with ids without creating {@link UUID} objects. Every id takes two elements, the most
+     * significant bits followed by the least significant bits. The ids are in ascending order.
+     *
+     * @param dst   The array to fill.
+     * @param off   The index of the first element to fill.
+     * @param count The count of ids, which fill {@code count * 2} elements.
+     * @throws IndexOutOfBoundsException If the range is out of the bounds of {@code dst}.
+     */
+    public void fill(long[] dst, int off, int count) {
+        if (off < 0 || count < 0 || off > dst.length - 2L * count) {
+            throw new IndexOutOfBoundsException(String.format("Can not write %d ids at %d into length %d",
+                    count, off, dst.length));
+        }
+        while (count > 0) {
+            long first = claim(count);
+            int claimed = runLength(first, count);
+            for (int i = 0; i < claimed; ++i) {
+                dst[off++] = mostSignificantBits(first + i);
+                dst[off++] = leastSignificantBits(first + i);
+            }
+            count -= claimed;
+        }
+    }
+
+    /**
+     * Claim a run of consecutive counter values within one millisecond.
+     *
+     * @param max The maximum count of values to claim, must be positive.
+     * @return The packed state of the first claimed value. The length of the run is
+     * {@link #runLength(long, int)} of it.
+     */
+    private long claim(int max) {
+        for (; ; ) {
+            long last = state.get();
+            long lastTimestamp = last >> COUNTER_BITS;
+            long timestamp = timeSource.currentTimeMillis();
+            boolean ahead = false;
+
+            if (timestamp < lastTimestamp) {
+                switch (clockRegressionPolicy.getMode()) {
+                    case LOGICAL_CLOCK:
+                    case BACKUP_SEQUENCE_BIT:
+                        clockRegressionPolicy.fire();
+                        timestamp = lastTimestamp;
+                        ahead = true;
+                        break;
+                    case BOUNDED_WAIT:
+                        if (lastTimestamp - timestamp > clockRegressionPolicy.getMaxWaitMillis()) {
+                            throw clockRegressionPolicy.reject(lastTimestamp - timestamp);
+                        }
+                        clockRegressionPolicy.fire();
+                        awaitToNextMillis(lastTimestamp - 1);
+                        continue;
+                    default:
+                        throw clockRegressionPolicy.reject(lastTimestamp - timestamp);
+                }
+            }
+
+            long first;
+            if (timestamp == lastTimestamp) {
+                if ((last & COUNTER_MASK) == COUNTER_MASK) {
+                    if (ahead) {
+                        first = (lastTimestamp + 1) << COUNTER_BITS;
+                    } else {
+                        awaitToNextMillis(lastTimestamp);
+                        continue;
+                    }
+                } else {
+                    first = last + 1;
+                }
+            } else {
+                first = timestamp << COUNTER_BITS;
+            }
+
+            if (state.compareAndSet(last, first + runLength(first, max) - 1)) {
+                return first;
+            }
+        }
+    }
+
+    private static int runLength(long first, int max) {
+        return (int) Math.min(COUNTER_MASK - (first & COUNTER_MASK) + 1, max);
+    }
+
+    private void awaitToNextMillis(long lastTimestamp) {
+        int attempt = 0;
+        while (timeSource.currentTimeMillis() <= lastTimestamp) {
+            waitStrategy.idle(attempt++);
+        }
+    }
+
+    private static long mostSignificantBits(long packed) {
+        return ((packed >>> COUNTER_BITS) << 16) | VERSION | ((packed & COUNTER_MASK) >>> 4);
+    }
+
+    private static long leastSignificantBits(long packed) {
+        return VARIANT | ((packed & 0xfL) << 58) | (ThreadLocalRandom.current().nextLong() & RANDOM_MASK);
+    }
+
+    /**
+     * Get the timestamp a version 7 UUID was generated at.
+     *
+     * @param uuid The UUID.
+     * @return The timestamp in milliseconds since the unix epoch.
+     */
+    public static long timestampOf(UUID uuid) {
+        return uuid.getMostSignificantBits() >>> 16;
+    }
+
+    /**
+     * Write the canonical string form of a UUID, such as {@code 0190163d-8694-739b-aea5-966c26f8ad91}, into a
+     * {@code char[]}.
+     *
+     * @param uuid The UUID.
+     * @param dst  The array to write to.
+     * @param off  The index of the first character to write.
+     * @return The count of characters written, which is {@link #FORMATTED_LENGTH}.
+     */
+    public static int format(UUID uuid, char[] dst, int off) {
+        return format(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), dst, off);
+    }
+
+    /**
+     * Write the canonical string form of a UUID given by its bits into a {@code char[]}.
+     *
+     * @param msb The most significant bits.
+     * @param lsb The least significant bits.
+     * @param dst The array to write to.
+     * @param off The index of the first character to write.
+     * @return The count of characters written, which is {@link #FORMATTED_LENGTH}.
+     * @throws IndexOutOfBoundsException If {@code dst} has less than 36 characters from {@code off}.
+     */
+    public static int format(long msb, long lsb, char[] dst, int off) {
+        if (off < 0 || off > dst.length - FORMATTED_LENGTH) {
+            throw new IndexOutOfBoundsException(String.format("Can not write %d characters at %d into length %d",
+                    FORMATTED_LENGTH, off, dst.length));
+        }
+        writeHex(lsb, dst, off + 24, 12);
+        dst[off + 23] = '-';
+        writeHex(lsb >>> 48, dst, off + 19, 4);
+        dst[off + 18] = '-';
+        writeHex(msb, dst, off + 14, 4);
+        dst[off + 13] = '-';
+        writeHex(msb >>> 16, dst, off + 9, 4);
+        dst[off + 8] = '-';
+        writeHex(msb >>> 32, dst, off, 8);
+        return FORMATTED_LENGTH;
+    }
+
+    private static void writeHex(long value, char[] dst, int off, int digits) {
+        for (int i = off + digits - 1; i >= off; --i) {
+            dst[i] = HEX_DIGITS[(int) (value & 0xf)];
+            value >>>= 4;
+        }
+    }
+
+    /**
+     * Get the policy applied when the clock moved backwards.
+     *
+     * @return The clock regression policy.
+     */
+    public ClockRegressionPolicy getClockRegressionPolicy() {
+        return clockRegressionPolicy;
+    }
+
+    /**
+     * Inner class {@code Builder} of {@code UuidV7Generator}.
+     */
+    public static class Builder {
+
+        private TimeSource timeSource;
+
+        private WaitStrategy waitStrategy;
+
+        private ClockRegressionPolicy clockRegressionPolicy;
+
+        /**
+         * Generate a new {@code Builder}, use protected to prevent other coders use it.
+         */
+        protected Builder() {
+        }
+
+        /**
+         * Set the source of the current time. Defaults to {@link TimeSource#system()}.
+         *
+         * @param timeSource The time source.
+         * @return {@code Builder} instance itself.
+         */
+        public Builder timeSource(TimeSource timeSource) {
+            this.timeSource = timeSource;
+            return this;
+        }
+
+        /**
+         * Set how to wait for the clock to move. Defaults to {@link WaitStrategy#defaults()}.
+         *
+         * @param waitStrategy The wait strategy.
+         * @return {@code Builder} instance itself.
+         */
+        public Builder waitStrategy(WaitStrategy waitStrategy) {
+            this.waitStrategy = waitStrategy;
+            return this;
+        }
+
+        /**
+         * Set the policy to apply when the clock moved backwards. Defaults to {@link ClockRegressionPolicy#reject()}.
+         *
+         * @param clockRegressionPolicy The clock regression policy.
+         * @return {@code Builder} instance itself.
+         */
+        public Builder clockRegressionPolicy(ClockRegressionPolicy clockRegressionPolicy) {
+            this.clockRegressionPolicy = clockRegressionPolicy;
+            return this;
+        }
+
+        /**
+         * Build a {@code UuidV7Generator} instance.
+         *
+         * @return A {@code UuidV7Generator} instance.
+         */
+        public UuidV7Generator build() {
+            return new UuidV7Generator(this);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package cn.vorbote.core.utils;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@code WaitStrategy} decides how an id generator waits for the clock to move, for example when the sequence of the
+ * current millisecond ran out. A waiting thread first spins, then yields, then parks for a short while between every
+ * check of the clock, so a burst does not burn a whole core.
+ *
+ * @author vorbote
+ */
+public final class WaitStrategy {
+
+    private static final WaitStrategy DEFAULT = new WaitStrategy(100, 10, 50_000L);
+
+    private final int spins;
+
+    private final int yields;
+
+    private final long parkNanos;
+
+    private WaitStrategy(int spins, int yields, long parkNanos) {
+        this.spins = spins;
+        this.yields = yields;
+        this.parkNanos = parkNanos;
+    }
+
+    /**
+     * Get the default strategy: 100 spins, 10 yields, then park for 50 microseconds between checks.
+     *
+     * @return The default strategy.
+     */
+    public static WaitStrategy defaults() {
+        return DEFAULT;
+    }
+
+    /**
+     * Get a strategy which only spins. It has the lowest latency and burns a whole core while waiting.
+     *
+     * @return A busy spinning strategy.
+     */
+    public static WaitStrategy busySpin() {
+        return new WaitStrategy(Integer.MAX_VALUE, 0, 0L);
+    }
+
+    /**
+     * Create a strategy which spins first, then yields, then parks.
+     *
+     * @param spins     The count of checks to spin for.
+     * @param yields    The count of checks to yield for after spinning.
+     * @param parkNanos The nanoseconds to park for between the remaining checks.
+     * @return A new strategy.
+     * @throws IllegalArgumentException If any argument is negative, or {@code parkNanos} is 0 while the strategy
+     *                                  does not spin forever.
+     */
+    public static WaitStrategy spinYieldPark(int spins, int yields, long parkNanos) {
+        if (spins < 0 || yields < 0 || parkNanos < 0) {
+            throw new IllegalArgumentException("Spins, yields and park nanos can not be less than 0!");
+        }
+        if (parkNanos == 0 && spins != Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Park nanos should be greater than 0!");
+        }
+        return new WaitStrategy(spins, yields, parkNanos);
+    }
+
+    /**
+     * Wait once before the next check of the clock.
+     *
+     * @param attempt The count of checks done so far in the current wait, starting at 0.
+     */
+    public void idle(int attempt) {
+        if (attempt < spins) {
+            return;
+        }
+        if (attempt - spins < yields) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(parkNanos);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("WaitStrategy(spins=%d, yields=%d, parkNanos=%d)", spins, yields, parkNanos);
+    }
+}
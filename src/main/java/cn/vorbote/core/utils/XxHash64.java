@@ -0,0 +1,177 @@
+package cn.vorbote.core.utils;
+
+/**
+ * xxHash64 with seed 0, see {@link FastHash#XXHASH_64}.
+ *
+ * @author vorbote
+ */
+final class XxHash64 extends FastHash.Streaming {
+
+    private static final long P1 = 0x9E3779B185EBCA87L;
+
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+
+    private static final long P3 = 0x165667B19E3779F9L;
+
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+
+    private static final long P5 = 0x27D4EB2F165667C5L;
+
+    private long v1;
+
+    private long v2;
+
+    private long v3;
+
+    private long v4;
+
+    private long total;
+
+    /**
+     * Input which does not fill a stripe of 32 bytes yet.
+     */
+    private final byte[] buffer = new byte[32];
+
+    private int buffered;
+
+    XxHash64() {
+        reset();
+    }
+
+    static long hash(byte[] input, int off, int len) {
+        int i = off;
+        int end = off + len;
+        long h;
+        if (len >= 32) {
+            long v1 = P1 + P2;
+            long v2 = P2;
+            long v3 = 0;
+            long v4 = -P1;
+            int limit = end - 32;
+            do {
+                v1 = round(v1, FastHash.getLongLE(input, i));
+                v2 = round(v2, FastHash.getLongLE(input, i + 8));
+                v3 = round(v3, FastHash.getLongLE(input, i + 16));
+                v4 = round(v4, FastHash.getLongLE(input, i + 24));
+                i += 32;
+            } while (i <= limit);
+            h = converge(v1, v2, v3, v4);
+        } else {
+            h = P5;
+        }
+        return finish(h + len, input, i, end);
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * P2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * P1;
+    }
+
+    private static long merge(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * P1 + P4;
+    }
+
+    private static long converge(long v1, long v2, long v3, long v4) {
+        long h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+        h = merge(h, v1);
+        h = merge(h, v2);
+        h = merge(h, v3);
+        return merge(h, v4);
+    }
+
+    /**
+     * Process the last bytes, fewer than 32, and avalanche.
+     */
+    private static long finish(long h, byte[] input, int i, int end) {
+        while (i + 8 <= end) {
+            h ^= round(0, FastHash.getLongLE(input, i));
+            h = Long.rotateLeft(h, 27) * P1 + P4;
+            i += 8;
+        }
+        if (i + 4 <= end) {
+            h ^= (FastHash.getIntLE(input, i) & 0xffffffffL) * P1;
+            h = Long.rotateLeft(h, 23) * P2 + P3;
+            i += 4;
+        }
+        while (i < end) {
+            h ^= (input[i] & 0xff) * P5;
+            h = Long.rotateLeft(h, 11) * P1;
+            ++i;
+        }
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        h *= P3;
+        return h ^ (h >>> 32);
+    }
+
+    @Override
+    public FastHash.Streaming update(byte[] input, int off, int len) {
+        total += len;
+        int i = off;
+        int end = off + len;
+        if (buffered > 0) {
+            int count = Math.min(32 - buffered, len);
+            System.arraycopy(input, i, buffer, buffered, count);
+            buffered += count;
+            i += count;
+            if (buffered < 32) {
+                return this;
+            }
+            stripe(buffer, 0);
+            buffered = 0;
+        }
+        while (i + 32 <= end) {
+            stripe(input, i);
+            i += 32;
+        }
+        System.arraycopy(input, i, buffer, 0, end - i);
+        buffered = end - i;
+        return this;
+    }
+
+    private void stripe(byte[] input, int i) {
+        v1 = round(v1, FastHash.getLongLE(input, i));
+        v2 = round(v2, FastHash.getLongLE(input, i + 8));
+        v3 = round(v3, FastHash.getLongLE(input, i + 16));
+        v4 = round(v4, FastHash.getLongLE(input, i + 24));
+    }
+
+    @Override
+    public FastHash.Streaming reset() {
+        v1 = P1 + P2;
+        v2 = P2;
+        v3 = 0;
+        v4 = -P1;
+        total = 0;
+        buffered = 0;
+        return this;
+    }
+
+    @Override
+    public long getValue() {
+        long h = total >= 32 ? converge(v1, v2, v3, v4) : P5;
+        return finish(h + total, buffer, 0, buffered);
+    }
+
+    @Override
+    public int digest(byte[] out, int off) {
+        FastHash.putLongBE(out, off, getValue(), 8);
+        return 8;
+    }
+
+    @Override
+    public FastHash.Streaming copy() {
+        XxHash64 copy = new XxHash64();
+        copy.v1 = v1;
+        copy.v2 = v2;
+        copy.v3 = v3;
+        copy.v4 = v4;
+        copy.total = total;
+        copy.buffered = buffered;
+        System.arraycopy(buffer, 0, copy.buffer, 0, buffered);
+        return copy;
+    }
+}
@@ -0,0 +1,87 @@
+package cn.vorbote.core.test;
+
+import cn.vorbote.core.exceptions.SnowFlakeException;
+import cn.vorbote.core.utils.BufferedIdProvider;
+import cn.vorbote.core.utils.ManualTimeSource;
+import cn.vorbote.core.utils.SnowFlake;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * BufferedIdProviderTest<br>
+ * Created at Oct 17, 2026 10:20:00 AM
+ *
+ * @author vorbote
+ */
+@Slf4j
+public class BufferedIdProviderTest {
+
+    @Test
+    public void testConcurrentTake() throws InterruptedException {
+        try (BufferedIdProvider provider = BufferedIdProvider.builder(new SnowFlake(1, 1))
+                .bufferSize(1024)
+                .paddingFactor(25)
+                .build()) {
+            Assert.assertEquals(1024, provider.getAvailable());
+
+            final int threads = 4;
+            final int perThread = 20_000;
+            final long[] ids = new long[threads * perThread];
+            Thread[] workers = new Thread[threads];
+            for (int t = 0; t < threads; ++t) {
+                final int offset = t * perThread;
+                workers[t] = new Thread(() -> {
+                    for (int i = 0; i < perThread; ++i) {
+                        ids[offset + i] = provider.nextId();
+                    }
+                });
+                workers[t].start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+
+            Assert.assertEquals(ids.length, Arrays.stream(ids).distinct().count());
+            Assert.assertTrue(provider.getRefillCount() > 1);
+            log.info("refills: {}, waits: {}, fill ratio: {}", provider.getRefillCount(), provider.getWaitCount(),
+                    provider.getFillRatio());
+        }
+    }
+
+    @Test(timeout = 10_000L)
+    public void testRefillFailureIsThrown() {
+        ManualTimeSource clock = new ManualTimeSource();
+        SnowFlake snowFlake = SnowFlake.builder().timeSource(clock).build();
+        try (BufferedIdProvider provider = BufferedIdProvider.builder(snowFlake).bufferSize(16).build()) {
+            clock.advance(-10L);
+            try {
+                for (int i = 0; i < 17; ++i) {
+                    provider.nextId();
+                }
+                Assert.fail("The clock regression should be thrown rather than waited for");
+            } catch (SnowFlakeException e) {
+                log.info("refill failed: {}", e.getMessage());
+            }
+
+            // The refill thread survives and recovers once the clock is back.
+            clock.advance(20L);
+            for (; ; ) {
+                try {
+                    provider.nextId();
+                    break;
+                } catch (SnowFlakeException e) {
+                    Thread.yield();
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBufferSizeMustBePowerOfTwo() {
+        BufferedIdProvider.builder(new SnowFlake(1, 1)).bufferSize(1000).build();
+    }
+
+}
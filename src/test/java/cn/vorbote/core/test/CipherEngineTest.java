@@ -0,0 +1,123 @@
+package cn.vorbote.core.test;
+
+import cn.vorbote.core.constants.Hash;
+import cn.vorbote.core.utils.CipherEngine;
+import cn.vorbote.core.utils.HashUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * CipherEngineTest<br>
+ * Created at Oct 17, 2026 8:30:00 PM
+ *
+ * @author vorbote
+ */
+@Slf4j
+public class CipherEngineTest {
+
+    @Test
+    public void testRecords() {
+        Random random = new Random(21);
+        byte[] aesKey = new byte[16];
+        random.nextBytes(aesKey);
+        byte[] desKey = new byte[8];
+        random.nextBytes(desKey);
+        CipherEngine[] engines = {
+                CipherEngine.of(Hash.AES, aesKey),
+                CipherEngine.builder(Hash.AES, aesKey).mode(CipherEngine.Mode.CTR).build(),
+                CipherEngine.builder(Hash.AES, aesKey).mode(CipherEngine.Mode.CBC).build(),
+                CipherEngine.of(Hash.DES, desKey)
+        };
+
+        byte[][] plains = new byte[50][];
+        for (int i = 0; i < plains.length; ++i) {
+            plains[i] = new byte[i];
+            random.nextBytes(plains[i]);
+        }
+        for (CipherEngine engine : engines) {
+            log.info("{}", engine);
+            byte[][] records = engine.encryptAll(plains);
+            for (int i = 0; i < plains.length; ++i) {
+                Assert.assertEquals(engine.encryptedLength(i), records[i].length);
+                Assert.assertArrayEquals(plains[i], engine.decrypt(records[i]));
+            }
+            Assert.assertArrayEquals(plains, engine.decryptAll(records));
+            Assert.assertFalse(ByteBuffer.wrap(records[10]).equals(ByteBuffer.wrap(engine.encrypt(plains[10]))));
+
+            ByteBuffer plain = ByteBuffer.allocateDirect(plains[33].length);
+            plain.put(plains[33]).flip();
+            ByteBuffer record = ByteBuffer.allocateDirect(engine.encryptedLength(33));
+            Assert.assertEquals(record.capacity(), engine.encrypt(plain, record));
+            record.flip();
+            ByteBuffer decrypted = ByteBuffer.allocate(64);
+            Assert.assertEquals(33, engine.decrypt(record, decrypted));
+            Assert.assertArrayEquals(plains[33], Arrays.copyOf(decrypted.array(), 33));
+        }
+
+        byte[] tampered = engines[0].encrypt(plains[20]);
+        tampered[tampered.length - 1] ^= 1;
+        Assert.assertThrows(IllegalArgumentException.class, () -> engines[0].decrypt(tampered));
+        Assert.assertThrows(IllegalArgumentException.class, () -> CipherEngine.of(Hash.AES, desKey));
+        Assert.assertThrows(IllegalArgumentException.class,
+                () -> CipherEngine.builder(Hash.DES, desKey).mode(CipherEngine.Mode.GCM).build());
+
+        String encrypted = HashUtil.encrypt(Hash.AES, "0123456789abcdef", "住址 & phone");
+        Assert.assertEquals("住址 & phone", HashUtil.decrypt(Hash.AES, "0123456789abcdef", encrypted));
+    }
+
+    @Test
+    public void testChannels() throws Exception {
+        byte[] plain = new byte[300_000];
+        new Random(22).nextBytes(plain);
+        byte[] key = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+        for (CipherEngine.Mode mode : CipherEngine.Mode.values()) {
+            CipherEngine engine = CipherEngine.builder(Hash.AES, key).mode(mode).build();
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            long length = engine.encrypt(Channels.newChannel(new ByteArrayInputStream(plain)),
+                    Channels.newChannel(record));
+            Assert.assertEquals(engine.encryptedLength(plain.length), length);
+            Assert.assertArrayEquals(plain, engine.decrypt(record.toByteArray()));
+
+            ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+            Assert.assertEquals(plain.length, engine.decrypt(
+                    Channels.newChannel(new ByteArrayInputStream(record.toByteArray())),
+                    Channels.newChannel(decrypted)));
+            Assert.assertArrayEquals(plain, decrypted.toByteArray());
+        }
+    }
+
+    @Test
+    public void testLargeGcmRecordThroughChannels() throws Exception {
+        Random random = new Random(32);
+        byte[] key = new byte[32];
+        random.nextBytes(key);
+        byte[] plain = new byte[8 * 1024 * 1024 + 17];
+        random.nextBytes(plain);
+        CipherEngine engine = CipherEngine.of(Hash.AES, key);
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream(engine.encryptedLength(plain.length));
+        engine.encrypt(Channels.newChannel(new ByteArrayInputStream(plain)), Channels.newChannel(record));
+        byte[] bytes = record.toByteArray();
+        Assert.assertEquals(1L, engine.getEncryptedCount());
+
+        long start = System.nanoTime();
+        ByteArrayOutputStream decrypted = new ByteArrayOutputStream(plain.length);
+        Assert.assertEquals(plain.length, engine.decrypt(Channels.newChannel(new ByteArrayInputStream(bytes)),
+                Channels.newChannel(decrypted)));
+        log.info("Decrypted {} bytes of GCM in {} ms", plain.length, (System.nanoTime() - start) / 1_000_000);
+        Assert.assertArrayEquals(plain, decrypted.toByteArray());
+
+        bytes[bytes.length / 2] ^= 1;
+        Assert.assertThrows(IllegalArgumentException.class, () -> engine.decrypt(
+                Channels.newChannel(new ByteArrayInputStream(bytes)), Channels.newChannel(new ByteArrayOutputStream())));
+    }
+}
@@ -0,0 +1,100 @@
+package cn.vorbote.core.test;
+
+import cn.vorbote.core.constants.Hash;
+import cn.vorbote.core.utils.Codec;
+import cn.vorbote.core.utils.HashUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+/**
+ * CodecTest<br>
+ * Created at Oct 17, 2026 6:00:00 PM
+ *
+ * @author vorbote
+ */
+@Slf4j
+public class CodecTest {
+
+    @Test
+    public void testMatchesJdk() {
+        Random random = new Random(17);
+        for (int len = 0; len < 70; ++len) {
+            byte[] bytes = new byte[len];
+            random.nextBytes(bytes);
+
+            String base64 = Base64.getEncoder().encodeToString(bytes);
+            Assert.assertEquals(base64, Codec.BASE64.encode(bytes));
+            Assert.assertArrayEquals(bytes, Codec.BASE64.decode(base64));
+
+            String url = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+            Assert.assertEquals(url, Codec.BASE64_URL.encode(bytes));
+            Assert.assertArrayEquals(bytes, Codec.BASE64_URL.decode(url));
+
+            StringBuilder hex = new StringBuilder();
+            for (byte b : bytes) {
+                hex.append(String.format("%02x", b));
+            }
+            Assert.assertEquals(hex.toString(), Codec.HEX.encode(bytes));
+            Assert.assertArrayEquals(bytes, Codec.HEX.decode(hex.toString().toUpperCase()));
+
+            for (Codec codec : Codec.values()) {
+                ByteBuffer encoded = ByteBuffer.allocateDirect(codec.encodedLength(len));
+                codec.encode(ByteBuffer.wrap(bytes), encoded);
+                encoded.flip();
+                ByteBuffer decoded = ByteBuffer.allocate(len);
+                codec.decode(encoded, decoded);
+                Assert.assertArrayEquals(bytes, decoded.array());
+
+                char[] chars = new char[codec.encodedLength(len) + 1];
+                codec.encode(bytes, 0, len, chars, 1);
+                byte[] back = new byte[len];
+                Assert.assertEquals(len, codec.decode(chars, 1, chars.length - 1, back, 0));
+                Assert.assertArrayEquals(bytes, back);
+            }
+        }
+    }
+
+    @Test
+    public void testBase32Vectors() {
+        String[][] vectors = {{"", ""}, {"f", "MY======"}, {"fo", "MZXQ===="}, {"foo", "MZXW6==="},
+                {"foob", "MZXW6YQ="}, {"fooba", "MZXW6YTB"}, {"foobar", "MZXW6YTBOI======"}};
+        for (String[] vector : vectors) {
+            byte[] bytes = vector[0].getBytes(StandardCharsets.US_ASCII);
+            Assert.assertEquals(vector[1], Codec.BASE32.encode(bytes));
+            Assert.assertArrayEquals(bytes, Codec.BASE32.decode(vector[1].toLowerCase()));
+        }
+    }
+
+    @Test
+    public void testInvalidInput() {
+        String[] invalid = {"abc", "zz"};
+        for (String text : invalid) {
+            try {
+                Codec.HEX.decode(text);
+                Assert.fail(text + " is not valid hex");
+            } catch (IllegalArgumentException e) {
+                log.info(e.getMessage());
+            }
+        }
+        try {
+            Codec.BASE64.decode("A===");
+            Assert.fail("A single Base64 character can not be decoded");
+        } catch (IllegalArgumentException e) {
+            log.info(e.getMessage());
+        }
+    }
+
+    @Test
+    public void testHashUtil() {
+        Assert.assertEquals("aGVsbG8g5LiW55WM", HashUtil.base64Encode("hello 世界"));
+        Assert.assertEquals("hello", HashUtil.base64Decode("aGVsbG8="));
+        String encrypted = HashUtil.encrypt(Hash.RC4, "key", "plain text");
+        Assert.assertEquals("plain text", HashUtil.decrypt(Hash.RC4, "key", encrypted));
+    }
+}
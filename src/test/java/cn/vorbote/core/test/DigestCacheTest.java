@@ -0,0 +1,91 @@
+package cn.vorbote.core.test;
+
+import cn.vorbote.core.constants.Hash;
+import cn.vorbote.core.utils.DigestCache;
+import cn.vorbote.core.utils.HashUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * DigestCacheTest<br>
+ * Created at Oct 17, 2026 9:50:00 PM
+ *
+ * @author vorbote
+ */
+@Slf4j
+public class DigestCacheTest {
+
+    @Test
+    public void testHitsAndEviction() {
+        DigestCache cache = DigestCache.builder().maximumSize(100).maxInputLength(16).build();
+        for (int round = 0; round < 3; ++round) {
+            for (int i = 0; i < 50; ++i) {
+                String id = "id-" + i;
+                Assert.assertEquals(HashUtil.encrypt(Hash.SHA_256, id), cache.encrypt(Hash.SHA_256, id));
+            }
+        }
+        Assert.assertEquals(50, cache.getMissCount());
+        Assert.assertEquals(100, cache.getHitCount());
+        Assert.assertEquals(2.0 / 3, cache.getHitRatio(), 1e-9);
+        Assert.assertArrayEquals(cache.digest(Hash.SHA_256, "id-1"), cache.digest(Hash.SHA_256, "id-1"));
+        Assert.assertNotEquals(cache.encrypt(Hash.MD5, "id-1"), cache.encrypt(Hash.SHA_256, "id-1"));
+
+        // The hot keys were referenced, a scan of cold keys evicts the cold keys first.
+        for (int i = 0; i < 500; ++i) {
+            cache.encrypt(Hash.SHA_256, "cold-" + i);
+            cache.encrypt(Hash.SHA_256, "id-" + (i % 10));
+        }
+        Assert.assertTrue(cache.size() <= 100);
+        Assert.assertTrue(cache.getEvictionCount() > 0);
+        long hits = cache.getHitCount();
+        for (int i = 0; i < 10; ++i) {
+            cache.encrypt(Hash.SHA_256, "id-" + i);
+        }
+        Assert.assertEquals(hits + 10, cache.getHitCount());
+
+        String longInput = "0123456789abcdefg";
+        Assert.assertEquals(HashUtil.encrypt(Hash.SHA_1, longInput), cache.encrypt(Hash.SHA_1, longInput));
+        Assert.assertEquals(HashUtil.encrypt(Hash.SHA_1, longInput), cache.encrypt(Hash.SHA_1, longInput));
+        log.info("{}", cache);
+    }
+
+    @Test
+    public void testConcurrentUse() throws Exception {
+        DigestCache cache = DigestCache.builder().maximumSize(256).build();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; ++t) {
+                int seed = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 20_000; ++i) {
+                        String id = "user-" + ((i * 7 + seed) % 400);
+                        if (!HashUtil.encrypt(Hash.MD5, id).equals(cache.encrypt(Hash.MD5, id))) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                Assert.assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertTrue(cache.size() <= 256);
+        Assert.assertEquals(80_000, cache.getHitCount() + cache.getMissCount());
+
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(HashUtil.encrypt(Hash.MD5, "user-1"), cache.encrypt(Hash.MD5, "user-1"));
+        Assert.assertEquals(1, cache.size());
+    }
+}
@@ -0,0 +1,76 @@
+package cn.vorbote.core.test;
+
+import cn.vorbote.core.constants.Hash;
+import cn.vorbote.core.utils.FastHash;
+import cn.vorbote.core.utils.HashUtil;
+import cn.vorbote.core.utils.Hasher;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * FastHashTest<br>
+ * Created at Oct 17, 2026 7:20:00 PM
+ *
+ * @author vorbote
+ */
+@Slf4j
+public class FastHashTest {
+
+    private static final String FOX = "The quick brown fox jumps over the lazy dog";
+
+    @Test
+    public void testReferenceVectors() {
+        Assert.assertEquals(0xEF46DB3751D8E999L, FastHash.XXHASH_64.hash64(new byte[0]));
+        Assert.assertEquals(0x44BC2CF5AD770999L, FastHash.XXHASH_64.hash64("abc"));
+        Assert.assertEquals(0x0B242D361FDA71BCL, FastHash.XXHASH_64.hash64(FOX));
+
+        Assert.assertEquals(0L, FastHash.MURMUR3_32.hash64(new byte[0]));
+        Assert.assertEquals(0x248bfa47L, FastHash.MURMUR3_32.hash64("hello"));
+        Assert.assertEquals(0x2e4ff723L, FastHash.MURMUR3_32.hash64(FOX));
+
+        Assert.assertEquals("6c1b07bc7bbc4be347939ac4a93c437a", HashUtil.encrypt(Hash.MURMUR3_128, FOX));
+        Assert.assertEquals(0xe34bbc7bbc071b6cL, FastHash.MURMUR3_128.hash64(FOX));
+
+        Assert.assertEquals(0xE3069283L, FastHash.CRC32C.hash64("123456789"));
+        Assert.assertEquals("e3069283", HashUtil.encrypt(Hash.CRC32C, "123456789"));
+    }
+
+    @Test
+    public void testStreamingMatchesOneShot() throws Exception {
+        Random random = new Random(18);
+        byte[] bytes = new byte[1000];
+        random.nextBytes(bytes);
+        for (FastHash fastHash : FastHash.values()) {
+            for (int len = 0; len <= bytes.length; len += 37) {
+                long expected = fastHash.hash64(bytes, 0, len);
+
+                FastHash.Streaming streaming = fastHash.newStreaming();
+                for (int i = 0; i < len; ) {
+                    int piece = Math.min(random.nextInt(40), len - i);
+                    streaming.update(bytes, i, piece);
+                    i += piece;
+                }
+                Assert.assertEquals(expected, streaming.getValue());
+                Assert.assertEquals(expected, streaming.copy().getValue());
+
+                ByteBuffer direct = ByteBuffer.allocateDirect(len);
+                direct.put(bytes, 0, len).flip();
+                Assert.assertEquals(expected, fastHash.hash64(direct));
+
+                byte[] range = new byte[len];
+                System.arraycopy(bytes, 0, range, 0, len);
+                byte[] digest = HashUtil.digest(fastHash.getHash(), new ByteArrayInputStream(range));
+                Assert.assertArrayEquals(digest, Hasher.of(fastHash.getHash()).digest(range));
+            }
+
+            String text = "key-é-中-😀-" + random.nextLong();
+            Assert.assertEquals(fastHash.hash64(text.getBytes(StandardCharsets.UTF_8)), fastHash.hash64(text));
+        }
+    }
+}
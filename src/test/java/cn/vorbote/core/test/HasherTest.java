@@ -0,0 +1,123 @@
+package cn.vorbote.core.test;
+
+import cn.vorbote.core.constants.Hash;
+import cn.vorbote.core.exceptions.UnsupportedHashAlgorithmException;
+import cn.vorbote.core.utils.Codec;
+import cn.vorbote.core.utils.HashUtil;
+import cn.vorbote.core.utils.Hasher;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * HasherTest<br>
+ * Created at Oct 17, 2026 5:10:00 PM
+ *
+ * @author vorbote
+ */
+@Slf4j
+public class HasherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final Hash[] DIGESTS = {Hash.MD2, Hash.MD5, Hash.SHA_1, Hash.SHA_224, Hash.SHA_256, Hash.SHA_384,
+            Hash.SHA_512};
+
+    @Test
+    public void testMatchesMessageDigest() throws Exception {
+        String value = "vorbote-中文-😀";
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        for (Hash hash : DIGESTS) {
+            byte[] expected = MessageDigest.getInstance(hash.get()).digest(bytes);
+            Hasher hasher = Hasher.of(hash);
+            Assert.assertSame(hasher, Hasher.of(hash));
+            Assert.assertArrayEquals(expected, hasher.digest(bytes));
+            Assert.assertArrayEquals(expected, hasher.digest(value));
+            Assert.assertArrayEquals(expected, hasher.digest(ByteBuffer.wrap(bytes)));
+
+            byte[] padded = new byte[bytes.length + 4];
+            System.arraycopy(bytes, 0, padded, 2, bytes.length);
+            Assert.assertArrayEquals(expected, hasher.digest(padded, 2, bytes.length));
+
+            byte[] out = new byte[hasher.getDigestLength() + 1];
+            Assert.assertEquals(expected.length, hasher.digest(bytes, 0, bytes.length, out, 1));
+            for (int i = 0; i < expected.length; ++i) {
+                Assert.assertEquals(expected[i], out[i + 1]);
+            }
+        }
+    }
+
+    @Test
+    public void testLongText() throws Exception {
+        StringBuilder text = new StringBuilder();
+        Random random = new Random(24);
+        while (text.length() < 10_000) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    text.append((char) ('a' + random.nextInt(26)));
+                    break;
+                case 1:
+                    text.append('é');
+                    break;
+                case 2:
+                    text.append('中');
+                    break;
+                default:
+                    text.append("😀");
+            }
+        }
+        text.append('\ud800');
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        for (Hash hash : DIGESTS) {
+            byte[] expected = MessageDigest.getInstance(hash.get()).digest(bytes);
+            Assert.assertArrayEquals(expected, Hasher.of(hash).digest(text));
+            byte[] out = new byte[expected.length + 3];
+            Assert.assertEquals(expected.length, Hasher.of(hash).digest(text, out, 3));
+            Assert.assertArrayEquals(expected, Arrays.copyOfRange(out, 3, out.length));
+        }
+        Assert.assertEquals(Codec.HEX.encode(MessageDigest.getInstance("SHA-256").digest(bytes)),
+                HashUtil.encrypt(Hash.SHA_256, text.toString()));
+    }
+
+    @Test
+    public void testStreamsAndFiles() throws Exception {
+        for (int size : new int[]{0, 100_000, 3 * 1024 * 1024 + 17}) {
+            byte[] bytes = new byte[size];
+            new Random(size).nextBytes(bytes);
+            Path file = folder.newFile().toPath();
+            Files.write(file, bytes);
+
+            byte[] expected = MessageDigest.getInstance("SHA-256").digest(bytes);
+            Assert.assertArrayEquals(expected, HashUtil.digest(Hash.SHA_256, new ByteArrayInputStream(bytes)));
+            Assert.assertArrayEquals(expected, HashUtil.digest(Hash.SHA_256,
+                    Channels.newChannel(new ByteArrayInputStream(bytes))));
+            Assert.assertArrayEquals(expected, HashUtil.digest(Hash.SHA_256, file));
+        }
+    }
+
+    @Test
+    public void testEncrypt() {
+        Assert.assertEquals("5d41402abc4b2a76b9719d911017c592", HashUtil.encrypt(Hash.MD5, "hello"));
+        Assert.assertEquals("2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824",
+                HashUtil.encrypt(Hash.SHA_256, "hello"));
+        try {
+            HashUtil.encrypt(Hash.AES, "hello");
+            Assert.fail("AES is not a digest");
+        } catch (UnsupportedHashAlgorithmException e) {
+            log.info(e.getMessage());
+        }
+    }
+}
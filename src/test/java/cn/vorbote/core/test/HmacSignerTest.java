@@ -0,0 +1,84 @@
+package cn.vorbote.core.test;
+
+import cn.vorbote.core.constants.Hash;
+import cn.vorbote.core.exceptions.UnsupportedHashAlgorithmException;
+import cn.vorbote.core.utils.Codec;
+import cn.vorbote.core.utils.HashUtil;
+import cn.vorbote.core.utils.HmacSigner;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * HmacSignerTest<br>
+ * Created at Oct 17, 2026 8:50:00 PM
+ *
+ * @author vorbote
+ */
+@Slf4j
+public class HmacSignerTest {
+
+    private static final String MESSAGE = "what do ya want for nothing?";
+
+    @Test
+    public void testReferenceVectors() throws Exception {
+        Assert.assertEquals("750c783e6ab0b503eaa86e310a5db738", HashUtil.hmac(Hash.MD5, "Jefe", MESSAGE));
+        Assert.assertEquals("5bdcc146bf60754e6a042426089575c75a003f089d2739839dec58b964ec3843",
+                HashUtil.hmac(Hash.SHA_256, "Jefe", MESSAGE));
+
+        // MD2 has no Mac in the JVM, compare with HMAC spelt out over MessageDigest.
+        byte[] key = "Jefe".getBytes(StandardCharsets.UTF_8);
+        byte[] block = Arrays.copyOf(key, 16);
+        byte[] innerPad = new byte[16];
+        byte[] outerPad = new byte[16];
+        for (int i = 0; i < 16; ++i) {
+            innerPad[i] = (byte) (block[i] ^ 0x36);
+            outerPad[i] = (byte) (block[i] ^ 0x5c);
+        }
+        MessageDigest md2 = MessageDigest.getInstance("MD2");
+        md2.update(innerPad);
+        byte[] inner = md2.digest(MESSAGE.getBytes(StandardCharsets.UTF_8));
+        md2.update(outerPad);
+        String expected = Codec.HEX.encode(md2.digest(inner));
+        HmacSigner signer = HmacSigner.of(Hash.MD2, key);
+        Assert.assertEquals(expected, Codec.HEX.encode(signer.sign(MESSAGE)));
+        Assert.assertEquals(expected, Codec.HEX.encode(signer.sign(MESSAGE)));
+
+        Assert.assertThrows(UnsupportedHashAlgorithmException.class, () -> HmacSigner.of(Hash.CRC32C, key));
+    }
+
+    @Test
+    public void testSignAndVerify() {
+        StringBuilder builder = new StringBuilder("payload-中文-😀-");
+        for (int i = 0; i < 2000; ++i) {
+            builder.append((char) ('a' + i % 26));
+        }
+        String text = builder.toString();
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        for (Hash hash : new Hash[]{Hash.MD2, Hash.MD5, Hash.SHA_1, Hash.SHA_224, Hash.SHA_256, Hash.SHA_384,
+                Hash.SHA_512}) {
+            HmacSigner signer = HmacSigner.of(hash, "webhook-secret");
+            byte[] signature = signer.sign(bytes);
+            Assert.assertEquals(signer.getMacLength(), signature.length);
+            Assert.assertArrayEquals(signature, signer.sign(text));
+            Assert.assertArrayEquals(signature, signer.sign(ByteBuffer.wrap(bytes)));
+
+            byte[] token = Arrays.copyOf(bytes, bytes.length + signature.length);
+            Assert.assertEquals(signature.length, signer.sign(bytes, 0, bytes.length, token, bytes.length));
+            Assert.assertTrue(signer.verify(token, 0, bytes.length, token, bytes.length, signature.length));
+            Assert.assertTrue(signer.verify(text, signature));
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+            direct.put(bytes).flip();
+            Assert.assertTrue(signer.verify(direct, signature));
+
+            signature[signature.length - 1] ^= 1;
+            Assert.assertFalse(signer.verify(bytes, signature));
+            Assert.assertFalse(signer.verify(bytes, Arrays.copyOf(signature, 4)));
+        }
+    }
+}
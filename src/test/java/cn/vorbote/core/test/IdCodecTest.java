@@ -0,0 +1,69 @@
+package cn.vorbote.core.test;
+
+import cn.vorbote.core.utils.IdCodec;
+import cn.vorbote.core.utils.SnowFlake;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * IdCodecTest<br>
+ * Created at Oct 17, 2026 11:05:00 AM
+ *
+ * @author vorbote
+ */
+@Slf4j
+public class IdCodecTest {
+
+    private static final long[] SAMPLES = {0L, 1L, 61L, 62L, 4095L, 1L << 40, Long.MAX_VALUE, -1L, Long.MIN_VALUE};
+
+    @Test
+    public void testRoundTrip() {
+        for (IdCodec codec : IdCodec.values()) {
+            for (long id : SAMPLES) {
+                String encoded = codec.encode(id);
+                Assert.assertEquals(codec.width(), encoded.length());
+                Assert.assertEquals(id, codec.decode(encoded));
+
+                char[] chars = new char[codec.width() + 2];
+                codec.encode(id, chars, 1);
+                Assert.assertEquals(encoded, new String(chars, 1, codec.width()));
+
+                StringBuilder builder = new StringBuilder("id:");
+                codec.encode(id, builder);
+                Assert.assertEquals(id, codec.decode(builder, 3));
+
+                ByteBuffer buffer = ByteBuffer.allocate(codec.width());
+                codec.encode(id, buffer);
+                Assert.assertEquals(encoded, new String(buffer.array(), StandardCharsets.US_ASCII));
+            }
+            log.info("{}: {}", codec, codec.encode(Long.MAX_VALUE));
+        }
+    }
+
+    @Test
+    public void testSortPreserving() {
+        long[] ids = new SnowFlake(1, 1).nextIds(10_000);
+        for (IdCodec codec : IdCodec.values()) {
+            for (int i = 1; i < ids.length; ++i) {
+                Assert.assertTrue(codec.encode(ids[i - 1]).compareTo(codec.encode(ids[i])) < 0);
+            }
+        }
+    }
+
+    @Test
+    public void testCrockfordAliases() {
+        String encoded = IdCodec.CROCKFORD_BASE32.encode(0x108421L);
+        String relaxed = encoded.toLowerCase().replace('1', 'l').replace('0', 'O');
+        Assert.assertEquals(0x108421L, IdCodec.CROCKFORD_BASE32.decode(relaxed));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBase62Overflow() {
+        IdCodec.BASE62.decode("zzzzzzzzzzz");
+    }
+
+}
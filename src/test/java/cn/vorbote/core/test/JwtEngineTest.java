@@ -0,0 +1,110 @@
+package cn.vorbote.core.test;
+
+import cn.vorbote.core.constants.JwtAlgorithm;
+import cn.vorbote.core.exceptions.JwtVerificationException;
+import cn.vorbote.core.exceptions.UnsupportedJwtAlgorithmException;
+import cn.vorbote.core.utils.Codec;
+import cn.vorbote.core.utils.JwtEngine;
+import cn.vorbote.core.utils.ManualTimeSource;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+
+/**
+ * JwtEngineTest<br>
+ * Created at Oct 17, 2026 9:20:00 PM
+ *
+ * @author vorbote
+ */
+@Slf4j
+public class JwtEngineTest {
+
+    /**
+     * The HS256 example of RFC 7515, appendix A.1.
+     */
+    private static final String RFC_TOKEN = "eyJ0eXAiOiJKV1QiLA0KICJhbGciOiJIUzI1NiJ9" +
+            ".eyJpc3MiOiJqb2UiLA0KICJleHAiOjEzMDA4MTkzODAsDQogImh0dHA6Ly9leGFtcGxlLmNvbS9pc19yb290Ijp0cnVlfQ" +
+            ".dBjftJeZ4CVP-mB92K27uhbUJU1p1r_wW1gFWFOEjXk";
+
+    private static final String RFC_KEY = "AyM1SysPpbyDfgZld3umj1qzKObwVMkoqQ-EstJQLr_T-1qS0gZH75aKtMN3Yj0iPS4hcgUu" +
+            "TwjAzZr1Z9CAow";
+
+    @Test
+    public void testHmac() {
+        ManualTimeSource clock = new ManualTimeSource(1300819379000L);
+        JwtEngine engine = JwtEngine.builder(JwtAlgorithm.HS256)
+                .secret(Codec.BASE64_URL.decode(RFC_KEY))
+                .timeSource(clock)
+                .build();
+        JwtEngine.Token token = engine.verify(new StringBuilder(RFC_TOKEN));
+        Assert.assertEquals("joe", token.getString("iss"));
+        Assert.assertEquals(1300819380L, token.getExpiresAt());
+        Assert.assertEquals(JwtEngine.Token.ABSENT, token.getIssuedAt());
+        Assert.assertSame(token, engine.verify(RFC_TOKEN));
+
+        clock.set(1300819380000L);
+        Assert.assertThrows(JwtVerificationException.class, () -> engine.verify(RFC_TOKEN));
+
+        byte[] secret = "a-secret-of-at-least-64-bytes-for-hs512-0123456789-0123456789-01".getBytes(
+                StandardCharsets.US_ASCII);
+        JwtEngine hs512 = JwtEngine.builder(JwtAlgorithm.HS512).secret(secret).cacheSize(0).build();
+        String signed = hs512.sign("{\"sub\":\"u\\\"1\\u00e9\",\"n\":{\"x\":[1,\"}\"]},\"iat\":1.5e9}");
+        JwtEngine.Token parsed = hs512.verify(signed);
+        Assert.assertEquals("u\"1é", parsed.getString("sub"));
+        Assert.assertEquals(1500000000L, parsed.getIssuedAt());
+        Assert.assertNull(parsed.getString("missing"));
+
+        String tampered = signed.substring(0, signed.length() - 2) + (signed.endsWith("A") ? "BB" : "AA");
+        Assert.assertThrows(JwtVerificationException.class, () -> hs512.verify(tampered));
+        Assert.assertThrows(UnsupportedJwtAlgorithmException.class, () -> engine.verify(signed));
+        Assert.assertThrows(UnsupportedJwtAlgorithmException.class,
+                () -> hs512.verify("eyJhbGciOiJub25lIn0.e30."));
+        Assert.assertThrows(JwtVerificationException.class, () -> hs512.verify("a.b"));
+
+        String farFuture = hs512.sign("{\"exp\":999999999999999999}");
+        Assert.assertThrows(JwtVerificationException.class, () -> hs512.verify(farFuture));
+        String farPast = hs512.sign("{\"nbf\":-999999999999999999}");
+        Assert.assertThrows(JwtVerificationException.class, () -> hs512.verify(farPast));
+    }
+
+    @Test
+    public void testRsaAndEcdsa() throws Exception {
+        KeyPairGenerator rsa = KeyPairGenerator.getInstance("RSA");
+        rsa.initialize(2048);
+        KeyPair rsaKeys = rsa.generateKeyPair();
+        KeyPairGenerator ec = KeyPairGenerator.getInstance("EC");
+        ec.initialize(256);
+        KeyPair ecKeys = ec.generateKeyPair();
+
+        Object[][] cases = {{JwtAlgorithm.RS256, rsaKeys}, {JwtAlgorithm.ES256, ecKeys}};
+        for (Object[] c : cases) {
+            JwtAlgorithm algorithm = (JwtAlgorithm) c[0];
+            KeyPair keys = (KeyPair) c[1];
+            JwtEngine signer = JwtEngine.builder(algorithm).privateKey(keys.getPrivate()).build();
+            JwtEngine verifier = JwtEngine.builder(algorithm).publicKey(keys.getPublic()).build();
+            for (int i = 0; i < 20; ++i) {
+                String token = signer.sign("{\"sub\":\"user-" + i + "\"}");
+                Assert.assertEquals("user-" + i, verifier.verify(token).getString("sub"));
+            }
+            String token = signer.sign("{\"sub\":\"x\"}");
+            if (algorithm == JwtAlgorithm.ES256) {
+                Assert.assertEquals(86, token.length() - token.lastIndexOf('.') - 1);
+            }
+            char[] chars = token.toCharArray();
+            chars[chars.length - 5] = chars[chars.length - 5] == 'A' ? 'B' : 'A';
+            Assert.assertThrows(JwtVerificationException.class, () -> verifier.verify(new String(chars)));
+            Assert.assertThrows(IllegalStateException.class, () -> verifier.sign("{}"));
+        }
+
+        Assert.assertThrows(IllegalArgumentException.class,
+                () -> JwtEngine.builder(JwtAlgorithm.RS256).privateKey(ecKeys.getPrivate()).build());
+        Assert.assertThrows(IllegalArgumentException.class,
+                () -> JwtEngine.builder(JwtAlgorithm.ES256).publicKey(rsaKeys.getPublic()).build());
+        Assert.assertThrows(IllegalArgumentException.class,
+                () -> JwtEngine.builder(JwtAlgorithm.ES384).publicKey(ecKeys.getPublic()).build());
+    }
+}
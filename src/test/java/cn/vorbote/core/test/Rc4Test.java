@@ -0,0 +1,75 @@
+package cn.vorbote.core.test;
+
+import cn.vorbote.core.constants.Hash;
+import cn.vorbote.core.utils.Codec;
+import cn.vorbote.core.utils.HashUtil;
+import cn.vorbote.core.utils.Rc4;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Rc4Test<br>
+ * Created at Oct 17, 2026 8:10:00 PM
+ *
+ * @author vorbote
+ */
+@Slf4j
+public class Rc4Test {
+
+    @Test
+    public void testReferenceVectors() {
+        byte[] plain = "Plaintext".getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals("bbf316e8d940af0ad3", Codec.HEX.encode(new Rc4("Key").apply(plain)));
+        Assert.assertEquals("bbf316e8d940af0ad3", HashUtil.encrypt(Hash.RC4, "Key", "Plaintext"));
+        Assert.assertEquals("Plaintext", HashUtil.decrypt(Hash.RC4, "Key", "bbf316e8d940af0ad3"));
+
+        Rc4 rc4 = new Rc4("Wiki");
+        byte[] pedia = "pedia".getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals("1021bf0420", Codec.HEX.encode(rc4.apply(pedia.clone())));
+        Assert.assertEquals("1021bf0420", Codec.HEX.encode(rc4.reset().apply(pedia.clone())));
+    }
+
+    @Test
+    public void testStreams() throws Exception {
+        byte[] plain = new byte[20000];
+        new Random(20).nextBytes(plain);
+        byte[] expected = new Rc4("secret").apply(plain.clone());
+
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        try (OutputStream output = new Rc4("secret").wrap(sink)) {
+            output.write(plain, 0, 100);
+            output.write(plain[100]);
+            output.write(plain, 101, plain.length - 101);
+        }
+        Assert.assertArrayEquals(expected, sink.toByteArray());
+
+        Rc4 rc4 = new Rc4("secret");
+        Rc4 copy = rc4.copy();
+        ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+        try (InputStream input = rc4.wrap(new ByteArrayInputStream(expected))) {
+            decrypted.write(input.read());
+            byte[] buffer = new byte[777];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                decrypted.write(buffer, 0, read);
+            }
+        }
+        Assert.assertArrayEquals(plain, decrypted.toByteArray());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(expected.length);
+        direct.put(expected).flip();
+        copy.apply(direct).flip();
+        byte[] result = new byte[direct.remaining()];
+        direct.get(result);
+        Assert.assertArrayEquals(plain, result);
+    }
+}
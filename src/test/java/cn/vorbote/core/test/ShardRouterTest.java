@@ -0,0 +1,87 @@
+package cn.vorbote.core.test;
+
+import cn.vorbote.core.utils.IdLayout;
+import cn.vorbote.core.utils.ShardRouter;
+import cn.vorbote.core.utils.SnowFlake;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * ShardRouterTest<br>
+ * Created at Oct 17, 2026 4:30:00 PM
+ *
+ * @author vorbote
+ */
+@Slf4j
+public class ShardRouterTest {
+
+    @Test
+    public void testMixedSpread() {
+        SnowFlake snowFlake = new SnowFlake(3, 1);
+        ShardRouter router = ShardRouter.builder(snowFlake.getLayout()).shards(8).build();
+        long[] ids = new long[80_000];
+        for (int i = 0; i < ids.length; ++i) {
+            // one id per millisecond, the worst case for the low bits
+            ids[i] = snowFlake.minIdAt(snowFlake.getStartEpoch() + i) | (1L << 17) | (3L << 12);
+        }
+        int[] shards = router.route(ids);
+        int[] counts = new int[8];
+        for (int i = 0; i < ids.length; ++i) {
+            Assert.assertEquals(router.shardOf(ids[i]), shards[i]);
+            ++counts[shards[i]];
+        }
+        for (int count : counts) {
+            Assert.assertTrue(count > 9_000 && count < 11_000);
+        }
+    }
+
+    @Test
+    public void testNodeAndSequence() {
+        SnowFlake snowFlake = new SnowFlake(3, 1);
+        ShardRouter byNode = ShardRouter.builder(IdLayout.DEFAULT)
+                .strategy(ShardRouter.Strategy.NODE)
+                .virtualBuckets(1024)
+                .shards(1024)
+                .build();
+        long id = snowFlake.nextId();
+        Assert.assertEquals((1 << 5) | 3, byNode.shardOf(id));
+
+        ShardRouter bySequence = ShardRouter.builder(IdLayout.DEFAULT)
+                .strategy(ShardRouter.Strategy.SEQUENCE)
+                .virtualBuckets(4096)
+                .shards(16)
+                .build();
+        Assert.assertEquals((int) (snowFlake.sequenceOf(id) % 16), bySequence.shardOf(id));
+
+        try {
+            ShardRouter.builder(IdLayout.DEFAULT).strategy(ShardRouter.Strategy.SEQUENCE).virtualBuckets(8192).build();
+            Assert.fail("Buckets beyond the sequence space should be rejected");
+        } catch (IllegalArgumentException e) {
+            log.info(e.getMessage());
+        }
+    }
+
+    @Test
+    public void testReshard() {
+        ShardRouter router = ShardRouter.builder(IdLayout.DEFAULT).virtualBuckets(1024).shards(4).build();
+        ShardRouter grown = router.reshard(5);
+        int[] moved = router.movedBuckets(grown);
+        int[] counts = new int[5];
+        for (int shard : grown.getBucketTable()) {
+            ++counts[shard];
+        }
+        for (int count : counts) {
+            Assert.assertTrue(count == 204 || count == 205);
+        }
+        Assert.assertEquals(counts[4], moved.length);
+
+        ShardRouter shrunk = grown.reshard(4);
+        Assert.assertEquals(4, shrunk.getShards());
+        Assert.assertEquals(counts[4], grown.movedBuckets(shrunk).length);
+
+        ShardRouter restored = ShardRouter.builder(IdLayout.DEFAULT).bucketTable(grown.getBucketTable()).build();
+        Assert.assertEquals(0, grown.movedBuckets(restored).length);
+        Assert.assertEquals(5, restored.getShards());
+    }
+}
@@ -0,0 +1,99 @@
+package cn.vorbote.core.test;
+
+import cn.vorbote.core.utils.LongSnowFlakeRegistry;
+import cn.vorbote.core.utils.ManualTimeSource;
+import cn.vorbote.core.utils.SnowFlake;
+import cn.vorbote.core.utils.SnowFlakeRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * SnowFlakeRegistryTest<br>
+ * Created at Oct 17, 2026 3:20:00 PM
+ *
+ * @author vorbote
+ */
+@Slf4j
+public class SnowFlakeRegistryTest {
+
+    @Test
+    public void testPerKeySequences() {
+        SnowFlakeRegistry<String> registry = SnowFlakeRegistry.<String>builder(tenant -> new SnowFlake(1, 1)).build();
+        long a = registry.nextId("tenant-a");
+        long b = registry.nextId("tenant-b");
+        Assert.assertTrue(registry.nextId("tenant-a") > a);
+        Assert.assertEquals(2, registry.size());
+        Assert.assertEquals(2, registry.getCreationCount());
+        Assert.assertNotEquals(0L, b);
+    }
+
+    @Test
+    public void testIdleEviction() {
+        ManualTimeSource clock = new ManualTimeSource(1_000_000L);
+        SnowFlakeRegistry<String> registry = SnowFlakeRegistry.<String>builder(tenant -> new SnowFlake(1, 1))
+                .idleTimeout(1000L)
+                .timeSource(clock)
+                .build();
+        registry.nextId("idle");
+        clock.advance(600L);
+        registry.nextId("busy");
+        clock.advance(600L);
+        registry.evictIdle();
+        Assert.assertEquals(1, registry.size());
+        Assert.assertEquals(1, registry.getEvictionCount());
+
+        registry.nextId("idle");
+        Assert.assertEquals(3, registry.getCreationCount());
+    }
+
+    @Test
+    public void testLongKeys() throws InterruptedException {
+        ManualTimeSource clock = new ManualTimeSource(1_000_000L);
+        LongSnowFlakeRegistry registry = LongSnowFlakeRegistry.builder(tenant -> new SnowFlake(1, 1))
+                .idleTimeout(1000L)
+                .timeSource(clock)
+                .build();
+
+        Thread[] threads = new Thread[4];
+        List<Set<String>> seen = new ArrayList<>(threads.length);
+        for (int t = 0; t < threads.length; ++t) {
+            Set<String> ids = new HashSet<>();
+            seen.add(ids);
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 20_000; ++i) {
+                    ids.add(i % 500 + ":" + registry.nextId(i % 500));
+                }
+            });
+            threads[t].start();
+        }
+        Set<String> all = new HashSet<>();
+        for (int t = 0; t < threads.length; ++t) {
+            threads[t].join();
+            all.addAll(seen.get(t));
+        }
+        Assert.assertEquals(4 * 20_000, all.size());
+        Assert.assertEquals(500, registry.size());
+        Assert.assertEquals(500, registry.getCreationCount());
+
+        clock.advance(500L);
+        for (long key = 0; key < 100; ++key) {
+            registry.nextId(key);
+        }
+        clock.advance(600L);
+        registry.evictIdle();
+        Assert.assertEquals(100, registry.size());
+        Assert.assertEquals(400, registry.getEvictionCount());
+
+        for (long key = 0; key < 500; ++key) {
+            registry.nextId(key);
+        }
+        Assert.assertEquals(500, registry.size());
+        Assert.assertEquals(900, registry.getCreationCount());
+    }
+}
@@ -1,8 +1,32 @@
 package cn.vorbote.core.test;
 
+import cn.vorbote.core.exceptions.SnowFlakeException;
+import cn.vorbote.core.time.DateTime;
+import cn.vorbote.core.utils.ClockRegressionPolicy;
+import cn.vorbote.core.utils.IdLayout;
+import cn.vorbote.core.utils.ManualTimeSource;
 import cn.vorbote.core.utils.SnowFlake;
+import cn.vorbote.core.utils.SnowFlakeCheckpoint;
+import cn.vorbote.core.utils.SnowFlakeMetrics;
+import cn.vorbote.core.utils.WaitStrategy;
 import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
 /**
  * SnowFlakeTest<br>
@@ -13,6 +37,9 @@ import org.junit.Test;
 @Slf4j
 public class SnowFlakeTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void test() {
         SnowFlake snowFlake = new SnowFlake(0, 0);
@@ -22,4 +49,311 @@ public class SnowFlakeTest {
         }
     }
 
+    @Test
+    public void testConcurrentUniqueness() throws InterruptedException {
+        assertConcurrentUniqueness(new SnowFlake(3, 7));
+    }
+
+    @Test
+    public void testStripedConcurrentUniqueness() throws InterruptedException {
+        SnowFlake snowFlake = new SnowFlake(1654012800000L, 3, 7, 8);
+        Assert.assertEquals(8, snowFlake.getStripes());
+        assertConcurrentUniqueness(snowFlake);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStripesMustBePowerOfTwo() {
+        new SnowFlake(1654012800000L, 0, 0, 6);
+    }
+
+    private void assertConcurrentUniqueness(final SnowFlake snowFlake) throws InterruptedException {
+        final int threads = 8;
+        final int perThread = 50_000;
+        final long[] ids = new long[threads * perThread];
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; ++t) {
+            final int offset = t * perThread;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < perThread; ++i) {
+                    ids[offset + i] = snowFlake.nextId();
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        Arrays.sort(ids);
+        for (int i = 1; i < ids.length; ++i) {
+            Assert.assertNotEquals(ids[i - 1], ids[i]);
+        }
+        // worker id and data centre id must survive the packing
+        Assert.assertEquals(3L, (ids[0] >> 12) & 0x1f);
+        Assert.assertEquals(7L, (ids[0] >> 17) & 0x1f);
+    }
+
+    @Test
+    public void testBulkReservation() {
+        SnowFlake snowFlake = new SnowFlake(1, 1);
+        long[] ids = snowFlake.nextIds(100_000);
+        for (int i = 1; i < ids.length; ++i) {
+            Assert.assertTrue(ids[i - 1] < ids[i]);
+        }
+
+        long[] dst = new long[10];
+        snowFlake.fill(dst, 2, 6);
+        Assert.assertEquals(0L, dst[0]);
+        Assert.assertEquals(0L, dst[9]);
+        Assert.assertTrue(ids[ids.length - 1] < dst[2]);
+
+        long[] streamed = snowFlake.idStream(10_000).toArray();
+        Assert.assertEquals(10_000, streamed.length);
+        Assert.assertEquals(10_000, Arrays.stream(streamed).distinct().count());
+        Assert.assertTrue(dst[7] < streamed[0]);
+    }
+
+    @Test
+    public void testRejectClockRegression() {
+        AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+        ClockRegressionPolicy policy = ClockRegressionPolicy.reject();
+        SnowFlake snowFlake = manualClockSnowFlake(clock, false, policy);
+        snowFlake.nextId();
+        clock.addAndGet(-5);
+        try {
+            snowFlake.nextId();
+            Assert.fail("Clock regression should be rejected");
+        } catch (SnowFlakeException e) {
+            Assert.assertEquals(1L, policy.getRejectedCount());
+        }
+        Assert.assertEquals(1L, snowFlake.getMetrics().getRegressionCount());
+        Assert.assertEquals(5L, snowFlake.getMetrics().getMaxRegressionMillis());
+    }
+
+    @Test
+    public void testLogicalClockRegression() {
+        AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+        ClockRegressionPolicy policy = ClockRegressionPolicy.logicalClock();
+        SnowFlake snowFlake = manualClockSnowFlake(clock, false, policy);
+        long last = snowFlake.nextId();
+        clock.addAndGet(-5);
+        // more than one millisecond worth of ids, so the logical clock has to run ahead
+        for (int i = 0; i < 10_000; ++i) {
+            long id = snowFlake.nextId();
+            Assert.assertTrue(last < id);
+            last = id;
+        }
+        Assert.assertEquals(10_000L, policy.getFiredCount());
+        Assert.assertEquals(0L, policy.getRejectedCount());
+        // one step back of 5 ms, however far the logical clock ran ahead
+        Assert.assertEquals(1L, snowFlake.getMetrics().getRegressionCount());
+        Assert.assertEquals(5L, snowFlake.getMetrics().getMaxRegressionMillis());
+    }
+
+    @Test
+    public void testBoundedWaitClockRegression() {
+        AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+        ClockRegressionPolicy policy = ClockRegressionPolicy.boundedWait(10);
+        SnowFlake snowFlake = manualClockSnowFlake(clock, true, policy);
+        long last = snowFlake.nextId();
+        clock.addAndGet(-5);
+        Assert.assertTrue(last < snowFlake.nextId());
+        Assert.assertEquals(1L, policy.getFiredCount());
+
+        clock.addAndGet(-50);
+        try {
+            snowFlake.nextId();
+            Assert.fail("Clock regression longer than the threshold should be rejected");
+        } catch (SnowFlakeException e) {
+            Assert.assertEquals(1L, policy.getRejectedCount());
+        }
+    }
+
+    @Test
+    public void testBackupSequenceBitClockRegression() {
+        AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+        ClockRegressionPolicy policy = ClockRegressionPolicy.backupSequenceBit();
+        SnowFlake snowFlake = manualClockSnowFlake(clock, false, policy);
+        long[] before = snowFlake.nextIds(2000);
+        clock.addAndGet(-1);
+        long[] after = snowFlake.nextIds(1000);
+        Assert.assertEquals(1L, policy.getFiredCount());
+
+        long[] all = new long[before.length + after.length];
+        System.arraycopy(before, 0, all, 0, before.length);
+        System.arraycopy(after, 0, all, before.length, after.length);
+        Assert.assertEquals(all.length, Arrays.stream(all).distinct().count());
+
+        // both halves are ahead of the clock now
+        clock.addAndGet(-5);
+        try {
+            snowFlake.nextId();
+            Assert.fail("Clock regression behind both halves should be rejected");
+        } catch (SnowFlakeException e) {
+            Assert.assertEquals(1L, policy.getRejectedCount());
+        }
+    }
+
+    @Test
+    public void testSequenceExhaustionWaitsForClock() throws InterruptedException {
+        ManualTimeSource clock = new ManualTimeSource();
+        SnowFlake snowFlake = SnowFlake.builder()
+                .timeSource(clock)
+                .waitStrategy(WaitStrategy.spinYieldPark(10, 10, 100_000L))
+                .build();
+        long[] ids = snowFlake.nextIds(4096);
+
+        AtomicLong next = new AtomicLong();
+        Thread waiter = new Thread(() -> next.set(snowFlake.nextId()));
+        waiter.start();
+        waiter.join(50);
+        Assert.assertTrue("The sequence is exhausted, so the generator should wait", waiter.isAlive());
+
+        clock.advance(1);
+        waiter.join();
+        Assert.assertTrue(ids[ids.length - 1] < next.get());
+        Assert.assertEquals(0L, next.get() & 0xfff);
+
+        SnowFlakeMetrics metrics = snowFlake.getMetrics();
+        Assert.assertEquals(4097L, metrics.getIdsIssued());
+        Assert.assertEquals(1L, metrics.getExhaustionCount());
+        Assert.assertTrue(metrics.getWaitNanos() > 0);
+    }
+
+    @Test
+    public void testMetricsExport() throws Exception {
+        SnowFlake snowFlake = new SnowFlake(1, 1);
+        snowFlake.nextIds(10);
+
+        Map<String, LongSupplier> bound = new HashMap<>();
+        snowFlake.getMetrics().bindTo((name, description, value) -> bound.put(name, value), "snowflake");
+        Assert.assertEquals(5, bound.size());
+        Assert.assertEquals(10L, bound.get("snowflake.ids.issued").getAsLong());
+
+        ObjectName name = snowFlake.getMetrics().registerMBean("metrics-test");
+        try {
+            Object issued = ManagementFactory.getPlatformMBeanServer().getAttribute(name, "IdsIssued");
+            Assert.assertEquals(10L, issued);
+        } finally {
+            snowFlake.getMetrics().unregisterMBean("metrics-test");
+        }
+    }
+
+    @Test
+    public void testCustomLayout() {
+        IdLayout layout = new IdLayout(39, 2, 4, 18, 10);
+        ManualTimeSource clock = new ManualTimeSource(1654012800000L + 12_345L);
+        SnowFlake snowFlake = SnowFlake.builder()
+                .layout(layout)
+                .workerId(15)
+                .dataCentreId(3)
+                .timeSource(clock)
+                .build();
+        // one tick holds 2^18 ids
+        long[] ids = snowFlake.nextIds(1 << 18);
+        Assert.assertEquals(1 << 18, Arrays.stream(ids).distinct().count());
+
+        long id = ids[0];
+        Assert.assertEquals(1234L, id >>> layout.getTimestampShift());
+        Assert.assertEquals(3L, (id >>> layout.getDataCentreIdShift()) & layout.getMaxDataCentreId());
+        Assert.assertEquals(15L, (id >>> layout.getWorkerIdShift()) & layout.getMaxWorkerId());
+        Assert.assertEquals(1234L, ids[ids.length - 1] >>> layout.getTimestampShift());
+
+        clock.advance(10);
+        Assert.assertEquals(1235L, snowFlake.nextId() >>> layout.getTimestampShift());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWorkerIdMustFitLayout() {
+        SnowFlake.builder().layout(new IdLayout(41, 2, 4, 16)).workerId(16).build();
+    }
+
+    @Test
+    public void testDecoding() {
+        DateTime time = new DateTime(2024, 3, 15, 10, 30, 0);
+        ManualTimeSource clock = new ManualTimeSource(time.java() + 250L);
+        SnowFlake snowFlake = SnowFlake.builder().workerId(9).dataCentreId(17).timeSource(clock).build();
+        snowFlake.nextId();
+        long id = snowFlake.nextId();
+
+        Assert.assertEquals(time.java() + 250L, snowFlake.timestampOf(id));
+        Assert.assertEquals(time, snowFlake.toDateTime(id));
+        Assert.assertEquals(9L, snowFlake.workerOf(id));
+        Assert.assertEquals(17L, snowFlake.dataCentreOf(id));
+        Assert.assertEquals(1L, snowFlake.sequenceOf(id));
+
+        Assert.assertTrue(snowFlake.minIdAt(time) <= id);
+        Assert.assertTrue(id <= snowFlake.maxIdAt(time));
+        Assert.assertTrue(id > snowFlake.maxIdAt(time.java() + 249L));
+        Assert.assertTrue(id < snowFlake.minIdAt(time.java() + 251L));
+        Assert.assertEquals(-1L, snowFlake.maxIdAt(0L));
+        Assert.assertEquals(0L, snowFlake.minIdAt(0L));
+    }
+
+    @Test
+    public void testCheckpointResume() throws IOException {
+        Path file = folder.newFile("snowflake.checkpoint").toPath();
+        ManualTimeSource clock = new ManualTimeSource();
+        long lastId;
+        try (SnowFlakeCheckpoint checkpoint = new SnowFlakeCheckpoint(file, 1000L, false)) {
+            SnowFlake snowFlake = SnowFlake.builder().timeSource(clock).checkpoint(checkpoint).build();
+            snowFlake.nextIds(100);
+            clock.advance(1500);
+            lastId = snowFlake.nextId();
+            Assert.assertEquals(clock.currentTimeMillis() + 1000L, checkpoint.getHighWaterMark());
+        }
+
+        // the clock went backwards while the process was down
+        clock.advance(-10_000);
+        try (SnowFlakeCheckpoint checkpoint = new SnowFlakeCheckpoint(file, 1000L, false)) {
+            SnowFlake rejecting = SnowFlake.builder().timeSource(clock).checkpoint(checkpoint).build();
+            try {
+                rejecting.nextId();
+                Assert.fail("The regression while the process was down should be detected");
+            } catch (SnowFlakeException e) {
+                log.info(e.getMessage());
+            }
+        }
+
+        try (SnowFlakeCheckpoint checkpoint = new SnowFlakeCheckpoint(file, 1000L, false)) {
+            SnowFlake resumed = SnowFlake.builder()
+                    .timeSource(clock)
+                    .checkpoint(checkpoint)
+                    .clockRegressionPolicy(ClockRegressionPolicy.logicalClock())
+                    .build();
+            Assert.assertTrue(lastId < resumed.nextId());
+        }
+    }
+
+    @Test
+    public void testCheckpointRejectsForeignFile() throws IOException {
+        Path file = folder.newFile("foreign.checkpoint").toPath();
+        byte[] foreign = "not a checkpoint".getBytes(StandardCharsets.US_ASCII);
+        Files.write(file, foreign);
+        Assert.assertThrows(IllegalArgumentException.class, () -> new SnowFlakeCheckpoint(file, 1000L, false));
+        Assert.assertArrayEquals(foreign, Files.readAllBytes(file));
+        // the channel of the failed attempt is closed, so the file can be taken over
+        Files.delete(file);
+        try (SnowFlakeCheckpoint checkpoint = new SnowFlakeCheckpoint(file, 1000L, false)) {
+            Assert.assertEquals(0L, checkpoint.getHighWaterMark());
+        }
+    }
+
+    private SnowFlake manualClockSnowFlake(AtomicLong clock, boolean ticking, ClockRegressionPolicy policy) {
+        return SnowFlake.builder()
+                .workerId(1)
+                .dataCentreId(2)
+                .clockRegressionPolicy(policy)
+                .timeSource(ticking ? clock::getAndIncrement : clock::get)
+                .build();
+    }
+
 }
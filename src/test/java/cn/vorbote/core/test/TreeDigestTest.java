@@ -0,0 +1,102 @@
+package cn.vorbote.core.test;
+
+import cn.vorbote.core.constants.Hash;
+import cn.vorbote.core.utils.HashUtil;
+import cn.vorbote.core.utils.TreeDigest;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * TreeDigestTest<br>
+ * Created at Oct 17, 2026 7:50:00 PM
+ *
+ * @author vorbote
+ */
+@Slf4j
+public class TreeDigestTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFormat() throws Exception {
+        byte[] bytes = new byte[2500];
+        new Random(19).nextBytes(bytes);
+        Path file = folder.newFile().toPath();
+        Files.write(file, bytes);
+
+        TreeDigest tree = HashUtil.treeDigest(Hash.SHA_256, file, 1000);
+        log.info("{}", tree);
+        Assert.assertEquals(3, tree.getLeafCount());
+        Assert.assertEquals(2500, tree.getLength());
+
+        MessageDigest sha = MessageDigest.getInstance("SHA-256");
+        byte[][] leaves = new byte[3][];
+        for (int i = 0; i < 3; ++i) {
+            sha.update((byte) 0);
+            sha.update(bytes, i * 1000, Math.min(1000, 2500 - i * 1000));
+            leaves[i] = sha.digest();
+            Assert.assertArrayEquals(leaves[i], tree.getLeaf(i));
+        }
+        sha.update((byte) 1);
+        sha.update(leaves[0]);
+        sha.update(leaves[1]);
+        byte[] node = sha.digest();
+        sha.update((byte) 1);
+        sha.update(node);
+        sha.update(leaves[2]);
+        Assert.assertArrayEquals(sha.digest(), tree.getRoot());
+
+        Path empty = folder.newFile().toPath();
+        TreeDigest emptyTree = HashUtil.treeDigest(Hash.SHA_256, empty, 1000);
+        Assert.assertEquals(1, emptyTree.getLeafCount());
+        Assert.assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(new byte[1]), emptyTree.getRoot());
+    }
+
+    @Test
+    public void testParallelAndChangedChunks() throws Exception {
+        byte[] bytes = new byte[3 * 1024 * 1024 + 123];
+        new Random(20).nextBytes(bytes);
+        Path file = folder.newFile().toPath();
+        Files.write(file, bytes);
+        int chunkSize = 64 * 1024;
+
+        TreeDigest before;
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            before = HashUtil.treeDigest(Hash.MD5, channel, chunkSize, pool);
+        } finally {
+            pool.shutdown();
+        }
+        Assert.assertArrayEquals(before.getRoot(), HashUtil.treeDigest(Hash.MD5, file, chunkSize).getRoot());
+        Assert.assertEquals(8, HashUtil.treeDigest(Hash.XXHASH_64, file, chunkSize).getRoot().length);
+
+        bytes[5 * chunkSize + 7] ^= 1;
+        bytes[40 * chunkSize] ^= 1;
+        Files.write(file, bytes);
+        TreeDigest after = HashUtil.treeDigest(Hash.MD5, file, chunkSize);
+        Assert.assertArrayEquals(new int[]{5, 40}, before.changedChunks(after));
+        Assert.assertFalse(MessageDigest.isEqual(before.getRoot(), after.getRoot()));
+
+        byte[][] leaves = new byte[before.getLeafCount()][];
+        for (int i = 0; i < leaves.length; ++i) {
+            leaves[i] = before.getLeaf(i);
+        }
+        for (int changed : before.changedChunks(after)) {
+            leaves[changed] = HashUtil.chunkDigest(Hash.MD5, file, chunkSize, changed);
+        }
+        TreeDigest rebuilt = TreeDigest.of(Hash.MD5, chunkSize, bytes.length, leaves);
+        Assert.assertArrayEquals(after.getRoot(), rebuilt.getRoot());
+    }
+}
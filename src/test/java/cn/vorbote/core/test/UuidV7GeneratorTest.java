@@ -0,0 +1,82 @@
+package cn.vorbote.core.test;
+
+import cn.vorbote.core.exceptions.SnowFlakeException;
+import cn.vorbote.core.utils.ClockRegressionPolicy;
+import cn.vorbote.core.utils.UuidV7Generator;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * UuidV7GeneratorTest<br>
+ * Created at Oct 17, 2026 2:10:00 PM
+ *
+ * @author vorbote
+ */
+@Slf4j
+public class UuidV7GeneratorTest {
+
+    @Test
+    public void testVersionAndOrder() {
+        UuidV7Generator generator = new UuidV7Generator();
+        long before = System.currentTimeMillis();
+        UUID[] ids = generator.next(100_000);
+        long after = System.currentTimeMillis();
+
+        for (int i = 0; i < ids.length; ++i) {
+            Assert.assertEquals(7, ids[i].version());
+            Assert.assertEquals(2, ids[i].variant());
+            long timestamp = UuidV7Generator.timestampOf(ids[i]);
+            Assert.assertTrue(timestamp >= before && timestamp <= after);
+            if (i > 0) {
+                Assert.assertTrue(ids[i - 1].compareTo(ids[i]) < 0);
+            }
+        }
+        Assert.assertTrue(ids[ids.length - 1].compareTo(generator.next()) < 0);
+    }
+
+    @Test
+    public void testFormat() {
+        UuidV7Generator generator = new UuidV7Generator();
+        char[] chars = new char[UuidV7Generator.FORMATTED_LENGTH + 1];
+        for (int i = 0; i < 1000; ++i) {
+            UUID id = generator.next();
+            Assert.assertEquals(36, UuidV7Generator.format(id, chars, 1));
+            Assert.assertEquals(id.toString(), new String(chars, 1, 36));
+        }
+        UUID id = new UUID(0x0123456789abcdefL, 0xfedcba9876543210L);
+        UuidV7Generator.format(id, chars, 0);
+        Assert.assertEquals(id.toString(), new String(chars, 0, 36));
+    }
+
+    @Test
+    public void testClockRegression() {
+        AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+        UuidV7Generator rejecting = UuidV7Generator.builder().timeSource(clock::get).build();
+        rejecting.next();
+        clock.addAndGet(-5);
+        try {
+            rejecting.next();
+            Assert.fail("A clock regression should be rejected.");
+        } catch (SnowFlakeException e) {
+            log.info(e.getMessage());
+        }
+
+        UuidV7Generator logical = UuidV7Generator.builder()
+                .timeSource(clock::get)
+                .clockRegressionPolicy(ClockRegressionPolicy.logicalClock())
+                .build();
+        UUID first = logical.next();
+        clock.addAndGet(-5);
+        long[] bits = new long[2 * 70_000];
+        logical.fill(bits, 0, 70_000);
+        Assert.assertTrue(first.compareTo(new UUID(bits[0], bits[1])) < 0);
+        for (int i = 2; i < bits.length; i += 2) {
+            Assert.assertTrue(new UUID(bits[i - 2], bits[i - 1]).compareTo(new UUID(bits[i], bits[i + 1])) < 0);
+        }
+        Assert.assertTrue(logical.getClockRegressionPolicy().getFiredCount() > 0);
+    }
+}